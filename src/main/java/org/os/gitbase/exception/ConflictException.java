@@ -0,0 +1,12 @@
+package org.os.gitbase.exception;
+
+/**
+ * Thrown when a request cannot be applied to the resource's current state (a merge that
+ * conflicts, a branch that moved underneath the request, a pull request already merged).
+ * Mapped to HTTP 409 by {@link GlobalExceptionHandler}.
+ */
+public class ConflictException extends RuntimeException {
+    public ConflictException(String message) {
+        super(message);
+    }
+}
@@ -2,6 +2,7 @@ package org.os.gitbase.exception;
 
 import lombok.extern.slf4j.Slf4j;
 import org.os.gitbase.common.ApiResponseEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -17,7 +18,7 @@ import java.util.stream.Collectors;
  * <p>Every error is returned in the canonical {@link ApiResponseEntity} envelope so the
  * frontend can rely on a single error shape: {@code {success:false, error, message, httpStatus}}.
  *
- * <p>The Git smart-HTTP endpoints ({@code /api/v1/gitbase/**}) deliberately bypass this
+ * <p>The Git smart-HTTP endpoints ({@code /gitbase/**} and {@code /api/v1/gitbase/**}) deliberately bypass this
  * handler — they stream raw pkt-line protocol data and manage their own status codes.
  */
 @RestControllerAdvice
@@ -55,6 +56,22 @@ public class GlobalExceptionHandler {
         return build(HttpStatus.FORBIDDEN, "FORBIDDEN", ex.getMessage());
     }
 
+    /** State conflicts (merge conflicts, moved branches, already merged) → 409. */
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<ApiResponseEntity<Void>> handleConflict(ConflictException ex) {
+        log.debug("Conflict: {}", ex.getMessage());
+        return build(HttpStatus.CONFLICT, "CONFLICT", ex.getMessage());
+    }
+
+    /** Concurrency limit reached on an expensive operation → 429, asking the client to retry shortly. */
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ApiResponseEntity<Void>> handleTooManyRequests(TooManyRequestsException ex) {
+        log.debug("Too many requests: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(ApiResponseEntity.failure(HttpStatus.TOO_MANY_REQUESTS, "TOO_MANY_REQUESTS", ex.getMessage()));
+    }
+
     /** Path-traversal / security guard trips → 403, with a generic message (no internals leaked). */
     @ExceptionHandler(SecurityException.class)
     public ResponseEntity<ApiResponseEntity<Void>> handleSecurity(SecurityException ex) {
@@ -0,0 +1,12 @@
+package org.os.gitbase.exception;
+
+/**
+ * Thrown when an expensive operation is already running at its concurrency limit and the
+ * request could not get a slot in time (archive generation). Mapped to HTTP 429 by
+ * {@link GlobalExceptionHandler}, with a {@code Retry-After} hint.
+ */
+public class TooManyRequestsException extends RuntimeException {
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+}
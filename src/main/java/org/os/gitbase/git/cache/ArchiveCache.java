@@ -0,0 +1,83 @@
+package org.os.gitbase.git.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.eclipse.jgit.lib.ObjectId;
+import org.os.gitbase.git.util.ArchiveWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+
+/**
+ * Generated repository archives on disk, keyed by {@code (tree, format, prefix, mtime)}: the
+ * archive bytes depend on nothing else, so an entry never goes stale and a release downloaded
+ * over and over is generated once. Disabled unless {@code gitbase.archive-cache.dir} is set.
+ *
+ * <p>A miss is not generated ahead of the response: {@link #writeThrough} streams the archive to
+ * the client and copies it into a temporary file on the way, which is kept only when the whole
+ * archive was written. Only one request at a time stores a given key; concurrent requests for it
+ * just stream. Hits and misses are counted in {@code gitbase.archive.cache}.
+ */
+@Component
+public class ArchiveCache {
+
+    public record Key(ObjectId tree, ArchiveWriter.Format format, String prefix, long mtime) {
+        public Key {
+            tree = tree.copy();
+        }
+    }
+
+    public interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private final DiskTier disk;
+    private final Counter hits;
+    private final Counter misses;
+
+    public ArchiveCache(MeterRegistry meterRegistry,
+                        @Value("${gitbase.archive-cache.dir:}") String dir,
+                        @Value("${gitbase.archive-cache.max-bytes:10737418240}") long maxBytes) {
+        this.disk = StringUtils.hasText(dir) ? new DiskTier(Paths.get(dir), maxBytes, ".archive") : null;
+        this.hits = counter(meterRegistry, "hit");
+        this.misses = counter(meterRegistry, "miss");
+    }
+
+    /** The stored archive, or null. */
+    public InputStream open(Key key) {
+        FileChannel channel = disk == null ? null : disk.open(diskKey(key));
+        (channel == null ? misses : hits).increment();
+        return channel == null ? null : Channels.newInputStream(channel);
+    }
+
+    /**
+     * Runs {@code writer} against {@code out}, storing a copy of the output when the cache is
+     * enabled. A failure writing the copy only drops the copy; a failure of the writer or of
+     * {@code out} propagates and discards it.
+     */
+    public void writeThrough(Key key, OutputStream out, Writer writer) throws IOException {
+        if (disk == null) {
+            writer.write(out);
+            return;
+        }
+        disk.writeThrough(diskKey(key), out, writer::write);
+    }
+
+    private static String diskKey(Key key) {
+        return key.tree().name() + ":" + key.format().name() + ":" + key.prefix() + ":" + key.mtime();
+    }
+
+    private static Counter counter(MeterRegistry registry, String result) {
+        return Counter.builder("gitbase.archive.cache")
+                .description("Archive cache lookups")
+                .tag("result", result)
+                .register(registry);
+    }
+}
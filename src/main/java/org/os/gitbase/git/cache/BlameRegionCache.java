@@ -0,0 +1,135 @@
+package org.os.gitbase.git.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.eclipse.jgit.blame.cache.BlameCache;
+import org.eclipse.jgit.blame.cache.CacheRegion;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finished blames keyed by {@code (commit, path)}. A commit id pins the whole history behind it,
+ * so an entry never goes stale and serves every repository holding the commit.
+ *
+ * <p>It is also the {@link BlameCache} handed to JGit's {@code BlameGenerator}: when the generator
+ * walks back to a commit whose blame is stored here it takes the remaining lines from the entry
+ * instead of walking further. Blaming a file at a new commit thus costs the diffs since the last
+ * blamed commit, not the whole history. Memory tier bounded by size, optional gzip disk tier
+ * ({@code gitbase.blame-cache.dir}) as for diffs; lookups are counted in {@code gitbase.blame.cache}.
+ */
+@Component
+public class BlameRegionCache implements BlameCache {
+
+    public record Key(ObjectId commit, String path) {
+        public Key {
+            commit = commit.copy();
+        }
+    }
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final BoundedCache<Key, List<CacheRegion>> memory;
+    private final DiskTier disk;
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    public BlameRegionCache(MeterRegistry meterRegistry,
+                            @Value("${gitbase.blame-cache.max-bytes:33554432}") long maxBytes,
+                            @Value("${gitbase.blame-cache.dir:}") String dir,
+                            @Value("${gitbase.blame-cache.disk-max-bytes:1073741824}") long diskMaxBytes) {
+        this.memory = new BoundedCache<>(maxBytes, BlameRegionCache::weigh);
+        this.disk = StringUtils.hasText(dir) ? new DiskTier(Paths.get(dir), diskMaxBytes) : null;
+        this.memoryHits = counter(meterRegistry, "hit", "memory");
+        this.diskHits = counter(meterRegistry, "hit", "disk");
+        this.misses = counter(meterRegistry, "miss", "none");
+    }
+
+    /** Stored regions (ordered by start, covering the file) or null. */
+    @Override
+    public List<CacheRegion> get(Repository repo, ObjectId commit, String path) {
+        Key key = new Key(commit, path);
+        List<CacheRegion> cached = memory.get(key);
+        if (cached != null) {
+            memoryHits.increment();
+            return cached;
+        }
+        if (disk != null) {
+            List<CacheRegion> stored = disk.read(diskKey(key), BlameRegionCache::decode);
+            if (stored != null) {
+                diskHits.increment();
+                memory.put(key, stored);
+                return stored;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(ObjectId commit, String path, List<CacheRegion> regions) {
+        Key key = new Key(commit, path);
+        List<CacheRegion> copy = List.copyOf(regions);
+        memory.put(key, copy);
+        if (disk != null) {
+            disk.write(diskKey(key), out -> encode(copy, out));
+        }
+    }
+
+    private static long weigh(List<CacheRegion> regions) {
+        long bytes = 64;
+        for (CacheRegion r : regions) {
+            bytes += 80 + 2L * r.getSourcePath().length();
+        }
+        return bytes;
+    }
+
+    private static Counter counter(MeterRegistry registry, String result, String tier) {
+        return Counter.builder("gitbase.blame.cache")
+                .description("Blame cache lookups")
+                .tag("result", result)
+                .tag("tier", tier)
+                .register(registry);
+    }
+
+    // -------------------- serialization --------------------
+
+    private static String diskKey(Key key) {
+        return "blame:" + key.commit().name() + ":" + key.path();
+    }
+
+    static void encode(List<CacheRegion> regions, DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(regions.size());
+        for (CacheRegion r : regions) {
+            out.writeInt(r.getStart());
+            out.writeInt(r.getEnd());
+            DiskTier.writeString(out, r.getSourceCommit().name());
+            DiskTier.writeString(out, r.getSourcePath());
+        }
+    }
+
+    static List<CacheRegion> decode(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unsupported blame cache format");
+        }
+        int count = in.readInt();
+        List<CacheRegion> regions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int start = in.readInt();
+            int end = in.readInt();
+            ObjectId commit = ObjectId.fromString(DiskTier.readString(in));
+            regions.add(new CacheRegion(DiskTier.readString(in), commit, start, end));
+        }
+        return List.copyOf(regions);
+    }
+}
@@ -0,0 +1,84 @@
+package org.os.gitbase.git.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Small thread-safe LRU cache bounded by total weight (entry count by default). Values are
+ * computed by the caller outside the cache lock: {@code get}, compute, then {@code put}. Two
+ * threads may compute the same value concurrently on a miss, which is harmless for the immutable,
+ * content-addressed results cached in this package.
+ */
+public class BoundedCache<K, V> {
+
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final LinkedHashMap<K, V> map = new LinkedHashMap<>(64, 0.75f, true);
+    private long weight;
+
+    public BoundedCache(long maxWeight, ToLongFunction<V> weigher) {
+        this.maxWeight = Math.max(1, maxWeight);
+        this.weigher = weigher;
+    }
+
+    /** Cache bounded by number of entries. */
+    public static <K, V> BoundedCache<K, V> ofEntries(long maxEntries) {
+        return new BoundedCache<>(maxEntries, v -> 1L);
+    }
+
+    public synchronized V get(K key) {
+        return map.get(key);
+    }
+
+    /** Stores {@code value}, evicting least recently used entries. Values heavier than the whole budget are not cached. */
+    public synchronized void put(K key, V value) {
+        long w = weigher.applyAsLong(value);
+        if (w > maxWeight) {
+            remove(key);
+            return;
+        }
+        V previous = map.put(key, value);
+        if (previous != null) {
+            weight -= weigher.applyAsLong(previous);
+        }
+        weight += w;
+
+        Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            Map.Entry<K, V> eldest = it.next();
+            weight -= weigher.applyAsLong(eldest.getValue());
+            it.remove();
+        }
+    }
+
+    public synchronized V remove(K key) {
+        V removed = map.remove(key);
+        if (removed != null) {
+            weight -= weigher.applyAsLong(removed);
+        }
+        return removed;
+    }
+
+    /** Removes every entry whose key matches, e.g. all entries of a deleted repository. */
+    public synchronized void removeIf(Predicate<K> matcher) {
+        Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, V> e = it.next();
+            if (matcher.test(e.getKey())) {
+                weight -= weigher.applyAsLong(e.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized long weight() {
+        return weight;
+    }
+}
@@ -0,0 +1,160 @@
+package org.os.gitbase.git.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.PacketLineIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Complete upload-pack responses of fresh clones, on disk. A clone wants some ref tips and has
+ * nothing; the response to it (acknowledgements and the pack, with its side-band framing) is
+ * fully determined by the request bytes and the refs of the repository, because tags are
+ * followed automatically. So the key is the SHA-256 of both, and a CI fleet cloning the same
+ * tip over and over gets the first clone's response back as one sequential file read instead of
+ * an object enumeration and pack generation each time. Keys never go stale: a push changes the
+ * refs and so the key, and the old entry ages out. Forks with identical refs share entries.
+ *
+ * <p>Only requests that have nothing and want nothing but current ref tips are cached, in both
+ * protocol v0/v1 and v2 form; incremental fetches, shallow and filtered clones are not.
+ * Disabled unless {@code gitbase.clone-cache.dir} is set. Hits and misses are counted in
+ * {@code gitbase.clone.cache}.
+ */
+@Component
+public class ClonePackCache {
+
+    /** Larger request bodies (repositories with very many refs) are never cached. */
+    public static final int MAX_REQUEST_BYTES = 1024 * 1024;
+
+    public interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private final DiskTier disk;
+    private final Counter hits;
+    private final Counter misses;
+
+    public ClonePackCache(MeterRegistry meterRegistry,
+                          @Value("${gitbase.clone-cache.dir:}") String dir,
+                          @Value("${gitbase.clone-cache.max-bytes:21474836480}") long maxBytes) {
+        this.disk = StringUtils.hasText(dir) ? new DiskTier(Paths.get(dir), maxBytes, ".pack-response") : null;
+        this.hits = counter(meterRegistry, "hit");
+        this.misses = counter(meterRegistry, "miss");
+    }
+
+    /** Cache key of an upload-pack request body, or null when the request is not a cacheable clone. */
+    public String keyFor(Repository repo, byte[] requestBody) throws IOException {
+        if (disk == null || requestBody.length > MAX_REQUEST_BYTES) {
+            return null;
+        }
+        List<Ref> refs = new ArrayList<>(repo.getRefDatabase().getRefs());
+        Set<ObjectId> tips = new HashSet<>();
+        for (Ref ref : refs) {
+            if (ref.getObjectId() != null) {
+                tips.add(ref.getObjectId());
+            }
+            if (ref.getPeeledObjectId() != null) {
+                tips.add(ref.getPeeledObjectId());
+            }
+        }
+        if (!isClone(requestBody, tips)) {
+            return null;
+        }
+        refs.sort(Comparator.comparing(Ref::getName));
+        MessageDigest md = sha256();
+        for (Ref ref : refs) {
+            md.update((ref.getName() + " " + (ref.getObjectId() == null ? "" : ref.getObjectId().name()) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        md.update((byte) 0);
+        md.update(requestBody);
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /** The stored response, or null. */
+    public FileChannel open(String key) {
+        FileChannel channel = disk.open(key);
+        (channel == null ? misses : hits).increment();
+        return channel;
+    }
+
+    /** Runs {@code writer} against {@code out} and stores the response if it completes. */
+    public void writeThrough(String key, OutputStream out, Writer writer) throws IOException {
+        disk.writeThrough(key, out, writer::write);
+    }
+
+    /**
+     * True for a request that wants only {@code tips}, has nothing and is done: a v0/v1 request
+     * ({@code want} lines, flush, {@code done}) or a v2 {@code command=fetch}. Anything that makes
+     * the response depend on the client's state (haves, shallow, deepen, filter) disqualifies it.
+     */
+    static boolean isClone(byte[] requestBody, Set<ObjectId> tips) {
+        PacketLineIn in = new PacketLineIn(new ByteArrayInputStream(requestBody));
+        boolean first = true;
+        boolean wants = false;
+        boolean done = false;
+        try {
+            while (true) {
+                String line = in.readString();
+                if (PacketLineIn.isEnd(line) || PacketLineIn.isDelimiter(line)) {
+                    continue;
+                }
+                if (first && line.startsWith("command=") && !line.equals("command=fetch")) {
+                    return false;
+                }
+                first = false;
+                if (line.startsWith("want ")) {
+                    String id = line.length() >= 45 ? line.substring(5, 45) : "";
+                    if (!ObjectId.isId(id) || !tips.contains(ObjectId.fromString(id))) {
+                        return false;
+                    }
+                    wants = true;
+                } else if (line.equals("done")) {
+                    done = true;
+                } else if (line.startsWith("have ") || line.startsWith("shallow ") || line.startsWith("deepen")
+                        || line.startsWith("filter") || line.startsWith("want-ref ")) {
+                    return false;
+                }
+            }
+        } catch (EOFException e) {
+            return wants && done;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Counter counter(MeterRegistry registry, String result) {
+        return Counter.builder("gitbase.clone.cache")
+                .description("Clone response cache lookups")
+                .tag("result", result)
+                .register(registry);
+    }
+}
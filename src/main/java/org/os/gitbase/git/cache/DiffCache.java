@@ -0,0 +1,181 @@
+package org.os.gitbase.git.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.eclipse.jgit.lib.ObjectId;
+import org.os.gitbase.git.dto.FileDiffDto;
+import org.os.gitbase.git.util.DiffResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computed diffs keyed by {@code (old tree, new tree, options)}. Tree ids name immutable content,
+ * so an entry never goes stale and is valid for every repository holding those trees (forks
+ * included); nothing needs invalidating on push or delete.
+ *
+ * <p>The memory tier is an LRU bounded by the approximate heap size of the patches. When
+ * {@code gitbase.diff-cache.dir} is set, results are also written gzip-compressed to disk and
+ * read back on a memory miss; that tier is bounded by {@code disk-max-bytes} and prunes the least
+ * recently read files first. Hits and misses are counted in {@code gitbase.diff.cache}.
+ *
+ * <p>Results whose rename detection was cut short ({@code renamesLimited}) depend on how long it
+ * ran, not only on the key, so they are kept in memory for {@code degraded-ttl} only (long enough
+ * for a client to page through the same file list) and never written to disk.
+ */
+@Component
+public class DiffCache {
+
+    /** {@code options} encodes every setting that changes the output (limits, rename detection, ...). */
+    public record Key(ObjectId oldTree, ObjectId newTree, String options) {
+        public Key {
+            oldTree = oldTree == null ? ObjectId.zeroId() : oldTree.copy();
+            newTree = newTree.copy();
+        }
+    }
+
+    private static final int FORMAT_VERSION = 2;
+
+    /** A degraded result and the {@link System#nanoTime()} it expires at. */
+    private record Expiring(DiffResult diff, long expiresAt) {
+    }
+
+    private final BoundedCache<Key, DiffResult> memory;
+    private final BoundedCache<Key, Expiring> degraded;
+    private final long degradedTtlNanos;
+    private final DiskTier disk;
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    public DiffCache(MeterRegistry meterRegistry,
+                     @Value("${gitbase.diff-cache.max-bytes:67108864}") long maxBytes,
+                     @Value("${gitbase.diff-cache.dir:}") String dir,
+                     @Value("${gitbase.diff-cache.disk-max-bytes:1073741824}") long diskMaxBytes,
+                     @Value("${gitbase.diff-cache.degraded-ttl:1m}") Duration degradedTtl) {
+        this.memory = new BoundedCache<>(maxBytes, DiffCache::weigh);
+        this.degraded = new BoundedCache<>(maxBytes / 4, e -> weigh(e.diff()));
+        this.degradedTtlNanos = degradedTtl.toNanos();
+        this.disk = StringUtils.hasText(dir) ? new DiskTier(Paths.get(dir), diskMaxBytes) : null;
+        this.memoryHits = counter(meterRegistry, "hit", "memory");
+        this.diskHits = counter(meterRegistry, "hit", "disk");
+        this.misses = counter(meterRegistry, "miss", "none");
+    }
+
+    /** Cached diff or null. A disk hit is promoted to the memory tier. */
+    public DiffResult get(Key key) {
+        DiffResult cached = memory.get(key);
+        if (cached != null) {
+            memoryHits.increment();
+            return cached;
+        }
+        Expiring recent = degraded.get(key);
+        if (recent != null) {
+            if (System.nanoTime() - recent.expiresAt() < 0) {
+                memoryHits.increment();
+                return recent.diff();
+            }
+            degraded.remove(key);
+        }
+        if (disk != null) {
+            DiffResult stored = disk.read(diskKey(key), DiffCache::decode);
+            if (stored != null) {
+                diskHits.increment();
+                memory.put(key, stored);
+                return stored;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(Key key, DiffResult diff) {
+        if (diff.renamesLimited()) {
+            degraded.put(key, new Expiring(diff, System.nanoTime() + degradedTtlNanos));
+            return;
+        }
+        memory.put(key, diff);
+        if (disk != null) {
+            disk.write(diskKey(key), out -> encode(diff, out));
+        }
+    }
+
+    /** Approximate retained heap: patch text dominates, plus a fixed cost per file. */
+    private static long weigh(DiffResult diff) {
+        long bytes = 64;
+        for (FileDiffDto f : diff.files()) {
+            bytes += 96 + 2L * (length(f.getPath()) + length(f.getOldPath()) + length(f.getPatch()));
+        }
+        return bytes;
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    private static Counter counter(MeterRegistry registry, String result, String tier) {
+        return Counter.builder("gitbase.diff.cache")
+                .description("Diff cache lookups")
+                .tag("result", result)
+                .tag("tier", tier)
+                .register(registry);
+    }
+
+    // -------------------- serialization --------------------
+
+    private static String diskKey(Key key) {
+        return key.oldTree().name() + ":" + key.newTree().name() + ":" + key.options();
+    }
+
+    static void encode(DiffResult diff, DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(diff.additions());
+        out.writeInt(diff.deletions());
+        out.writeBoolean(diff.truncated());
+        out.writeBoolean(diff.renamesLimited());
+        out.writeInt(diff.files().size());
+        for (FileDiffDto f : diff.files()) {
+            DiskTier.writeString(out, f.getPath());
+            DiskTier.writeString(out, f.getOldPath());
+            DiskTier.writeString(out, f.getChangeType());
+            out.writeInt(f.getAdditions());
+            out.writeInt(f.getDeletions());
+            out.writeBoolean(f.isBinary());
+            out.writeBoolean(f.isTooLarge());
+            DiskTier.writeString(out, f.getPatch());
+        }
+    }
+
+    static DiffResult decode(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unsupported diff cache format");
+        }
+        int additions = in.readInt();
+        int deletions = in.readInt();
+        boolean truncated = in.readBoolean();
+        boolean renamesLimited = in.readBoolean();
+        int count = in.readInt();
+        List<FileDiffDto> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String path = DiskTier.readString(in);
+            String oldPath = DiskTier.readString(in);
+            String changeType = DiskTier.readString(in);
+            int add = in.readInt();
+            int del = in.readInt();
+            boolean binary = in.readBoolean();
+            boolean tooLarge = in.readBoolean();
+            FileDiffDto file = new FileDiffDto(path, oldPath, changeType, add, del, binary, DiskTier.readString(in));
+            file.setTooLarge(tooLarge);
+            files.add(file);
+        }
+        return new DiffResult(files, additions, deletions, truncated, renamesLimited);
+    }
+}
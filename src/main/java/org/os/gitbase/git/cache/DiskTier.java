@@ -0,0 +1,349 @@
+package org.os.gitbase.git.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The on-disk tier shared by the content-addressed caches: one gzip file per entry, named by the
+ * SHA-256 of its key and fanned out over 256 subdirectories. Files are written to a temporary
+ * name and renamed into place, so readers never see a partial entry. The tier is bounded by
+ * {@code maxBytes} and prunes the least recently read files first (reads touch the mtime).
+ * Every failure is logged and treated as a miss.
+ *
+ * <p>Entries that are already compressed in their own right (archives, clone responses) bypass
+ * the gzip encoding: {@link #writeThrough} stores a copy of a response while it is being sent,
+ * and {@link #open} hands the stored file back for copying straight to the next client.
+ */
+@Slf4j
+final class DiskTier {
+
+    interface Encoder {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    interface Decoder<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    interface RawWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private final Path dir;
+    private final long maxBytes;
+    private final String suffix;
+    private final AtomicLong bytes = new AtomicLong();
+    private final Set<String> storing = ConcurrentHashMap.newKeySet();
+
+    DiskTier(Path dir, long maxBytes) {
+        this(dir, maxBytes, ".gz");
+    }
+
+    DiskTier(Path dir, long maxBytes, String suffix) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.suffix = suffix;
+        try {
+            Files.createDirectories(dir);
+            bytes.set(usage());
+        } catch (IOException e) {
+            log.warn("Cache directory {} unusable, disk tier stays empty: {}", dir, e.getMessage());
+        }
+    }
+
+    /** Decoded entry or null. An entry that fails to decode is deleted. */
+    <T> T read(String key, Decoder<T> decoder) {
+        Path file = fileFor(key);
+        try (InputStream raw = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(raw)))) {
+            T value = decoder.read(in);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return value;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Dropping unreadable cache file {}: {}", file, e.getMessage());
+            delete(file);
+            return null;
+        }
+    }
+
+    void write(String key, Encoder encoder) {
+        try {
+            Path tmp = begin(key);
+            try (OutputStream raw = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(raw)))) {
+                encoder.write(out);
+            } catch (IOException | RuntimeException e) {
+                delete(tmp);
+                throw e;
+            }
+            commit(key, tmp);
+        } catch (IOException e) {
+            log.warn("Failed to write cache file for {}: {}", key, e.getMessage());
+        }
+    }
+
+    /** Stored raw entry (marked as read), or null. */
+    FileChannel open(String key) {
+        Path file = fileFor(key);
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return channel;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Failed to open cache file {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Runs {@code writer} against {@code out} and stores a raw copy of everything it wrote under
+     * {@code key}, kept only if the writer completes. A failure writing the copy only drops the
+     * copy; a failure of the writer or of {@code out} propagates. Only one caller at a time
+     * stores a given key, concurrent ones just write to their client.
+     */
+    void writeThrough(String key, OutputStream out, RawWriter writer) throws IOException {
+        if (!storing.add(key)) {
+            writer.write(out);
+            return;
+        }
+        try {
+            Path tmp = null;
+            Tee tee;
+            try {
+                tmp = begin(key);
+                tee = new Tee(out, new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024));
+            } catch (IOException e) {
+                log.warn("Failed to start cache file for {}: {}", key, e.getMessage());
+                if (tmp != null) {
+                    delete(tmp);
+                }
+                writer.write(out);
+                return;
+            }
+            boolean stored = false;
+            try {
+                writer.write(tee);
+                stored = tee.closeCopy() && commitQuietly(key, tmp);
+            } finally {
+                if (!stored) {
+                    tee.closeCopy();
+                    delete(tmp);
+                }
+            }
+        } finally {
+            storing.remove(key);
+        }
+    }
+
+    /** A temporary file next to the entry's final place. */
+    private Path begin(String key) throws IOException {
+        Path parent = fileFor(key).getParent();
+        Files.createDirectories(parent);
+        return Files.createTempFile(parent, "entry", ".tmp");
+    }
+
+    /** Renames a completely written temporary file into place. */
+    private void commit(String key, Path tmp) throws IOException {
+        long size = Files.size(tmp);
+        Files.move(tmp, fileFor(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (bytes.addAndGet(size) > maxBytes) {
+            prune();
+        }
+    }
+
+    private boolean commitQuietly(String key, Path tmp) {
+        try {
+            commit(key, tmp);
+            return true;
+        } catch (IOException e) {
+            log.warn("Failed to store cache file for {}: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    private Path fileFor(String key) {
+        String name = sha256(key);
+        return dir.resolve(name.substring(0, 2)).resolve(name.substring(2) + suffix);
+    }
+
+    /** Deletes the least recently read files until the tier is back under 90% of its budget. */
+    private synchronized void prune() {
+        if (bytes.get() <= maxBytes) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.filter(p -> p.toString().endsWith(suffix)).forEach(files::add);
+        } catch (IOException e) {
+            log.warn("Failed to scan cache directory {}: {}", dir, e.getMessage());
+            return;
+        }
+        files.sort(Comparator.comparing(DiskTier::lastModified));
+        long total = 0;
+        for (Path f : files) {
+            total += sizeOf(f);
+        }
+        long target = maxBytes / 10 * 9;
+        for (Path f : files) {
+            if (total <= target) {
+                break;
+            }
+            total -= sizeOf(f);
+            delete(f);
+        }
+        bytes.set(total);
+    }
+
+    private long usage() throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            return walk.filter(p -> p.toString().endsWith(suffix)).mapToLong(DiskTier::sizeOf).sum();
+        }
+    }
+
+    private static FileTime lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static long sizeOf(Path p) {
+        try {
+            return Files.size(p);
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static void delete(Path p) {
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException ignored) {
+            // Best effort; the next prune retries.
+        }
+    }
+
+    private static String sha256(String s) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Writes to the client and to the cache copy; the copy is dropped at its first failure. */
+    private static final class Tee extends OutputStream {
+        private final OutputStream client;
+        private OutputStream copy;
+        private boolean failed;
+
+        Tee(OutputStream client, OutputStream copy) {
+            this.client = client;
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            client.write(b);
+            if (copy != null) {
+                try {
+                    copy.write(b);
+                } catch (IOException e) {
+                    drop(e);
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            client.write(b, off, len);
+            if (copy != null) {
+                try {
+                    copy.write(b, off, len);
+                } catch (IOException e) {
+                    drop(e);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            client.flush();
+        }
+
+        /** Closes the copy (idempotent); true when all of it reached the file. */
+        boolean closeCopy() {
+            if (copy != null) {
+                try {
+                    copy.close();
+                } catch (IOException e) {
+                    failed = true;
+                }
+                copy = null;
+            }
+            return !failed;
+        }
+
+        private void drop(IOException e) {
+            log.warn("Failed to write cache copy, serving without it: {}", e.getMessage());
+            failed = true;
+            closeCopy();
+        }
+    }
+
+    // -------------------- encoding helpers --------------------
+
+    /** Length-prefixed UTF-8 ({@code -1} for null); unlike writeUTF it has no 64KB limit. */
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,213 @@
+package org.os.gitbase.git.cache;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide registry of open JGit {@link Repository} handles, keyed by {@code owner/repo}.
+ *
+ * <p>Opening a bare repository re-reads its config, refs and pack indexes, which dominates the
+ * latency of small browse requests. The registry keeps hot repositories open and hands out the
+ * same instance to every caller. Reference counting reuses JGit's own use count: {@link #open}
+ * calls {@link Repository#incrementOpen()} and callers release with {@code close()} (so
+ * try-with-resources works unchanged). The registry owns one reference per cached entry; when an
+ * entry is evicted (LRU beyond {@code max-open}, idle beyond {@code idle-timeout}, or
+ * {@link #invalidate}), only that reference is dropped and the underlying files are closed once the
+ * last in-flight caller finishes.
+ */
+@Slf4j
+@Component
+public class RepositoryRegistry {
+
+    private static final String BASE_PATH = "./gitbase/repositories";
+
+    private final int maxOpen;
+    private final long idleTimeoutMillis;
+
+    /** Access-ordered so iteration starts at the least recently used entry. Guarded by {@code this}. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final ScheduledExecutorService sweeper;
+
+    public RepositoryRegistry(@Value("${gitbase.repository-cache.max-open:256}") int maxOpen,
+                              @Value("${gitbase.repository-cache.idle-timeout:10m}") Duration idleTimeout) {
+        this.maxOpen = Math.max(1, maxOpen);
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "git-repository-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(10_000L, idleTimeoutMillis / 2);
+        sweeper.scheduleWithFixedDelay(this::closeIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns an open handle for {@code owner/repoName}. The caller must {@code close()} it when
+     * done (it only releases the caller's reference).
+     *
+     * @throws RepositoryNotFoundException if no bare repository exists on disk
+     */
+    public Repository open(String owner, String repoName) throws IOException {
+        if (!isSafeSegment(owner) || !isSafeSegment(repoName)) {
+            throw new RepositoryNotFoundException(owner + "/" + repoName);
+        }
+        String key = key(owner, repoName);
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                return entry.acquire();
+            }
+        }
+
+        // Build outside the lock: reading config/refs must not serialize unrelated repositories.
+        Repository built = new FileRepositoryBuilder()
+                .setGitDir(gitDir(owner, repoName))
+                .setBare()
+                .setMustExist(true)
+                .build();
+
+        Repository loser = null;
+        Repository result;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(built);
+                entries.put(key, entry);
+            } else {
+                loser = built; // another thread opened it first
+            }
+            result = entry.acquire();
+        }
+        if (loser != null) {
+            loser.close();
+        }
+        evictOverflow();
+        return result;
+    }
+
+    /**
+     * Opens a repository by its path relative to the repositories root, as used by the smart-HTTP
+     * servlet ({@code {owner}/{repo}.git}).
+     */
+    public Repository open(String relativePath) throws IOException {
+        String path = relativePath.startsWith("/") ? relativePath.substring(1) : relativePath;
+        int slash = path.lastIndexOf('/');
+        if (slash <= 0 || slash == path.length() - 1) {
+            throw new RepositoryNotFoundException(relativePath);
+        }
+        return open(path.substring(0, slash), path.substring(slash + 1));
+    }
+
+    /** Drops the cached handle for a repository (e.g. before it is deleted from disk). */
+    public void invalidate(String owner, String repoName) {
+        Entry removed;
+        synchronized (this) {
+            removed = entries.remove(key(owner, repoName));
+        }
+        if (removed != null) {
+            removed.repository.close();
+        }
+    }
+
+    /** On-disk location of a bare repository. Does not check that it exists. */
+    public File gitDir(String owner, String repoName) {
+        return Paths.get(BASE_PATH, owner, stripGitSuffix(repoName) + ".git").toFile();
+    }
+
+    /** Number of repositories currently held open by the registry. */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        List<Entry> all;
+        synchronized (this) {
+            all = new ArrayList<>(entries.values());
+            entries.clear();
+        }
+        all.forEach(e -> e.repository.close());
+    }
+
+    private void evictOverflow() {
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (entries.size() > maxOpen && it.hasNext()) {
+                evicted.add(it.next().getValue());
+                it.remove();
+            }
+        }
+        evicted.forEach(e -> e.repository.close());
+    }
+
+    /** Drops every entry unused for {@code idle-timeout}; run periodically by the sweeper. */
+    void closeIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        List<Entry> idle = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Entry e = it.next().getValue();
+                if (e.lastAccess < cutoff) {
+                    idle.add(e);
+                    it.remove();
+                }
+            }
+        }
+        idle.forEach(e -> e.repository.close());
+        if (!idle.isEmpty()) {
+            log.debug("Closed {} idle repositories", idle.size());
+        }
+    }
+
+    private static boolean isSafeSegment(String segment) {
+        return segment != null && !segment.isBlank() && !".".equals(segment) && !"..".equals(segment)
+                && segment.indexOf('/') < 0 && segment.indexOf('\\') < 0;
+    }
+
+    private static String key(String owner, String repoName) {
+        return owner + "/" + stripGitSuffix(repoName);
+    }
+
+    private static String stripGitSuffix(String repoName) {
+        return repoName.endsWith(".git") ? repoName.substring(0, repoName.length() - 4) : repoName;
+    }
+
+    private static final class Entry {
+        private final Repository repository;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private Entry(Repository repository) {
+            this.repository = repository;
+        }
+
+        /** Must be called while holding the registry lock so eviction cannot race the increment. */
+        private Repository acquire() {
+            lastAccess = System.currentTimeMillis();
+            repository.incrementOpen();
+            return repository;
+        }
+    }
+}
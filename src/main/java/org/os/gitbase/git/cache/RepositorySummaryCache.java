@@ -0,0 +1,93 @@
+package org.os.gitbase.git.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Per-repository summary (default branch, last commit time, on-disk size) used by the repository
+ * listing. Computing it touches refs, the tip commit and the pack directory, so it is cached per
+ * {@code owner/repo} and refreshed by the post-receive hook rather than recomputed on every list.
+ */
+@Slf4j
+@Component
+public class RepositorySummaryCache {
+
+    /** Git-derived part of a repository summary; visibility and name come from the DB row. */
+    public record Summary(String defaultBranch, long lastCommitTime, long sizeBytes) {
+        static final Summary EMPTY = new Summary(null, 0L, 0L);
+    }
+
+    private final RepositoryRegistry repositoryRegistry;
+    private final BoundedCache<String, Summary> cache;
+
+    public RepositorySummaryCache(RepositoryRegistry repositoryRegistry,
+                                  @Value("${gitbase.summary-cache.max-entries:10000}") long maxEntries) {
+        this.repositoryRegistry = repositoryRegistry;
+        this.cache = BoundedCache.ofEntries(maxEntries);
+    }
+
+    /** Cached summary, computed on first access. Never throws: unreadable repositories summarize as empty. */
+    public Summary get(String owner, String repoName) {
+        String key = owner + "/" + repoName;
+        Summary cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        try (Repository repo = repositoryRegistry.open(owner, repoName)) {
+            Summary summary = compute(repo);
+            cache.put(key, summary);
+            return summary;
+        } catch (Exception e) {
+            log.warn("Failed to summarize {}/{}: {}", owner, repoName, e.getMessage());
+            return Summary.EMPTY;
+        }
+    }
+
+    /** Recomputes the summary from an already-open repository (post-receive). Never throws. */
+    public void refresh(String owner, String repoName, Repository repo) {
+        try {
+            cache.put(owner + "/" + repoName, compute(repo));
+        } catch (Exception e) {
+            log.warn("Failed to refresh summary for {}/{}: {}", owner, repoName, e.getMessage());
+            invalidate(owner, repoName);
+        }
+    }
+
+    public void invalidate(String owner, String repoName) {
+        cache.remove(owner + "/" + repoName);
+    }
+
+    private Summary compute(Repository repo) throws IOException {
+        String defaultBranch = null;
+        long lastCommitTime = 0L;
+
+        Ref head = repo.exactRef(Constants.HEAD);
+        if (head != null) {
+            Ref target = head.isSymbolic() ? head.getTarget() : head;
+            if (head.isSymbolic() && target.getName().startsWith(Constants.R_HEADS)) {
+                defaultBranch = target.getName().substring(Constants.R_HEADS.length());
+            }
+            if (target.getObjectId() != null) {
+                try (RevWalk walk = new RevWalk(repo)) {
+                    lastCommitTime = walk.parseCommit(target.getObjectId()).getCommitTime() * 1000L;
+                }
+            }
+        }
+
+        long sizeBytes = 0L;
+        if (repo instanceof FileRepository fileRepo) {
+            GC.RepoStatistics stats = new GC(fileRepo).getStatistics();
+            sizeBytes = stats.sizeOfPackedObjects + stats.sizeOfLooseObjects;
+        }
+        return new Summary(defaultBranch, lastCommitTime, sizeBytes);
+    }
+}
@@ -1,54 +0,0 @@
-package org.os.gitbase.git.config;
-
-import org.eclipse.jgit.http.server.GitServlet;
-import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
-import org.eclipse.jgit.transport.ReceivePack;
-import org.eclipse.jgit.transport.resolver.ReceivePackFactory;
-import org.os.gitbase.git.hook.PushSyncHook;
-import org.springframework.boot.web.servlet.ServletRegistrationBean;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-
-import java.io.File;
-import java.io.IOException;
-
-@Configuration
-public class GitServletConfig {
-
-    private static final String BASE_PATH = "./gitbase/repositories";
-
-    // handle refinfo, receivepacks and uploadpacks
-    @Bean
-    public ServletRegistrationBean<GitServlet> gitServlet(PushSyncHook pushSyncHook) {
-        GitServlet gitServlet = new GitServlet();
-
-        gitServlet.setRepositoryResolver((req, name) -> {
-            File repoDir = new File(BASE_PATH, name);
-            if (!repoDir.exists()) {
-                try {
-                    throw new IOException("Repository not found: " + name);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-
-            try {
-                return new FileRepositoryBuilder()
-                        .setGitDir(repoDir)
-                        .build();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        });
-
-        // Attach the DB-sync post-receive hook to every push handled by the servlet.
-        gitServlet.setReceivePackFactory((ReceivePackFactory<jakarta.servlet.http.HttpServletRequest>) (req, db) -> {
-            ReceivePack rp = new ReceivePack(db);
-            rp.setPostReceiveHook(pushSyncHook);
-            return rp;
-        });
-
-        // mount all repositories into this endpoint -> /gitbase/* (refs etc)
-        return new ServletRegistrationBean<>(gitServlet, "/gitbase/*");
-    }
-}
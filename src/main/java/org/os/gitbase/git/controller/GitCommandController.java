@@ -2,31 +2,36 @@ package org.os.gitbase.git.controller;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.os.gitbase.git.service.CommandGitService;
+import org.os.gitbase.git.transport.GitHttpTransport;
 import org.springframework.web.bind.annotation.*;
-import java.util.concurrent.Callable;
 
+/**
+ * Git smart-HTTP endpoints, mounted at both remote URL schemes:
+ * {@code /gitbase/{username}/{repo}.git} (git token / HTTP Basic security chain) and
+ * {@code /api/v1/gitbase/{username}/{repo}.git}. The {@code .git} suffix is optional on both.
+ * All the work is done by {@link GitHttpTransport}.
+ */
 @RestController
-@RequestMapping("/api/v1/gitbase/{username}/{repoName}.git")
+@RequestMapping({"/gitbase/{username}/{repoName}", "/api/v1/gitbase/{username}/{repoName}"})
 public class GitCommandController {
 
-    private final CommandGitService gitService;
+    private final GitHttpTransport transport;
 
-    public GitCommandController(CommandGitService gitService) {
-        this.gitService = gitService;
+    public GitCommandController(GitHttpTransport transport) {
+        this.transport = transport;
     }
 
     /**
      * Advertise refs (info/refs endpoint).
-     * Spring async via Callable ensures raw Git pkt-lines stream correctly.
      */
     @GetMapping("/info/refs")
     public void getInfoRefs(
             @PathVariable String username,
             @PathVariable String repoName,
-            @RequestParam(name = "service") String service,
+            @RequestParam(name = "service", required = false) String service,
+            HttpServletRequest request,
             HttpServletResponse response) {
-        gitService.handleInfoRefs(username, repoName, service, response);
+        transport.infoRefs(username, repoName, service, request, response);
     }
 
     /**
@@ -39,7 +44,7 @@ public class GitCommandController {
             HttpServletRequest request,
             HttpServletResponse response) {
 
-        gitService.handleUploadPack(username, repoName, request, response);
+        transport.uploadPack(username, repoName, request, response);
     }
 
     /**
@@ -51,6 +56,6 @@ public class GitCommandController {
             @PathVariable String repoName,
             HttpServletRequest request,
             HttpServletResponse response) {
-        gitService.handleReceivePack(username, repoName, request, response);
+        transport.receivePack(username, repoName, request, response);
     }
 }
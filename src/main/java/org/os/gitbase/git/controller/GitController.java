@@ -1,32 +1,54 @@
 package org.os.gitbase.git.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.os.gitbase.common.ApiResponseEntity;
 import org.os.gitbase.exception.AccessDeniedDomainException;
+import org.os.gitbase.git.dto.BranchPageDto;
 import org.os.gitbase.git.dto.BranchSummaryDto;
 import org.os.gitbase.git.dto.CommitDetailDto;
+import org.os.gitbase.git.dto.CommitFilesDto;
 import org.os.gitbase.git.dto.CommitPageDto;
 import org.os.gitbase.git.dto.CompareDto;
 import org.os.gitbase.git.dto.CreateRepositoryDto;
 import org.os.gitbase.git.dto.DirectoryListingDto;
 import org.os.gitbase.git.dto.FileContentDto;
 import org.os.gitbase.git.dto.FileTreeNode;
+import org.os.gitbase.git.dto.MergePullRequestDto;
+import org.os.gitbase.git.dto.MergeResultDto;
+import org.os.gitbase.git.dto.MergeabilityDto;
 import org.os.gitbase.git.dto.RepositoryInfo;
-import org.os.gitbase.git.dto.RepositoryTreeDto;
+import org.os.gitbase.git.dto.RepositoryPageDto;
 import org.os.gitbase.git.entity.enums.ActivityType;
 import org.os.gitbase.git.service.ActivityService;
+import org.os.gitbase.git.service.ArchiveService;
+import org.os.gitbase.git.service.BranchOverviewService;
 import org.os.gitbase.git.service.GitService;
+import org.os.gitbase.git.service.PullRequestCompareService;
+import org.os.gitbase.git.service.PullRequestMergeService;
 import org.os.gitbase.git.service.PushSyncService;
+import org.os.gitbase.git.util.DiffOptions;
+import org.os.gitbase.git.util.RawBlob;
 import org.os.gitbase.helper.Helper;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.os.gitbase.constant.Constant.*;
 
@@ -37,11 +59,23 @@ public class GitController {
     private final GitService gitService;
     private final ActivityService activityService;
     private final PushSyncService pushSyncService;
+    private final PullRequestCompareService pullRequestCompareService;
+    private final PullRequestMergeService pullRequestMergeService;
+    private final BranchOverviewService branchOverviewService;
+    private final ArchiveService archiveService;
 
-    public GitController(GitService gitService, ActivityService activityService, PushSyncService pushSyncService) {
+    public GitController(GitService gitService, ActivityService activityService, PushSyncService pushSyncService,
+                         PullRequestCompareService pullRequestCompareService,
+                         PullRequestMergeService pullRequestMergeService,
+                         BranchOverviewService branchOverviewService,
+                         ArchiveService archiveService) {
         this.gitService = gitService;
         this.activityService = activityService;
         this.pushSyncService = pushSyncService;
+        this.pullRequestCompareService = pullRequestCompareService;
+        this.pullRequestMergeService = pullRequestMergeService;
+        this.branchOverviewService = branchOverviewService;
+        this.archiveService = archiveService;
     }
 
     // -------------------- CREATE REPOSITORY --------------------
@@ -88,22 +122,46 @@ public class GitController {
 
     // -------------------- LIST ALL USER REPOSITORIES --------------------
     @GetMapping(REPOSITORIES + "/{username}")
-    public ResponseEntity<ApiResponseEntity<List<RepositoryTreeDto>>> listRepositories(
-            @PathVariable String username) {
-        List<RepositoryTreeDto> repos = gitService.listRepositories(username);
+    public ResponseEntity<ApiResponseEntity<RepositoryPageDto>> listRepositories(
+            @PathVariable String username,
+            @RequestParam(required = false, defaultValue = "0") int page,
+            @RequestParam(required = false, defaultValue = "30") int size,
+            @RequestParam(required = false, defaultValue = "false") boolean includeTree) {
+        RepositoryPageDto repos = gitService.listRepositories(username, page, size, includeTree);
         return ResponseEntity.ok(ApiResponseEntity.ok(repos, "Repositories retrieved"));
     }
 
     // -------------------- BROWSE FILE TREE --------------------
+    // Without path/depth this is the legacy full recursive dump; with either it is the lazy,
+    // depth-limited mode (depth defaults to 1) whose nodes carry object ids.
     @GetMapping("/{username}/{repoName}/tree")
     public ResponseEntity<ApiResponseEntity<FileTreeNode>> getTree(
             @PathVariable String username,
             @PathVariable String repoName,
-            @RequestParam(required = false) String ref) {
-        FileTreeNode tree = gitService.getTree(username, repoName, ref);
+            @RequestParam(required = false) String ref,
+            @RequestParam(required = false) String path,
+            @RequestParam(required = false) Integer depth) {
+        FileTreeNode tree = (path == null && depth == null)
+                ? gitService.getTree(username, repoName, ref)
+                : gitService.getTree(username, repoName, ref, path, depth == null ? 1 : depth);
         return ResponseEntity.ok(ApiResponseEntity.ok(tree, "File tree retrieved"));
     }
 
+    // -------------------- EXPAND TREE BY ID (lazy browsing) --------------------
+    @GetMapping("/{username}/{repoName}/trees/{sha}")
+    public ResponseEntity<ApiResponseEntity<FileTreeNode>> getTreeById(
+            @PathVariable String username,
+            @PathVariable String repoName,
+            @PathVariable String sha,
+            @RequestParam(required = false, defaultValue = "") String path,
+            @RequestParam(required = false, defaultValue = "1") int depth) {
+        FileTreeNode tree = gitService.getTreeById(username, repoName, sha, path, depth);
+        // A tree id names immutable content: let the browser keep it.
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable())
+                .body(ApiResponseEntity.ok(tree, "File tree retrieved"));
+    }
+
     // -------------------- BROWSE DIRECTORY (GitHub-style listing) --------------------
     @GetMapping("/{username}/{repoName}/contents")
     public ResponseEntity<ApiResponseEntity<DirectoryListingDto>> listContents(
@@ -125,17 +183,77 @@ public class GitController {
         return ResponseEntity.ok(ApiResponseEntity.ok(branches, "Branches retrieved"));
     }
 
+    // Branches page: paginated, with ahead/behind against the default branch.
+    @GetMapping("/{username}/{repoName}/branches/overview")
+    public ResponseEntity<ApiResponseEntity<BranchPageDto>> listBranchOverview(
+            @PathVariable String username,
+            @PathVariable String repoName,
+            @RequestParam(required = false, defaultValue = "0") int page,
+            @RequestParam(required = false, defaultValue = "30") int size) {
+        BranchPageDto branches = branchOverviewService.listBranches(username, repoName, page, size);
+        return ResponseEntity.ok(ApiResponseEntity.ok(branches, "Branches retrieved"));
+    }
+
     // -------------------- COMPARE (PR basis) --------------------
     @GetMapping("/{username}/{repoName}/compare")
     public ResponseEntity<ApiResponseEntity<CompareDto>> compare(
             @PathVariable String username,
             @PathVariable String repoName,
             @RequestParam String base,
-            @RequestParam String head) {
-        CompareDto result = gitService.compare(username, repoName, base, head);
+            @RequestParam String head,
+            @RequestParam(required = false) String algorithm,
+            @RequestParam(required = false) String whitespace) {
+        CompareDto result = gitService.compare(username, repoName, base, head, DiffOptions.parse(algorithm, whitespace));
         return ResponseEntity.ok(ApiResponseEntity.ok(result, "Comparison computed"));
     }
 
+    @GetMapping("/{username}/{repoName}/compare/commits")
+    public ResponseEntity<ApiResponseEntity<CommitPageDto>> listCompareCommits(
+            @PathVariable String username,
+            @PathVariable String repoName,
+            @RequestParam String base,
+            @RequestParam String head,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "30") int size) {
+        CommitPageDto result = gitService.listCompareCommits(username, repoName, base, head, cursor, size);
+        return ResponseEntity.ok(ApiResponseEntity.ok(result, "Compare commits retrieved"));
+    }
+
+    // -------------------- PULL REQUESTS --------------------
+    @GetMapping("/{username}/{repoName}/pulls/{id}/compare")
+    public ResponseEntity<ApiResponseEntity<CompareDto>> comparePullRequest(
+            @PathVariable String username,
+            @PathVariable String repoName,
+            @PathVariable Long id) {
+        CompareDto result = pullRequestCompareService.compare(username, repoName, id);
+        return ResponseEntity.ok(ApiResponseEntity.ok(result, "Pull request comparison retrieved"));
+    }
+
+    @GetMapping("/{username}/{repoName}/pulls/{id}/mergeability")
+    public ResponseEntity<ApiResponseEntity<MergeabilityDto>> getMergeability(
+            @PathVariable String username,
+            @PathVariable String repoName,
+            @PathVariable Long id) {
+        MergeabilityDto result = pullRequestCompareService.mergeability(username, repoName, id);
+        return ResponseEntity.ok(ApiResponseEntity.ok(result, "Mergeability retrieved"));
+    }
+
+    @PostMapping("/{username}/{repoName}/pulls/{id}/merge")
+    public ResponseEntity<ApiResponseEntity<MergeResultDto>> mergePullRequest(
+            @PathVariable String username,
+            @PathVariable String repoName,
+            @PathVariable Long id,
+            @RequestBody(required = false) MergePullRequestDto request,
+            Principal principal) {
+
+        String authUser = Helper.removeAtSymbolAndFollowing(principal.getName());
+        if (!authUser.equals(username)) {
+            throw new AccessDeniedDomainException("You can only merge pull requests of your own repositories");
+        }
+        MergeResultDto result = pullRequestMergeService.merge(username, repoName, id, request, principal.getName());
+        return ResponseEntity.ok(ApiResponseEntity.ok(result, "Pull request merged"));
+    }
+
     // -------------------- COMMIT HISTORY --------------------
     @GetMapping("/{username}/{repoName}/commits")
     public ResponseEntity<ApiResponseEntity<CommitPageDto>> listCommits(
@@ -144,9 +262,10 @@ public class GitController {
             @RequestParam(required = false) String ref,
             @RequestParam(required = false) String path,
             @RequestParam(required = false, defaultValue = "0") int page,
-            @RequestParam(required = false, defaultValue = "30") int size) {
+            @RequestParam(required = false, defaultValue = "30") int size,
+            @RequestParam(required = false) String cursor) {
         pushSyncService.ensureSynced(username, repoName);
-        CommitPageDto commits = gitService.listCommitHistory(username, repoName, ref, path, page, size);
+        CommitPageDto commits = gitService.listCommitHistory(username, repoName, ref, path, page, size, cursor);
         return ResponseEntity.ok(ApiResponseEntity.ok(commits, "Commit history retrieved"));
     }
 
@@ -155,11 +274,54 @@ public class GitController {
     public ResponseEntity<ApiResponseEntity<CommitDetailDto>> getCommitDetail(
             @PathVariable String username,
             @PathVariable String repoName,
-            @PathVariable String sha) {
-        CommitDetailDto detail = gitService.getCommitDetail(username, repoName, sha);
+            @PathVariable String sha,
+            @RequestParam(required = false) String algorithm,
+            @RequestParam(required = false) String whitespace) {
+        CommitDetailDto detail = gitService.getCommitDetail(username, repoName, sha, DiffOptions.parse(algorithm, whitespace));
         return ResponseEntity.ok(ApiResponseEntity.ok(detail, "Commit detail retrieved"));
     }
 
+    @GetMapping("/{username}/{repoName}/commits/{sha}/files")
+    public ResponseEntity<ApiResponseEntity<CommitFilesDto>> listCommitFiles(
+            @PathVariable String username,
+            @PathVariable String repoName,
+            @PathVariable String sha,
+            @RequestParam(required = false) String algorithm,
+            @RequestParam(required = false) String whitespace) {
+        CommitFilesDto files = gitService.listCommitFiles(username, repoName, sha, DiffOptions.parse(algorithm, whitespace));
+        return ResponseEntity.ok(ApiResponseEntity.ok(files, "Commit files retrieved"));
+    }
+
+    /** Raw unified diff written straight to the response; select one {@code path} or an index range. */
+    @GetMapping("/{username}/{repoName}/commits/{sha}/patch")
+    public void getCommitPatch(
+            @PathVariable String username,
+            @PathVariable String repoName,
+            @PathVariable String sha,
+            @RequestParam(required = false) String path,
+            @RequestParam(required = false, defaultValue = "0") int from,
+            @RequestParam(required = false, defaultValue = "50") int count,
+            @RequestParam(required = false) String algorithm,
+            @RequestParam(required = false) String whitespace,
+            HttpServletResponse response) throws IOException {
+        DiffOptions options = DiffOptions.parse(algorithm, whitespace);
+        response.setContentType("text/x-diff;charset=UTF-8");
+        gitService.writeCommitPatch(username, repoName, sha, path, from, count, options, response.getOutputStream());
+    }
+
+    // -------------------- BLAME --------------------
+    // Newline-delimited JSON: a header line, then line ranges top to bottom as they are attributed.
+    @GetMapping("/{username}/{repoName}/blame")
+    public void getBlame(
+            @PathVariable String username,
+            @PathVariable String repoName,
+            @RequestParam(required = false) String ref,
+            @RequestParam String path,
+            HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson;charset=UTF-8");
+        gitService.writeBlame(username, repoName, ref, path, response.getOutputStream());
+    }
+
     // -------------------- VIEW FILE CONTENT --------------------
     @GetMapping("/{username}/{repoName}/blob")
     public ResponseEntity<ApiResponseEntity<FileContentDto>> getFileContent(
@@ -171,6 +333,110 @@ public class GitController {
         return ResponseEntity.ok(ApiResponseEntity.ok(file, "File content retrieved"));
     }
 
+    // -------------------- RAW FILE --------------------
+    // Streams the blob bytes. The blob id is a strong ETag; a full commit sha as ref pins the content,
+    // so that response may be cached forever. A single byte range is honored (206/416).
+    @GetMapping("/{username}/{repoName}/raw")
+    public void getRawFile(
+            @PathVariable String username,
+            @PathVariable String repoName,
+            @RequestParam(required = false) String ref,
+            @RequestParam String path,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        RawBlob blob = gitService.resolveBlob(username, repoName, ref, path);
+        String etag = "\"" + blob.id().name() + "\"";
+        CacheControl cacheControl = blob.pinned()
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable()
+                : CacheControl.noCache().cachePrivate();
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+        // Never let the browser render repository content as HTML.
+        response.setContentType(blob.binary() ? MediaType.APPLICATION_OCTET_STREAM_VALUE : "text/plain;charset=UTF-8");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.inline().filename(blob.name(), StandardCharsets.UTF_8).build().toString());
+
+        long size = blob.size();
+        long start = 0;
+        long length = size;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of(); // malformed: ignore the header, serve everything
+            }
+            if (ranges.size() == 1) {
+                start = ranges.get(0).getRangeStart(size);
+                long end = ranges.get(0).getRangeEnd(size);
+                if (start >= size || end < start) {
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    return;
+                }
+                length = end - start + 1;
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+        response.setContentLengthLong(length);
+        if (HttpMethod.HEAD.matches(request.getMethod())) {
+            return;
+        }
+        gitService.writeBlob(username, repoName, blob.id(), start, length, response.getOutputStream());
+    }
+
+    // -------------------- ARCHIVE --------------------
+    // Zip / tar.gz snapshot of a ref: /archive/main.zip, /archive/release/1.0.tar.gz. Streamed, so
+    // there is no Content-Length; the ETag and caching rules are those of the raw endpoint.
+    @GetMapping("/{username}/{repoName}/archive/{*archive}")
+    public void getArchive(
+            @PathVariable String username,
+            @PathVariable String repoName,
+            @PathVariable String archive,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        ArchiveService.Archive resolved = archiveService.resolve(username, repoName, archive.substring(1));
+        String etag = resolved.etag();
+        CacheControl cacheControl = resolved.pinned()
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable()
+                : CacheControl.noCache().cachePrivate();
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+        response.setContentType(resolved.format().contentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(resolved.fileName(), StandardCharsets.UTF_8).build().toString());
+        if (HttpMethod.HEAD.matches(request.getMethod())) {
+            return;
+        }
+        archiveService.write(username, repoName, resolved, response.getOutputStream());
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*") || c.equals(etag) || c.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     // -------------------- DELETE REPOSITORY --------------------
     @DeleteMapping("/{username}/{repoName}")
     public ResponseEntity<ApiResponseEntity<Void>> deleteRepository(
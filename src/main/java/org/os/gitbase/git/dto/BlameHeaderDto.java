@@ -0,0 +1,8 @@
+package org.os.gitbase.git.dto;
+
+/** First line of a blame stream: what is being blamed and how many lines follow in ranges. */
+public record BlameHeaderDto(
+        String commit,
+        String path,
+        int lines
+) {}
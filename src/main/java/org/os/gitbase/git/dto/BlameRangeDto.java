@@ -0,0 +1,13 @@
+package org.os.gitbase.git.dto;
+
+/** Lines {@code [start, start + count)} (0-based) of the blamed file, last changed by {@code commit}. */
+public record BlameRangeDto(
+        int start,
+        int count,
+        String commit,
+        String path,          // file path in that commit (differs after a rename)
+        String authorName,
+        String authorEmail,
+        long date,            // epoch millis of the commit time
+        String summary        // first line of the commit message
+) {}
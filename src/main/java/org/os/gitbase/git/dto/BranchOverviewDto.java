@@ -0,0 +1,12 @@
+package org.os.gitbase.git.dto;
+
+/** A branch on the branches page: its tip and how far it has diverged from the default branch. */
+public record BranchOverviewDto(
+        String name,
+        String commitSha,
+        String shortSha,
+        boolean isDefault,
+        long date,       // epoch millis of the tip's commit time
+        int aheadBy,     // commits on this branch missing from the default branch
+        int behindBy     // commits on the default branch missing from this branch
+) {}
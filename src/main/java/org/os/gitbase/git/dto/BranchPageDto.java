@@ -0,0 +1,28 @@
+package org.os.gitbase.git.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/** One page of branches (default branch first, then by name) with ahead/behind counts. */
+@Getter
+@Setter
+public class BranchPageDto {
+    private String defaultBranch;
+    private int page;
+    private int size;
+    private long totalElements;
+    private boolean hasNext;
+    private List<BranchOverviewDto> branches;
+
+    public BranchPageDto(String defaultBranch, int page, int size, long totalElements, boolean hasNext,
+                         List<BranchOverviewDto> branches) {
+        this.defaultBranch = defaultBranch;
+        this.page = page;
+        this.size = size;
+        this.totalElements = totalElements;
+        this.hasNext = hasNext;
+        this.branches = branches;
+    }
+}
@@ -19,6 +19,8 @@ public class CommitDetailDto {
     private int additions;
     private int deletions;
     private List<FileDiffDto> files;
+    private boolean truncated;    // true when the inline diff exceeded display limits
+    private boolean renamesLimited; // rename detection hit its limit; only exact renames are paired
 
     public CommitDetailDto(String sha, String shortSha, String message,
                            String authorName, String authorEmail, long date,
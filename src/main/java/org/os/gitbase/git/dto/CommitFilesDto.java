@@ -0,0 +1,29 @@
+package org.os.gitbase.git.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Changed files of a commit with line stats but no patch text (each {@link FileDiffDto#getPatch()}
+ * is null). A file's position in {@code files} is its index for the patch endpoint.
+ */
+@Getter
+@Setter
+public class CommitFilesDto {
+    private String sha;
+    private int additions;
+    private int deletions;
+    private boolean truncated;    // true when the commit changed more files than are listed
+    private boolean renamesLimited; // rename detection hit its limit; only exact renames are paired
+    private List<FileDiffDto> files;
+
+    public CommitFilesDto(String sha, int additions, int deletions, boolean truncated, List<FileDiffDto> files) {
+        this.sha = sha;
+        this.additions = additions;
+        this.deletions = deletions;
+        this.truncated = truncated;
+        this.files = files;
+    }
+}
@@ -14,6 +14,7 @@ public class CommitPageDto {
     private int size;
     private boolean hasNext;
     private List<CommitSummaryDto> commits;
+    private String nextCursor;   // opaque; pass back as ?cursor= for the next page (null on the last page)
 
     public CommitPageDto(String ref, int page, int size, boolean hasNext, List<CommitSummaryDto> commits) {
         this.ref = ref;
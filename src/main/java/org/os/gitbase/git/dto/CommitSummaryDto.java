@@ -1,11 +1,13 @@
 package org.os.gitbase.git.dto;
 
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 /** Compact commit info for listings and the "latest commit" bar. */
 @Getter
 @Setter
+@NoArgsConstructor
 public class CommitSummaryDto {
     private String sha;
     private String shortSha;
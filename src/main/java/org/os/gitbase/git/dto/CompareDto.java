@@ -5,7 +5,8 @@ import java.util.List;
 /**
  * Result of comparing two refs (the basis of a pull request). The diff is three-way: it shows
  * what {@code head} introduces relative to the merge base with {@code base} (so unrelated changes
- * already on {@code base} are excluded). {@code commits} are those reachable from head but not base.
+ * already on {@code base} are excluded). {@code commits} are those reachable from head but not base,
+ * capped at one page; {@code commitsCursor} continues the list via the compare commits endpoint.
  */
 public record CompareDto(
         String base,
@@ -13,9 +14,11 @@ public record CompareDto(
         String mergeBase,                 // SHA of the merge base; null if the refs are unrelated
         int aheadBy,                      // commits in head not in base
         int behindBy,                     // commits in base not in head
-        List<CommitSummaryDto> commits,   // the commits head adds over base (newest first)
+        List<CommitSummaryDto> commits,   // the commits head adds over base (newest first, first page only)
+        String commitsCursor,             // resumes the commit list; null when it is complete
         int totalAdditions,
         int totalDeletions,
         boolean truncated,                // true when the diff exceeded display limits
+        boolean renamesLimited,           // rename detection hit its limit; only exact renames are paired
         List<FileDiffDto> files
 ) {}
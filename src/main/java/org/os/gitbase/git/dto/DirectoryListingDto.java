@@ -16,6 +16,7 @@ public class DirectoryListingDto {
     private String ref;                  // resolved ref label
     private CommitSummaryDto latestCommit; // null for an empty repo
     private List<DirEntryDto> entries;
+    private boolean complete = true;     // false: some entries' last commit is still unknown (budget ran out)
 
     public DirectoryListingDto(String path, String ref, CommitSummaryDto latestCommit, List<DirEntryDto> entries) {
         this.path = path;
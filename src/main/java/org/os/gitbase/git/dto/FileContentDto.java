@@ -9,6 +9,10 @@ import lombok.Setter;
  * <p>For text files, {@code content} holds the UTF-8 decoded text and {@code binary} is false.
  * For binary files, {@code content} is {@code null} and {@code binary} is true — the client
  * should offer a download instead of rendering.
+ *
+ * <p>Large files are not returned whole: {@code truncated} is true and {@code content} holds only
+ * the first complete lines of the file. {@code size} is always the full blob size, and
+ * {@code rawUrl} points at the raw endpoint for the complete file.
  */
 @Getter
 @Setter
@@ -18,6 +22,9 @@ public class FileContentDto {
     private long size;       // bytes
     private boolean binary;
     private String content;  // null when binary
+    private boolean truncated;
+    private Integer lineCount;  // null when binary or truncated
+    private String rawUrl;
 
     public FileContentDto(String path, String ref, long size, boolean binary, String content) {
         this.path = path;
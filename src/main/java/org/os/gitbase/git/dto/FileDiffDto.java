@@ -1,11 +1,13 @@
 package org.os.gitbase.git.dto;
 
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 /** A single file's change within a commit (or compare) diff. */
 @Getter
 @Setter
+@NoArgsConstructor
 public class FileDiffDto {
     private String path;        // new path (old path for deletes)
     private String oldPath;     // previous path for renames/copies; null otherwise
@@ -13,7 +15,8 @@ public class FileDiffDto {
     private int additions;
     private int deletions;
     private boolean binary;
-    private String patch;       // unified diff text; null when binary
+    private String patch;       // unified diff text; null when binary or too large
+    private boolean tooLarge;   // content diff skipped for a blob over the size limit ("large diff not rendered")
 
     public FileDiffDto(String path, String oldPath, String changeType,
                        int additions, int deletions, boolean binary, String patch) {
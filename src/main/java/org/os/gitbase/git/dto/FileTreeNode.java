@@ -1,5 +1,6 @@
 package org.os.gitbase.git.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -13,6 +14,14 @@ public class FileTreeNode {
     private boolean isDirectory;
     private List<FileTreeNode> children = new ArrayList<>();
 
+    // Lazy (depth-limited) mode only; omitted from the full recursive dump.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String sha;          // tree id for directories, blob id for files
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String path;         // full path from repo root ("" for the root)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean truncated;   // true when a directory's children were not loaded (fetch by sha)
+
     public FileTreeNode(String name, boolean isDirectory) {
         this.name = name;
         this.isDirectory = isDirectory;
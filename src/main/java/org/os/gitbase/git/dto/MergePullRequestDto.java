@@ -0,0 +1,21 @@
+package org.os.gitbase.git.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/** Body of a pull request merge. Every field is optional. */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class MergePullRequestDto {
+
+    /** merge (default), squash or rebase. */
+    private String method;
+
+    /** Expected source branch tip; the merge is refused if the branch has moved since. */
+    private String sha;
+
+    /** Overrides the generated commit message (merge and squash only). */
+    private String commitMessage;
+}
@@ -0,0 +1,14 @@
+package org.os.gitbase.git.dto;
+
+import java.time.LocalDateTime;
+
+/** Outcome of merging a pull request: the new tip of {@code targetBranch}. */
+public record MergeResultDto(
+        Long pullRequestId,
+        String method,
+        String targetBranch,
+        String sha,
+        String previousSha,
+        String mergedBy,
+        LocalDateTime mergedAt
+) {}
@@ -0,0 +1,16 @@
+package org.os.gitbase.git.dto;
+
+import java.util.List;
+
+/**
+ * Whether {@code head} merges cleanly into {@code base} at the given tips. {@code state} is
+ * CLEAN, CONFLICTING, or UNKNOWN while the check is still queued (then {@code mergeable} is false
+ * and {@code conflicts} empty).
+ */
+public record MergeabilityDto(
+        String state,
+        boolean mergeable,
+        List<String> conflicts,   // unmerged paths when CONFLICTING
+        String baseSha,
+        String headSha
+) {}
@@ -0,0 +1,26 @@
+package org.os.gitbase.git.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/** One page of a user's repositories, ordered by name. */
+@Getter
+@Setter
+public class RepositoryPageDto {
+    private int page;
+    private int size;
+    private long totalElements;
+    private boolean hasNext;
+    private List<RepositorySummaryDto> repositories;
+
+    public RepositoryPageDto(int page, int size, long totalElements, boolean hasNext,
+                             List<RepositorySummaryDto> repositories) {
+        this.page = page;
+        this.size = size;
+        this.totalElements = totalElements;
+        this.hasNext = hasNext;
+        this.repositories = repositories;
+    }
+}
@@ -0,0 +1,32 @@
+package org.os.gitbase.git.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One row of a repository listing. {@code root} is only populated when the caller explicitly
+ * asks for trees; {@code defaultBranch} is null and {@code lastCommitTime} 0 for empty repositories.
+ */
+@Getter
+@Setter
+public class RepositorySummaryDto {
+    private String repoName;
+    private boolean isPrivate;
+    private String defaultBranch;
+    private long lastCommitTime;
+    private long sizeBytes;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private FileTreeNode root;
+
+    public RepositorySummaryDto() {}
+
+    public RepositorySummaryDto(String repoName, boolean isPrivate, String defaultBranch,
+                                long lastCommitTime, long sizeBytes) {
+        this.repoName = repoName;
+        this.isPrivate = isPrivate;
+        this.defaultBranch = defaultBranch;
+        this.lastCommitTime = lastCommitTime;
+        this.sizeBytes = sizeBytes;
+    }
+}
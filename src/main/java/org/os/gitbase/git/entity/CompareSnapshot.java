@@ -0,0 +1,56 @@
+package org.os.gitbase.git.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Precomputed compare of two exact commits, stored as the JSON of a {@code CompareDto}. A
+ * (base tip, head tip) pair always compares the same way, so a row never goes stale; a pull
+ * request moves to a new row when either branch moves. {@code pullRequestId} only records which
+ * pull request the row was materialized for, so superseded rows can be dropped.
+ */
+@Entity
+@Table(name = "compare_snapshots",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"repository_id", "base_sha", "head_sha"}))
+@Getter
+@Setter
+@NoArgsConstructor
+public class CompareSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "repository_id", nullable = false)
+    private RepositoryGit repository;
+
+    @Column(name = "base_sha", nullable = false, length = 64)
+    private String baseSha;
+
+    @Column(name = "head_sha", nullable = false, length = 64)
+    private String headSha;
+
+    @Column(name = "pull_request_id")
+    private Long pullRequestId;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public CompareSnapshot(RepositoryGit repository, String baseSha, String headSha, Long pullRequestId, String payload) {
+        this.repository = repository;
+        this.baseSha = baseSha;
+        this.headSha = headSha;
+        this.pullRequestId = pullRequestId;
+        this.payload = payload;
+        this.createdAt = LocalDateTime.now();
+    }
+}
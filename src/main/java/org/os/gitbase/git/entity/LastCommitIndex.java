@@ -0,0 +1,55 @@
+package org.os.gitbase.git.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Last-modifying commit of every entry of one directory as seen from one commit. Rows never go
+ * stale: a (commit, directory) pair always has the same answer, so a row is written once and a
+ * repeat listing is a single lookup. {@code entries} is a JSON object of entry name to commit sha.
+ */
+@Entity
+@Table(name = "last_commit_index",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"repository_id", "commit_sha", "dir_path"}))
+@Getter
+@Setter
+@NoArgsConstructor
+public class LastCommitIndex {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "repository_id", nullable = false)
+    private RepositoryGit repository;
+
+    @Column(name = "commit_sha", nullable = false, length = 64)
+    private String commitSha;
+
+    @Column(name = "dir_path", nullable = false, length = 1024)
+    private String dirPath; // "" for the repository root
+
+    @Column(name = "tree_sha", nullable = false, length = 64)
+    private String treeSha; // the directory's tree id at commitSha
+
+    @Column(name = "entries", nullable = false, columnDefinition = "TEXT")
+    private String entries;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public LastCommitIndex(RepositoryGit repository, String commitSha, String dirPath, String treeSha, String entries) {
+        this.repository = repository;
+        this.commitSha = commitSha;
+        this.dirPath = dirPath;
+        this.treeSha = treeSha;
+        this.entries = entries;
+        this.createdAt = LocalDateTime.now();
+    }
+}
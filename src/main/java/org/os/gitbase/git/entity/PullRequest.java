@@ -2,12 +2,18 @@ package org.os.gitbase.git.entity;
 
 
 import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
 import org.os.gitbase.git.entity.enums.PullRequestStatus;
 
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "pull_requests")
+@Getter
+@Setter
+@NoArgsConstructor
 public class PullRequest {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -46,6 +52,4 @@ public class PullRequest {
 
     @Column
     private String mergedBy;
-
-    // Getters and setters
 }
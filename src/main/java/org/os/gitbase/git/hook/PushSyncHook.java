@@ -1,9 +1,15 @@
 package org.os.gitbase.git.hook;
 
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.transport.PostReceiveHook;
 import org.eclipse.jgit.transport.ReceiveCommand;
 import org.eclipse.jgit.transport.ReceivePack;
+import org.os.gitbase.git.cache.RepositorySummaryCache;
+import org.os.gitbase.git.maintenance.CommitGraphService;
+import org.os.gitbase.git.maintenance.RepositoryMaintenanceService;
+import org.os.gitbase.git.service.LastCommitIndexService;
+import org.os.gitbase.git.service.PullRequestCompareService;
 import org.os.gitbase.git.service.PushSyncService;
 import org.springframework.stereotype.Component;
 
@@ -11,20 +17,48 @@ import java.io.File;
 import java.util.Collection;
 
 /**
- * Post-receive hook that mirrors a successful push into the database. It derives the
- * owner/repo identity from the bare repository's directory
- * ({@code .../repositories/{username}/{repoName}.git}) so it works regardless of which
- * transport (GitServlet or controller) handled the push, then delegates to
- * {@link PushSyncService}. Never throws — the push has already completed.
+ * Post-receive hook that mirrors a successful push into the database and refreshes everything
+ * derived from the repository's refs. It derives the owner/repo identity from the bare
+ * repository's directory ({@code .../repositories/{username}/{repoName}.git}), so it works
+ * regardless of the URL the push came in on, and then runs {@link #afterUpdate}.
+ *
+ * <p>{@link #afterUpdate} is also called for server-side ref updates such as pull request merges.
+ * It runs these steps in order:
+ * <ol>
+ *     <li>{@link PushSyncService} records the pushed branches and commits in the database;</li>
+ *     <li>{@link RepositorySummaryCache} recomputes the repository's listing summary;</li>
+ *     <li>{@link LastCommitIndexService} queues indexing of the new commits;</li>
+ *     <li>{@link CommitGraphService} schedules a commit-graph rewrite;</li>
+ *     <li>{@link PullRequestCompareService} queues a rematerialization of the open pull requests
+ *     whose source or target branch moved;</li>
+ *     <li>{@link RepositoryMaintenanceService} samples the repository's storage and queues a GC
+ *     when it is due.</li>
+ * </ol>
+ * The first two run on the calling thread. The last-commit index, commit-graph, compare and GC
+ * work runs in the background on each service's own worker, so the push response is not held up.
+ * Neither method throws, because the push has already completed.
  */
 @Slf4j
 @Component
 public class PushSyncHook implements PostReceiveHook {
 
     private final PushSyncService pushSyncService;
+    private final RepositorySummaryCache repositorySummaryCache;
+    private final LastCommitIndexService lastCommitIndexService;
+    private final CommitGraphService commitGraphService;
+    private final PullRequestCompareService pullRequestCompareService;
+    private final RepositoryMaintenanceService repositoryMaintenanceService;
 
-    public PushSyncHook(PushSyncService pushSyncService) {
+    public PushSyncHook(PushSyncService pushSyncService, RepositorySummaryCache repositorySummaryCache,
+                        LastCommitIndexService lastCommitIndexService, CommitGraphService commitGraphService,
+                        PullRequestCompareService pullRequestCompareService,
+                        RepositoryMaintenanceService repositoryMaintenanceService) {
         this.pushSyncService = pushSyncService;
+        this.repositorySummaryCache = repositorySummaryCache;
+        this.lastCommitIndexService = lastCommitIndexService;
+        this.commitGraphService = commitGraphService;
+        this.pullRequestCompareService = pullRequestCompareService;
+        this.repositoryMaintenanceService = repositoryMaintenanceService;
     }
 
     @Override
@@ -44,9 +78,23 @@ public class PushSyncHook implements PostReceiveHook {
                 log.warn("Push sync: could not resolve owner from {}", gitDir.getAbsolutePath());
                 return;
             }
-            pushSyncService.syncPush(rp.getRepository(), username, repoName, commands);
+            afterUpdate(rp.getRepository(), username, repoName, commands);
         } catch (Exception e) {
             log.error("Push sync hook failed: {}", e.getMessage(), e);
         }
     }
+
+    /** Everything that follows a successful ref update, whoever made it. Never throws. */
+    public void afterUpdate(Repository repo, String username, String repoName, Collection<ReceiveCommand> commands) {
+        try {
+            pushSyncService.syncPush(repo, username, repoName, commands);
+            repositorySummaryCache.refresh(username, repoName, repo);
+            lastCommitIndexService.indexPush(username, repoName, commands);
+            commitGraphService.scheduleWrite(username, repoName);
+            pullRequestCompareService.onPush(username, repoName, commands);
+            repositoryMaintenanceService.onPush(repo, username, repoName);
+        } catch (Exception e) {
+            log.error("Post-update sync failed for {}/{}: {}", username, repoName, e.getMessage(), e);
+        }
+    }
 }
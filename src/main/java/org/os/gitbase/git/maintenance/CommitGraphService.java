@@ -0,0 +1,186 @@
+package org.os.gitbase.git.maintenance;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.internal.storage.commitgraph.CommitGraphWriter;
+import org.eclipse.jgit.internal.storage.commitgraph.GraphCommits;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.pack.PackExt;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.FileUtils;
+import org.eclipse.jgit.util.SystemReader;
+import org.os.gitbase.git.cache.RepositoryRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes and maintains the commit-graph file ({@code objects/info/commit-graph}) of every
+ * repository, with generation numbers and changed-path Bloom filters.
+ *
+ * <p>With {@code core.commitGraph} enabled JGit parses commit headers from the graph instead of
+ * inflating commit objects, which speeds up every {@code RevWalk} (history, merge-base, ranges).
+ * A rewrite walks all of history, so pushes schedule one at most every
+ * {@code gitbase.commit-graph.min-interval} per repository: a push inside that window is folded
+ * into one write at its end, and commits pushed since the last write are simply parsed from their
+ * objects until then. {@code gc.writeCommitGraph} is set as well so any GC of the repository
+ * refreshes the graph too.
+ *
+ * <p>Everything is enabled per repository, in its own config ({@link #configure}); JGit's
+ * process-wide state is left alone. {@code commitGraph.readChangedPaths} is set there too, but
+ * JGit (up to 7.x) only honours it in its user-level config ({@code ~/.config/jgit/config}), so
+ * path-filtered walks use the Bloom filters only where the deployment sets it there. A warning is
+ * logged at startup when it does not.
+ */
+@Slf4j
+@Component
+public class CommitGraphService {
+
+    private final RepositoryRegistry repositoryRegistry;
+    private final MaintenanceLocks maintenanceLocks;
+    private final long minIntervalNanos;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    /** {@link System#nanoTime()} of each repository's last write. */
+    private final Map<String, Long> lastWritten = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "commit-graph-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public CommitGraphService(RepositoryRegistry repositoryRegistry, MaintenanceLocks maintenanceLocks,
+                              @Value("${gitbase.commit-graph.min-interval:5m}") Duration minInterval) {
+        this.repositoryRegistry = repositoryRegistry;
+        this.maintenanceLocks = maintenanceLocks;
+        this.minIntervalNanos = minInterval.toNanos();
+    }
+
+    @PostConstruct
+    void checkChangedPathReads() {
+        try {
+            if (!SystemReader.getInstance().getJGitConfig().getBoolean("commitGraph", "readChangedPaths", false)) {
+                log.warn("commitGraph.readChangedPaths is not set in JGit's user config (~/.config/jgit/config); "
+                        + "path-filtered history will not use the commit-graph's Bloom filters");
+            }
+        } catch (IOException | ConfigInvalidException e) {
+            log.warn("Could not read JGit's user config: {}", e.getMessage());
+        }
+    }
+
+    /** Enables reading and writing commit-graphs in a repository config; returns true if it changed. */
+    public static boolean configure(StoredConfig config) {
+        boolean changed = false;
+        changed |= setIfMissing(config, "core", "commitGraph");
+        changed |= setIfMissing(config, "gc", "writeCommitGraph");
+        changed |= setIfMissing(config, "gc", "writeChangedPaths");
+        changed |= setIfMissing(config, "commitGraph", "readChangedPaths");
+        return changed;
+    }
+
+    /**
+     * Queues a background rewrite, no sooner than {@code min-interval} after the repository's last
+     * one; requests for a repository already queued are coalesced.
+     */
+    public void scheduleWrite(String owner, String repoName) {
+        String key = owner + "/" + repoName;
+        if (!queued.add(key)) {
+            return;
+        }
+        Long last = lastWritten.get(key);
+        long delay = last == null ? 0 : Math.max(0, last + minIntervalNanos - System.nanoTime());
+        executor.schedule(() -> {
+            queued.remove(key);
+            // Never alongside a GC of the same repository, which rewrites the graph too.
+            ReentrantLock lock = maintenanceLocks.lockFor(owner, repoName);
+            lock.lock();
+            try (Repository repo = repositoryRegistry.open(owner, repoName)) {
+                write(repo);
+            } catch (Exception e) {
+                log.warn("Commit-graph write failed for {}: {}", key, e.getMessage());
+            } finally {
+                lastWritten.put(key, System.nanoTime());
+                lock.unlock();
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /** Rewrites the commit-graph for all refs. No-op for non-file or shallow repositories. */
+    public void write(Repository repo) throws IOException {
+        if (!(repo instanceof FileRepository fileRepo)) {
+            return;
+        }
+        StoredConfig config = repo.getConfig();
+        if (configure(config)) {
+            config.save();
+        }
+        if (!fileRepo.getObjectDatabase().getShallowCommits().isEmpty()) {
+            return;
+        }
+
+        File infoDir = new File(fileRepo.getObjectsDirectory(), "info");
+        FileUtils.mkdirs(infoDir, true);
+        File tmp = File.createTempFile("commit_", PackExt.COMMIT_GRAPH.getTmpExtension(), infoDir);
+        try (RevWalk walk = new RevWalk(repo)) {
+            Set<ObjectId> tips = new HashSet<>();
+            for (Ref ref : repo.getRefDatabase().getRefs()) {
+                if (ref.getObjectId() == null) {
+                    continue;
+                }
+                RevObject peeled = walk.peel(walk.parseAny(ref.getObjectId()));
+                if (peeled instanceof RevCommit) {
+                    tips.add(peeled.copy());
+                }
+            }
+            if (tips.isEmpty()) {
+                return;
+            }
+
+            CommitGraphWriter writer = new CommitGraphWriter(
+                    GraphCommits.fromWalk(NullProgressMonitor.INSTANCE, tips, walk), true);
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                writer.write(NullProgressMonitor.INSTANCE, out);
+                out.getChannel().force(true);
+            }
+            FileUtils.rename(tmp, new File(infoDir, "commit-graph"), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            if (tmp.exists()) {
+                FileUtils.delete(tmp, FileUtils.SKIP_MISSING);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static boolean setIfMissing(StoredConfig config, String section, String name) {
+        if (config.getBoolean(section, name, false)) {
+            return false;
+        }
+        config.setBoolean(section, null, name, true);
+        return true;
+    }
+}
@@ -0,0 +1,29 @@
+package org.os.gitbase.git.maintenance;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One lock per repository for everything that rewrites its object storage in the background:
+ * {@link RepositoryMaintenanceService}'s GC (which also rewrites the commit-graph) and
+ * {@link CommitGraphService}'s writer. Striped, so repositories sharing a stripe occasionally
+ * wait for each other but the number of locks stays fixed.
+ */
+@Component
+public class MaintenanceLocks {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public MaintenanceLocks() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public ReentrantLock lockFor(String owner, String repoName) {
+        return locks[Math.floorMod((owner + "/" + repoName).hashCode(), LOCK_STRIPES)];
+    }
+}
@@ -0,0 +1,191 @@
+package org.os.gitbase.git.maintenance;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.pack.PackConfig;
+import org.os.gitbase.git.cache.RepositoryRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the object storage of every repository compact. Each push leaves another pack (or loose
+ * objects, for small pushes) behind; without maintenance every object lookup and every clone has
+ * to search more and more packs, and there are no reachability bitmaps to skip the object walk.
+ *
+ * <p>After each push the repository's pack count and loose object count are sampled (two
+ * directory listings: loose objects are estimated from one fan-out directory, as
+ * {@code git gc --auto} does). When either crosses its threshold a JGit {@link GC} is queued:
+ * everything is repacked into one pack with bitmaps, refs are packed, and (through
+ * {@code gc.writeCommitGraph}) the commit-graph is rewritten. Unreachable objects younger than
+ * JGit's prune expiry are kept, so a GC never races with a push that is still receiving.
+ *
+ * <p>At most {@code gitbase.maintenance.max-concurrent} collections run at once, on their own
+ * threads, and never two for the same repository; pushes do not wait for any of them. A GC
+ * requested while one is running for the repository runs again right after it, and a GC never
+ * overlaps a {@link CommitGraphService} write of the same repository ({@link MaintenanceLocks}).
+ */
+@Slf4j
+@Component
+public class RepositoryMaintenanceService {
+
+    /** Sampled object storage of one repository, and when it was last collected (0 if never). */
+    public record Stats(int packs, long looseObjects, long lastGcMillis) {
+    }
+
+    private final RepositoryRegistry repositoryRegistry;
+    private final MaintenanceLocks maintenanceLocks;
+    private final int maxPacks;
+    private final long maxLooseObjects;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    /** Repositories being collected, and those asked for again meanwhile. Guarded by {@code this}. */
+    private final Set<String> running = new HashSet<>();
+    private final Set<String> rerun = new HashSet<>();
+    private final ExecutorService executor;
+    private final Timer gcTimer;
+
+    public RepositoryMaintenanceService(RepositoryRegistry repositoryRegistry, MaintenanceLocks maintenanceLocks,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${gitbase.maintenance.max-packs:10}") int maxPacks,
+                                        @Value("${gitbase.maintenance.max-loose-objects:2000}") long maxLooseObjects,
+                                        @Value("${gitbase.maintenance.max-concurrent:1}") int maxConcurrent) {
+        this.repositoryRegistry = repositoryRegistry;
+        this.maintenanceLocks = maintenanceLocks;
+        this.maxPacks = maxPacks;
+        this.maxLooseObjects = maxLooseObjects;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, maxConcurrent), r -> {
+            Thread t = new Thread(r, "repository-gc-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        this.gcTimer = Timer.builder("gitbase.maintenance.gc")
+                .description("Repository garbage collections")
+                .register(meterRegistry);
+    }
+
+    /** Post-push: samples the repository's storage and queues a GC when a threshold is crossed. */
+    public void onPush(Repository repo, String owner, String repoName) {
+        if (!(repo instanceof FileRepository fileRepo)) {
+            return;
+        }
+        String key = owner + "/" + repoName;
+        Stats previous = stats.get(key);
+        Stats current = new Stats(fileRepo.getObjectDatabase().getPacks().size(),
+                estimateLooseObjects(fileRepo.getObjectsDirectory()),
+                previous == null ? 0L : previous.lastGcMillis());
+        stats.put(key, current);
+        if (needsGc(current)) {
+            schedule(owner, repoName);
+        }
+    }
+
+    /** Last sampled storage of a repository, or null before its first push since startup. */
+    public Stats stats(String owner, String repoName) {
+        return stats.get(owner + "/" + repoName);
+    }
+
+    boolean needsGc(Stats s) {
+        return s.packs() > maxPacks || s.looseObjects() > maxLooseObjects;
+    }
+
+    /** Queues a GC; requests for a repository already queued are coalesced. */
+    public void schedule(String owner, String repoName) {
+        String key = owner + "/" + repoName;
+        if (!queued.add(key)) {
+            return;
+        }
+        executor.execute(() -> {
+            queued.remove(key);
+            if (!start(key)) {
+                return; // runs again when the current collection finishes
+            }
+            ReentrantLock lock = maintenanceLocks.lockFor(owner, repoName);
+            lock.lock();
+            try (Repository repo = repositoryRegistry.open(owner, repoName)) {
+                if (repo instanceof FileRepository fileRepo) {
+                    gcTimer.record(() -> collect(fileRepo, key));
+                    stats.put(key, new Stats(fileRepo.getObjectDatabase().getPacks().size(),
+                            estimateLooseObjects(fileRepo.getObjectsDirectory()), System.currentTimeMillis()));
+                }
+            } catch (Exception e) {
+                log.warn("Repository GC failed for {}: {}", key, e.getMessage());
+            } finally {
+                lock.unlock();
+                if (finish(key)) {
+                    schedule(owner, repoName);
+                }
+            }
+        });
+    }
+
+    /** Marks a collection as running; if one already is, asks it to run again instead. */
+    synchronized boolean start(String key) {
+        if (running.add(key)) {
+            return true;
+        }
+        rerun.add(key);
+        return false;
+    }
+
+    /** Marks a collection as done; true if another was asked for while it ran. */
+    synchronized boolean finish(String key) {
+        running.remove(key);
+        return rerun.remove(key);
+    }
+
+    void collect(FileRepository repo, String key) {
+        try {
+            PackConfig packConfig = new PackConfig(repo);
+            packConfig.setBuildBitmaps(true);
+            GC gc = new GC(repo);
+            gc.setPackConfig(packConfig);
+            gc.setAuto(false);
+            gc.setProgressMonitor(NullProgressMonitor.INSTANCE);
+            gc.gc().join();
+            log.debug("Repository GC done for {}", key);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loose objects are spread evenly over 256 fan-out directories by hash, so one of them times
+     * 256 is a good estimate of the total at the cost of a single listing.
+     */
+    static long estimateLooseObjects(File objectsDir) {
+        String[] names = new File(objectsDir, "17").list();
+        if (names == null) {
+            return 0;
+        }
+        long count = 0;
+        for (String name : names) {
+            if (name.length() == 38) {
+                count++;
+            }
+        }
+        return count * 256;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,31 @@
+package org.os.gitbase.git.repository;
+
+import org.os.gitbase.git.entity.CompareSnapshot;
+import org.os.gitbase.git.entity.RepositoryGit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface CompareSnapshotRepository extends JpaRepository<CompareSnapshot, UUID> {
+    Optional<CompareSnapshot> findByRepositoryAndBaseShaAndHeadSha(RepositoryGit repository, String baseSha, String headSha);
+
+    /** Drops a pull request's snapshots other than the one for its current tips. */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CompareSnapshot s WHERE s.repository = :repository AND s.pullRequestId = :pullRequestId"
+            + " AND (s.baseSha <> :baseSha OR s.headSha <> :headSha)")
+    void deleteSuperseded(@Param("repository") RepositoryGit repository, @Param("pullRequestId") Long pullRequestId,
+                          @Param("baseSha") String baseSha, @Param("headSha") String headSha);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CompareSnapshot s WHERE s.repository = :repository")
+    void deleteByRepository(@Param("repository") RepositoryGit repository);
+}
@@ -2,6 +2,8 @@ package org.os.gitbase.git.repository;
 
 import org.os.gitbase.auth.entity.User;
 import org.os.gitbase.git.entity.RepositoryGit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
@@ -13,6 +15,7 @@ import java.util.UUID;
 public interface GitRepositoryDB extends JpaRepository<RepositoryGit, UUID> {
     List<RepositoryGit> findByOwner(User owner);
     Optional<RepositoryGit> findByOwnerNameAndRepoName(String ownerName, String repoName);
+    Page<RepositoryGit> findByOwnerName(String ownerName, Pageable pageable);
 
     /** All repositories with their owner eagerly loaded (for non-transactional startup work). */
     @Query("SELECT r FROM RepositoryGit r JOIN FETCH r.owner")
@@ -0,0 +1,29 @@
+package org.os.gitbase.git.repository;
+
+import org.os.gitbase.git.entity.LastCommitIndex;
+import org.os.gitbase.git.entity.RepositoryGit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface LastCommitIndexRepository extends JpaRepository<LastCommitIndex, UUID> {
+    Optional<LastCommitIndex> findByRepositoryAndCommitShaAndDirPath(RepositoryGit repository, String commitSha, String dirPath);
+
+    /** Directories already indexed at a commit; push sync carries these forward to its children. */
+    @Query("SELECT i.dirPath FROM LastCommitIndex i WHERE i.repository = :repository AND i.commitSha = :commitSha ORDER BY i.createdAt DESC")
+    List<String> findDirPaths(@Param("repository") RepositoryGit repository, @Param("commitSha") String commitSha, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM LastCommitIndex i WHERE i.repository = :repository")
+    void deleteByRepository(@Param("repository") RepositoryGit repository);
+}
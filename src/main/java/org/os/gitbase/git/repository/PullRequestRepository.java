@@ -0,0 +1,26 @@
+package org.os.gitbase.git.repository;
+
+import org.os.gitbase.git.entity.PullRequest;
+import org.os.gitbase.git.entity.RepositoryGit;
+import org.os.gitbase.git.entity.enums.PullRequestStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PullRequestRepository extends JpaRepository<PullRequest, Long> {
+
+    /** Pull requests in a state with both branches loaded (for work outside a transaction). */
+    @Query("SELECT p FROM PullRequest p JOIN FETCH p.sourceBranch JOIN FETCH p.targetBranch"
+            + " WHERE p.repository = :repository AND p.status = :status")
+    List<PullRequest> findWithBranches(@Param("repository") RepositoryGit repository,
+                                       @Param("status") PullRequestStatus status);
+
+    @Query("SELECT p FROM PullRequest p JOIN FETCH p.sourceBranch JOIN FETCH p.targetBranch"
+            + " WHERE p.repository = :repository AND p.id = :id")
+    Optional<PullRequest> findWithBranches(@Param("repository") RepositoryGit repository, @Param("id") Long id);
+}
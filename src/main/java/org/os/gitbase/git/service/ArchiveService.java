@@ -0,0 +1,124 @@
+package org.os.gitbase.git.service;
+
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.os.gitbase.exception.ResourceNotFoundException;
+import org.os.gitbase.exception.TooManyRequestsException;
+import org.os.gitbase.git.cache.ArchiveCache;
+import org.os.gitbase.git.cache.RepositoryRegistry;
+import org.os.gitbase.git.util.ArchiveWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zip / tar.gz snapshots of a ref, named like {@code main.zip} or {@code v1.0.tar.gz}. The
+ * archive holds the ref's tree under a {@code <repo>-<ref>/} directory, streamed entry by entry
+ * into the response.
+ *
+ * <p>Archives are served from {@link ArchiveCache} when stored. Generating one reads and
+ * compresses the whole tree, so at most {@code gitbase.archive.max-concurrent} run at once; a
+ * request that cannot get a slot within a few seconds gets a 429 instead of piling up.
+ */
+@Service
+public class ArchiveService {
+
+    /** How long a request waits for a generation slot before giving up. */
+    private static final long SLOT_WAIT_SECONDS = 10;
+
+    /**
+     * A resolved download: what to write and the headers to describe it. {@code pinned} when the
+     * ref was a full commit sha, so the same URL always yields the same bytes.
+     */
+    public record Archive(ObjectId tree, long commitTime, String prefix, String fileName,
+                          ArchiveWriter.Format format, boolean pinned) {
+
+        /** Strong validator: the bytes are fully determined by the tree and the commit time. */
+        public String etag() {
+            return "\"" + tree.name() + "-" + Long.toHexString(commitTime) + "\"";
+        }
+    }
+
+    private final RepositoryRegistry repositoryRegistry;
+    private final ArchiveCache archiveCache;
+    private final Semaphore slots;
+
+    public ArchiveService(RepositoryRegistry repositoryRegistry, ArchiveCache archiveCache,
+                          @Value("${gitbase.archive.max-concurrent:4}") int maxConcurrent) {
+        this.repositoryRegistry = repositoryRegistry;
+        this.archiveCache = archiveCache;
+        this.slots = new Semaphore(Math.max(1, maxConcurrent), true);
+    }
+
+    /** Resolves {@code <ref>.zip} / {@code <ref>.tar.gz} to the commit it archives. */
+    public Archive resolve(String username, String repoName, String archiveName) {
+        ArchiveWriter.Format format = ArchiveWriter.Format.ofFileName(archiveName);
+        if (format == null) {
+            throw new IllegalArgumentException("Unsupported archive format: " + archiveName + " (use .zip or .tar.gz)");
+        }
+        String ref = archiveName.substring(0, archiveName.length() - format.extension().length());
+        if (ref.isBlank()) {
+            throw new IllegalArgumentException("Archive ref cannot be empty");
+        }
+
+        try (Repository repo = repositoryRegistry.open(username, repoName);
+             RevWalk walk = new RevWalk(repo)) {
+            ObjectId id = repo.resolve(ref + "^{commit}");
+            if (id == null) {
+                throw new ResourceNotFoundException("Ref not found: " + ref);
+            }
+            RevCommit commit = walk.parseCommit(id);
+            String base = repoName + "-" + ref.replace('/', '-');
+            return new Archive(commit.getTree().copy(), commit.getCommitTime(), base + "/",
+                    base + format.extension(), format, ObjectId.isId(ref));
+        } catch (RepositoryNotFoundException e) {
+            throw new ResourceNotFoundException("Repository not found: " + username + "/" + repoName);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to resolve archive " + archiveName + " in " + username + "/" + repoName, e);
+        }
+    }
+
+    /** Writes the archive to {@code out}: copied from the cache when stored, generated otherwise. */
+    public void write(String username, String repoName, Archive archive, OutputStream out) {
+        ArchiveCache.Key key = new ArchiveCache.Key(archive.tree(), archive.format(), archive.prefix(),
+                archive.commitTime());
+        try {
+            try (InputStream cached = archiveCache.open(key)) {
+                if (cached != null) {
+                    cached.transferTo(out);
+                    return;
+                }
+            }
+            acquireSlot();
+            try (Repository repo = repositoryRegistry.open(username, repoName);
+                 ObjectReader reader = repo.newObjectReader()) {
+                archiveCache.writeThrough(key, out, target -> ArchiveWriter.write(reader, archive.tree(),
+                        archive.prefix(), archive.commitTime() * 1000L, archive.format(), target));
+            } finally {
+                slots.release();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write archive " + archive.fileName() + " of " + username + "/" + repoName, e);
+        }
+    }
+
+    private void acquireSlot() {
+        try {
+            if (slots.tryAcquire(SLOT_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new TooManyRequestsException("Too many archive downloads in progress, retry shortly");
+    }
+}
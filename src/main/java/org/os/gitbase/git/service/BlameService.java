@@ -0,0 +1,146 @@
+package org.os.gitbase.git.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.jgit.blame.BlameGenerator;
+import org.eclipse.jgit.blame.cache.CacheRegion;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.os.gitbase.exception.ResourceNotFoundException;
+import org.os.gitbase.git.cache.BlameRegionCache;
+import org.os.gitbase.git.dto.BlameHeaderDto;
+import org.os.gitbase.git.dto.BlameRangeDto;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Blame of one file at one commit, written as newline-delimited JSON: a {@link BlameHeaderDto}
+ * line, then {@link BlameRangeDto} lines in file order.
+ *
+ * <p>A cached blame ({@link BlameRegionCache}) is written straight out. Otherwise JGit's
+ * {@link BlameGenerator} runs with that cache, so it stops at the newest ancestor whose blame is
+ * already known. The generator attributes lines in history order, not file order; ranges are
+ * held back until everything above them is attributed and then flushed, so the top of a large
+ * file reaches the client while older lines are still being walked.
+ *
+ * <p>Files over {@link #MAX_BLAME_BYTES} are refused before anything is read into memory.
+ */
+@Service
+public class BlameService {
+
+    /** Largest file blamed; the whole file is held in memory while the generator runs. */
+    static final int MAX_BLAME_BYTES = 1024 * 1024;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final BlameRegionCache blameRegionCache;
+
+    public BlameService(BlameRegionCache blameRegionCache) {
+        this.blameRegionCache = blameRegionCache;
+    }
+
+    public void writeBlame(Repository repo, RevCommit commit, String path, OutputStream out) throws IOException {
+        RawText text;
+        try (TreeWalk tw = TreeWalk.forPath(repo, path, commit.getTree())) {
+            if (tw == null) {
+                throw new ResourceNotFoundException("File not found: " + path);
+            }
+            if ((tw.getRawMode(0) & FileMode.TYPE_MASK) != FileMode.TYPE_FILE) {
+                throw new IllegalArgumentException("Not a file: " + path);
+            }
+            ObjectLoader loader = repo.open(tw.getObjectId(0), Constants.OBJ_BLOB);
+            if (loader.getSize() > MAX_BLAME_BYTES) {
+                throw new IllegalArgumentException("File is too large to blame (over "
+                        + MAX_BLAME_BYTES / 1024 + " KB): " + path);
+            }
+            byte[] bytes = loader.getCachedBytes(MAX_BLAME_BYTES);
+            if (RawText.isBinary(bytes)) {
+                throw new IllegalArgumentException("Cannot blame a binary file: " + path);
+            }
+            text = new RawText(bytes);
+        }
+
+        try (RevWalk walk = new RevWalk(repo)) {
+            Writer writer = new Writer(walk, out);
+            writer.line(new BlameHeaderDto(commit.name(), path, text.size()));
+
+            List<CacheRegion> cached = blameRegionCache.get(repo, commit, path);
+            if (cached != null) {
+                for (CacheRegion r : cached) {
+                    writer.range(r.getStart(), r.getEnd(), r.getSourceCommit(), r.getSourcePath());
+                }
+                out.flush();
+                return;
+            }
+
+            List<CacheRegion> regions = new ArrayList<>();
+            TreeMap<Integer, CacheRegion> pending = new TreeMap<>();
+            int next = 0;
+            try (BlameGenerator gen = new BlameGenerator(repo, path, blameRegionCache)) {
+                gen.push(null, commit);
+                while (gen.next()) {
+                    if (gen.getSourceCommit() == null) {
+                        continue; // only uncommitted content has no commit; we always push one
+                    }
+                    CacheRegion region = new CacheRegion(gen.getSourcePath(), gen.getSourceCommit().copy(),
+                            gen.getResultStart(), gen.getResultEnd());
+                    regions.add(region);
+                    pending.put(region.getStart(), region);
+                    int before = next;
+                    CacheRegion ready;
+                    while ((ready = pending.remove(next)) != null) {
+                        writer.range(ready.getStart(), ready.getEnd(), ready.getSourceCommit(), ready.getSourcePath());
+                        next = ready.getEnd();
+                    }
+                    if (next != before) {
+                        out.flush();
+                    }
+                }
+            }
+            if (next == text.size()) {
+                regions.sort(null);
+                blameRegionCache.put(commit, path, regions);
+            }
+        }
+    }
+
+    /** Serializes lines, resolving each commit's author and summary once. */
+    private static final class Writer {
+        private final RevWalk walk;
+        private final OutputStream out;
+        private final Map<ObjectId, RevCommit> commits = new HashMap<>();
+
+        Writer(RevWalk walk, OutputStream out) {
+            this.walk = walk;
+            this.out = out;
+        }
+
+        void range(int start, int end, ObjectId commitId, String path) throws IOException {
+            RevCommit c = commits.get(commitId);
+            if (c == null) {
+                c = walk.parseCommit(commitId);
+                commits.put(c.copy(), c);
+            }
+            line(new BlameRangeDto(start, end - start, c.name(), path, c.getAuthorIdent().getName(),
+                    c.getAuthorIdent().getEmailAddress(), c.getCommitTime() * 1000L, c.getShortMessage()));
+        }
+
+        void line(Object value) throws IOException {
+            out.write(OBJECT_MAPPER.writeValueAsBytes(value));
+            out.write('\n');
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.os.gitbase.git.service;
+
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.os.gitbase.exception.ResourceNotFoundException;
+import org.os.gitbase.git.cache.BoundedCache;
+import org.os.gitbase.git.cache.RepositoryRegistry;
+import org.os.gitbase.git.dto.BranchOverviewDto;
+import org.os.gitbase.git.dto.BranchPageDto;
+import org.os.gitbase.git.util.AheadBehindCounter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The branches page: every branch with its ahead/behind counts against the default branch, one
+ * page at a time. Counts for a page's branches that are not cached yet are computed together by
+ * {@link AheadBehindCounter#countAll} (bitmaps, or one shared walk) rather than one compare per
+ * branch. They are cached by {@code (default tip, branch tip)}, which fully determines them, so a
+ * push only recomputes the branches whose tips it moved (or all of them when it moves the default).
+ */
+@Service
+public class BranchOverviewService {
+
+    private final RepositoryRegistry repositoryRegistry;
+    private final BoundedCache<String, AheadBehindCounter.Counts> cache;
+
+    public BranchOverviewService(RepositoryRegistry repositoryRegistry,
+                                 @Value("${gitbase.branch-overview-cache.max-entries:100000}") long maxEntries) {
+        this.repositoryRegistry = repositoryRegistry;
+        this.cache = BoundedCache.ofEntries(maxEntries);
+    }
+
+    public BranchPageDto listBranches(String username, String repoName, int page, int size) {
+        int safePage = Math.max(page, 0);
+        int safeSize = (size <= 0 || size > 100) ? 30 : size;
+
+        try (Repository repo = repositoryRegistry.open(username, repoName);
+             RevWalk walk = new RevWalk(repo)) {
+            Ref head = repo.exactRef(Constants.HEAD);
+            String defaultRef = head != null && head.isSymbolic() ? head.getTarget().getName() : null;
+
+            List<Ref> refs = new ArrayList<>();
+            Ref defaultBranch = null;
+            for (Ref ref : repo.getRefDatabase().getRefsByPrefix(Constants.R_HEADS)) {
+                if (ref.getObjectId() == null) {
+                    continue;
+                }
+                refs.add(ref);
+                if (ref.getName().equals(defaultRef)) {
+                    defaultBranch = ref;
+                }
+            }
+            String defaultName = defaultBranch == null ? null : defaultBranch.getName();
+            refs.sort(Comparator.comparing((Ref r) -> !r.getName().equals(defaultName)).thenComparing(Ref::getName));
+
+            int from = (int) Math.min(refs.size(), (long) safePage * safeSize);
+            int to = Math.min(refs.size(), from + safeSize);
+            List<Ref> pageRefs = refs.subList(from, to);
+            Map<ObjectId, AheadBehindCounter.Counts> counts = counts(repo,
+                    defaultBranch == null ? null : defaultBranch.getObjectId(), pageRefs);
+
+            List<BranchOverviewDto> branches = new ArrayList<>(pageRefs.size());
+            for (Ref ref : pageRefs) {
+                ObjectId tip = ref.getObjectId();
+                AheadBehindCounter.Counts c = counts.get(tip);
+                RevObject obj = walk.parseAny(tip);
+                long date = obj instanceof RevCommit commit ? commit.getCommitTime() * 1000L : 0L;
+                branches.add(new BranchOverviewDto(ref.getName().substring(Constants.R_HEADS.length()),
+                        tip.getName(), tip.abbreviate(7).name(), ref.getName().equals(defaultName), date,
+                        c == null ? 0 : c.ahead(), c == null ? 0 : c.behind()));
+            }
+            return new BranchPageDto(defaultName == null ? null : defaultName.substring(Constants.R_HEADS.length()),
+                    safePage, safeSize, refs.size(), to < refs.size(), branches);
+        } catch (RepositoryNotFoundException e) {
+            throw new ResourceNotFoundException("Repository not found: " + username + "/" + repoName);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list branches for " + username + "/" + repoName, e);
+        }
+    }
+
+    /** Cached counts, computing the missing ones in one batch. Empty without a default branch. */
+    private Map<ObjectId, AheadBehindCounter.Counts> counts(Repository repo, ObjectId base, List<Ref> refs)
+            throws IOException {
+        Map<ObjectId, AheadBehindCounter.Counts> counts = new HashMap<>();
+        if (base == null) {
+            return counts;
+        }
+        List<ObjectId> missing = new ArrayList<>();
+        for (Ref ref : refs) {
+            ObjectId tip = ref.getObjectId();
+            AheadBehindCounter.Counts cached = cache.get(key(base, tip));
+            if (cached != null) {
+                counts.put(tip, cached);
+            } else {
+                missing.add(tip);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<ObjectId, AheadBehindCounter.Counts> computed = AheadBehindCounter.countAll(repo, base, missing);
+            computed.forEach((tip, c) -> cache.put(key(base, tip), c));
+            counts.putAll(computed);
+        }
+        return counts;
+    }
+
+    private static String key(ObjectId base, ObjectId tip) {
+        return base.getName() + ":" + tip.getName();
+    }
+}
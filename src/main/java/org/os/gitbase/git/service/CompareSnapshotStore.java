@@ -0,0 +1,64 @@
+package org.os.gitbase.git.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.os.gitbase.git.dto.CompareDto;
+import org.os.gitbase.git.entity.CompareSnapshot;
+import org.os.gitbase.git.entity.RepositoryGit;
+import org.os.gitbase.git.repository.CompareSnapshotRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Persistent compare results keyed by {@code (repository, base tip, head tip)}. Kept apart from
+ * {@link PullRequestCompareService} so repository deletion can purge it without depending on the
+ * compare machinery.
+ */
+@Slf4j
+@Component
+public class CompareSnapshotStore {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final CompareSnapshotRepository compareSnapshotRepository;
+
+    public CompareSnapshotStore(CompareSnapshotRepository compareSnapshotRepository) {
+        this.compareSnapshotRepository = compareSnapshotRepository;
+    }
+
+    /** Stored compare of the exact tips, if one was materialized. Unreadable rows count as missing. */
+    public Optional<CompareDto> find(RepositoryGit repository, String baseSha, String headSha) {
+        return compareSnapshotRepository.findByRepositoryAndBaseShaAndHeadSha(repository, baseSha, headSha)
+                .flatMap(row -> {
+                    try {
+                        return Optional.of(OBJECT_MAPPER.readValue(row.getPayload(), CompareDto.class));
+                    } catch (Exception e) {
+                        log.warn("Ignoring unreadable compare snapshot {}: {}", row.getId(), e.getMessage());
+                        return Optional.empty();
+                    }
+                });
+    }
+
+    /**
+     * Stores a compare for the tips and drops the pull request's older snapshots. Never throws:
+     * a concurrent writer of the same tips simply wins.
+     */
+    public void store(RepositoryGit repository, Long pullRequestId, String baseSha, String headSha, CompareDto compare) {
+        try {
+            if (compareSnapshotRepository.findByRepositoryAndBaseShaAndHeadSha(repository, baseSha, headSha).isEmpty()) {
+                compareSnapshotRepository.save(new CompareSnapshot(repository, baseSha, headSha, pullRequestId,
+                        OBJECT_MAPPER.writeValueAsString(compare)));
+            }
+            if (pullRequestId != null) {
+                compareSnapshotRepository.deleteSuperseded(repository, pullRequestId, baseSha, headSha);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to store compare snapshot {}..{}: {}", baseSha, headSha, e.getMessage());
+        }
+    }
+
+    public void purge(RepositoryGit repository) {
+        compareSnapshotRepository.deleteByRepository(repository);
+    }
+}
@@ -0,0 +1,487 @@
+package org.os.gitbase.git.service;
+
+import jakarta.annotation.PreDestroy;
+import org.eclipse.jgit.api.errors.CanceledException;
+import org.eclipse.jgit.diff.DiffConfig;
+import org.eclipse.jgit.diff.DiffDriver;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.patch.FileHeader;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.os.gitbase.exception.ResourceNotFoundException;
+import org.os.gitbase.git.cache.DiffCache;
+import org.os.gitbase.git.dto.FileDiffDto;
+import org.os.gitbase.git.util.DiffOptions;
+import org.os.gitbase.git.util.DiffResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders tree-to-tree diffs (commit detail, compare, per-file patches).
+ *
+ * <p>The changed files are listed once (including rename detection), then rendered in batches on
+ * a bounded worker pool: each batch is split into consecutive chunks and every chunk uses its own
+ * {@link ObjectReader} and {@link DiffFormatter}. Results are reassembled in scan order, so output is
+ * identical to a sequential diff. The remaining line budget is carried into every batch and each
+ * chunk stops once it alone has used it up, so a truncated diff does not render far past its
+ * limit. Each file's blobs are read once, and the edit list computed from them gives both its stats
+ * and its patch text.
+ *
+ * <p>Rename detection is bounded: above {@code gitbase.diff.rename-limit} added/deleted files, or
+ * once {@code gitbase.diff.rename-budget-ms} elapses, it falls back to exact (same blob) renames
+ * and the result is flagged {@code renamesLimited}. Blobs over {@code gitbase.diff.max-file-bytes}
+ * are not read at all; their file is flagged {@code tooLarge} with no stats or patch. The same size
+ * is the formatter's binary threshold, so no blob is ever loaded past it.
+ */
+@Service
+public class DiffService {
+
+    private static final AbbreviatedObjectId ZERO_ID = AbbreviatedObjectId.fromObjectId(ObjectId.zeroId());
+
+    private final DiffCache diffCache;
+    private final int threads;
+    private final int renameLimit;
+    private final long renameBudgetMillis;
+    private final long maxFileBytes;
+    private final ExecutorService executor;
+
+    public DiffService(DiffCache diffCache,
+                       @Value("${gitbase.diff.threads:0}") int threads,
+                       @Value("${gitbase.diff.rename-limit:1000}") int renameLimit,
+                       @Value("${gitbase.diff.rename-budget-ms:2000}") long renameBudgetMillis,
+                       @Value("${gitbase.diff.max-file-bytes:1048576}") long maxFileBytes) {
+        this.diffCache = diffCache;
+        this.renameLimit = renameLimit;
+        this.renameBudgetMillis = renameBudgetMillis;
+        this.maxFileBytes = maxFileBytes;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread t = new Thread(r, "diff-worker-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Per-file diff between two trees (a null {@code oldTree} means the empty tree), served from the
+     * diff cache when possible. Stops and flags {@code truncated} once the file or line budget is
+     * exceeded. Without {@code withPatches} only the stats are kept and no patch text is formatted.
+     */
+    public DiffResult diff(Repository repo, RevTree oldTree, RevTree newTree, int maxFiles, int maxLines,
+                           boolean withPatches, DiffOptions options) throws IOException {
+        // The key carries every setting that changes the result except the rename time budget;
+        // the cache keeps results cut short by it briefly and only in memory.
+        DiffCache.Key key = new DiffCache.Key(oldTree, newTree, options.key()
+                + ";renames=" + renameLimit + ";maxFile=" + maxFileBytes
+                + ";files=" + maxFiles + ";lines=" + maxLines + (withPatches ? ";patches" : ";stats"));
+        DiffResult diff = diffCache.get(key);
+        if (diff == null) {
+            diff = compute(repo, oldTree, newTree, maxFiles, maxLines, withPatches, options);
+            diffCache.put(key, diff);
+        }
+        return diff;
+    }
+
+    /**
+     * Formats the patch of one file ({@code path}, matched against new or old path) or of the files
+     * at {@code [from, from + count)} straight into {@code out}, one file at a time. Files are picked
+     * from the stats listing {@code diff(..., maxFiles, unlimited lines, stats only)} returns, the
+     * same cached list the caller's file listing shows, so indexes and rename pairs always match it
+     * even when rename detection ran out of time. Each picked file's two sides are then read from
+     * the trees by path.
+     */
+    public void writePatch(Repository repo, RevTree oldTree, RevTree newTree, String path, int from, int count,
+                           int maxFiles, DiffOptions options, OutputStream out) throws IOException {
+        List<FileDiffDto> files = diff(repo, oldTree, newTree, maxFiles, Integer.MAX_VALUE, false, options).files();
+        List<FileDiffDto> selected;
+        if (StringUtils.hasText(path)) {
+            selected = List.of(files.stream()
+                    .filter(f -> path.equals(f.getPath()) || path.equals(f.getOldPath()))
+                    .findFirst()
+                    .orElseThrow(() -> new ResourceNotFoundException("File not changed: " + path)));
+        } else {
+            int start = Math.min(Math.max(from, 0), files.size());
+            selected = files.subList(start, (int) Math.min(files.size(), (long) start + count));
+        }
+
+        BufferedOutputStream buffered = new BufferedOutputStream(out);
+        try (ObjectReader reader = repo.newObjectReader();
+             DiffFormatter df = new DiffFormatter(buffered)) {
+            df.setReader(reader, repo.getConfig());
+            df.setBinaryFileThreshold((int) Math.min(maxFileBytes, Integer.MAX_VALUE));
+            configure(df, options);
+            for (FileDiffDto file : selected) {
+                ListedEntry de = ListedEntry.of(reader, oldTree, newTree, file);
+                if (file.isTooLarge()) {
+                    df.flush();
+                    buffered.write(("diff --git a/" + de.getOldPath() + " b/" + de.getNewPath() + "\n"
+                            + "Large diff not rendered\n").getBytes(StandardCharsets.UTF_8));
+                } else {
+                    if (de.getChangeType() == DiffEntry.ChangeType.RENAME
+                            || de.getChangeType() == DiffEntry.ChangeType.COPY) {
+                        de.setScore(similarity(repo, reader, de));
+                    }
+                    df.format(de);
+                }
+            }
+            df.flush();
+        }
+    }
+
+    /** Similarity score of a listed rename or copy, as rename detection computes it for the pair alone. */
+    private static int similarity(Repository repo, ObjectReader reader, ListedEntry pair) throws IOException {
+        if (pair.getOldId().equals(pair.getNewId())) {
+            return 100;
+        }
+        RenameDetector renames = new RenameDetector(reader, repo.getConfig().get(DiffConfig.KEY));
+        renames.setRenameScore(0);
+        renames.addAll(List.of(
+                new ListedEntry(DiffEntry.ChangeType.DELETE, pair.getOldPath(), pair.getOldMode(), pair.getOldId(),
+                        DiffEntry.DEV_NULL, FileMode.MISSING, ZERO_ID),
+                new ListedEntry(DiffEntry.ChangeType.ADD, DiffEntry.DEV_NULL, FileMode.MISSING, ZERO_ID,
+                        pair.getNewPath(), pair.getNewMode(), pair.getNewId())));
+        for (DiffEntry de : renames.compute()) {
+            if (de.getChangeType() == DiffEntry.ChangeType.RENAME) {
+                return de.getScore();
+            }
+        }
+        return 0;
+    }
+
+    /** A listed file turned back into a {@link DiffEntry}, its sides looked up in the trees by path. */
+    private static final class ListedEntry extends DiffEntry {
+
+        ListedEntry(ChangeType type, String oldPath, FileMode oldMode, AbbreviatedObjectId oldId,
+                    String newPath, FileMode newMode, AbbreviatedObjectId newId) {
+            this.changeType = type;
+            this.oldPath = oldPath;
+            this.oldMode = oldMode;
+            this.oldId = oldId;
+            this.newPath = newPath;
+            this.newMode = newMode;
+            this.newId = newId;
+        }
+
+        void setScore(int score) {
+            this.score = score;
+        }
+
+        static ListedEntry of(ObjectReader reader, RevTree oldTree, RevTree newTree, FileDiffDto file)
+                throws IOException {
+            ChangeType type = ChangeType.valueOf(file.getChangeType());
+            String oldPath = file.getOldPath() != null ? file.getOldPath() : file.getPath();
+            String newPath = file.getPath();
+            TreeWalk oldSide = type == ChangeType.ADD ? null : find(reader, oldTree, oldPath);
+            TreeWalk newSide = type == ChangeType.DELETE ? null : find(reader, newTree, newPath);
+            return new ListedEntry(type,
+                    oldSide == null ? DEV_NULL : oldPath,
+                    oldSide == null ? FileMode.MISSING : oldSide.getFileMode(0),
+                    oldSide == null ? ZERO_ID : AbbreviatedObjectId.fromObjectId(oldSide.getObjectId(0)),
+                    newSide == null ? DEV_NULL : newPath,
+                    newSide == null ? FileMode.MISSING : newSide.getFileMode(0),
+                    newSide == null ? ZERO_ID : AbbreviatedObjectId.fromObjectId(newSide.getObjectId(0)));
+        }
+
+        private static TreeWalk find(ObjectReader reader, RevTree tree, String path) throws IOException {
+            TreeWalk tw = tree == null ? null : TreeWalk.forPath(reader, path, tree);
+            if (tw == null) {
+                throw new IllegalStateException("Listed file missing from its tree: " + path);
+            }
+            return tw;
+        }
+    }
+
+    private DiffResult compute(Repository repo, RevTree oldTree, RevTree newTree, int maxFiles, int maxLines,
+                               boolean withPatches, DiffOptions options) throws IOException {
+        Scan scan;
+        try (ObjectReader reader = repo.newObjectReader()) {
+            scan = scan(repo, reader, oldTree, newTree);
+        }
+        List<DiffEntry> entries = scan.entries();
+
+        List<FileDiffDto> files = new ArrayList<>();
+        int totalAdd = 0;
+        int totalDel = 0;
+        int lineCount = 0;
+        boolean truncated = false;
+
+        int batchSize = threads * 8;
+        int limit = Math.min(entries.size(), maxFiles);
+        for (int start = 0; start < limit && !truncated; start += batchSize) {
+            List<DiffEntry> batch = entries.subList(start, Math.min(limit, start + batchSize));
+            List<FileDiffDto> rendered = renderBatch(repo, batch, maxLines - lineCount, withPatches, options);
+            for (FileDiffDto file : rendered) {
+                if (lineCount >= maxLines) {
+                    truncated = true;
+                    break;
+                }
+                totalAdd += file.getAdditions();
+                totalDel += file.getDeletions();
+                lineCount += file.getAdditions() + file.getDeletions();
+                files.add(file);
+            }
+            if (rendered.size() < batch.size()) {
+                truncated = true;   // a chunk ran out of budget before its last files
+            }
+        }
+        if (entries.size() > maxFiles && files.size() == maxFiles) {
+            truncated = true;
+        }
+        return new DiffResult(files, totalAdd, totalDel, truncated, scan.renamesLimited());
+    }
+
+    /**
+     * Renders {@code batch} in up to {@code threads} consecutive chunks and returns the files in order.
+     * A chunk stops after the file that takes its own line count to {@code lineBudget}: no file after
+     * it can fit in the diff, whatever the chunks before it used.
+     */
+    private List<FileDiffDto> renderBatch(Repository repo, List<DiffEntry> batch, int lineBudget,
+                                          boolean withPatches, DiffOptions options) throws IOException {
+        if (batch.size() <= 1) {
+            return renderChunk(repo, batch, lineBudget, withPatches, options);
+        }
+        int chunkSize = (batch.size() + threads - 1) / threads;
+        List<Future<List<FileDiffDto>>> chunks = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i += chunkSize) {
+            List<DiffEntry> chunk = batch.subList(i, Math.min(batch.size(), i + chunkSize));
+            chunks.add(executor.submit(() -> renderChunk(repo, chunk, lineBudget, withPatches, options)));
+        }
+
+        List<FileDiffDto> files = new ArrayList<>(batch.size());
+        try {
+            for (Future<List<FileDiffDto>> chunk : chunks) {
+                List<FileDiffDto> rendered = chunk.get();
+                files.addAll(rendered);
+                if (lineCount(rendered) >= lineBudget) {
+                    break;  // later chunks are past the budget
+                }
+            }
+        } catch (InterruptedException e) {
+            chunks.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while computing diff", e);
+        } catch (ExecutionException e) {
+            chunks.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException("Failed to compute diff", e.getCause());
+        }
+        return files;
+    }
+
+    private List<FileDiffDto> renderChunk(Repository repo, List<DiffEntry> chunk, int lineBudget,
+                                          boolean withPatches, DiffOptions options) throws IOException {
+        List<FileDiffDto> files = new ArrayList<>(chunk.size());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int lines = 0;
+        try (ObjectReader reader = repo.newObjectReader();
+             RecordingFormatter df = new RecordingFormatter(out, withPatches)) {
+            df.setReader(reader, repo.getConfig());
+            df.setBinaryFileThreshold((int) Math.min(maxFileBytes, Integer.MAX_VALUE));
+            configure(df, options);
+            for (DiffEntry de : chunk) {
+                if (lines >= lineBudget) {
+                    break;
+                }
+                FileDiffDto file = render(df, reader, out, de);
+                lines += file.getAdditions() + file.getDeletions();
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private static int lineCount(List<FileDiffDto> files) {
+        int lines = 0;
+        for (FileDiffDto file : files) {
+            lines += file.getAdditions() + file.getDeletions();
+        }
+        return lines;
+    }
+
+    /**
+     * One file: {@code format(entry)} reads both blobs once and computes the edit list, which the
+     * {@link RecordingFormatter} keeps for the stats while writing the patch text from the same
+     * loaded contents.
+     */
+    private FileDiffDto render(RecordingFormatter df, ObjectReader reader, ByteArrayOutputStream out,
+                               DiffEntry de) throws IOException {
+        String newPath = de.getChangeType() == DiffEntry.ChangeType.DELETE
+                ? de.getOldPath() : de.getNewPath();
+        String oldPath = (de.getChangeType() == DiffEntry.ChangeType.RENAME
+                || de.getChangeType() == DiffEntry.ChangeType.COPY)
+                ? de.getOldPath() : null;
+        if (tooLarge(reader, de)) {
+            FileDiffDto file = new FileDiffDto(newPath, oldPath, de.getChangeType().name(), 0, 0, false, null);
+            file.setTooLarge(true);
+            return file;
+        }
+
+        out.reset();
+        df.format(de);
+        df.flush();
+        FileHeader header = df.header;
+        int add = 0;
+        int del = 0;
+        for (Edit edit : header.toEditList()) {
+            add += edit.getEndB() - edit.getBeginB();
+            del += edit.getEndA() - edit.getBeginA();
+        }
+        boolean binary = header.getPatchType() != FileHeader.PatchType.UNIFIED;
+
+        String patch = df.withPatches && !binary ? out.toString(StandardCharsets.UTF_8) : null;
+        return new FileDiffDto(newPath, oldPath, de.getChangeType().name(), add, del, binary, patch);
+    }
+
+    /**
+     * Keeps the header (edit list and patch type) of the last formatted file, and writes its patch
+     * only when patches are wanted and the file is text; stats-only renders write nothing.
+     */
+    private static final class RecordingFormatter extends DiffFormatter {
+        private final boolean withPatches;
+        private FileHeader header;
+
+        RecordingFormatter(OutputStream out, boolean withPatches) {
+            super(out);
+            this.withPatches = withPatches;
+        }
+
+        @Override
+        public void format(FileHeader head, RawText a, RawText b, DiffDriver diffDriver) throws IOException {
+            header = head;
+            if (withPatches && head.getPatchType() == FileHeader.PatchType.UNIFIED) {
+                super.format(head, a, b, diffDriver);
+            }
+        }
+    }
+
+    /** True when either side is a blob over the per-file size limit; its content is then never read. */
+    private boolean tooLarge(ObjectReader reader, DiffEntry de) throws IOException {
+        for (DiffEntry.Side side : DiffEntry.Side.values()) {
+            FileMode mode = de.getMode(side);
+            ObjectId id = de.getId(side).toObjectId();
+            if (mode.getObjectType() == Constants.OBJ_BLOB && !ObjectId.zeroId().equals(id)
+                    && reader.getObjectSize(id, Constants.OBJ_BLOB) > maxFileBytes) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Changed files in tree order, renames paired; {@code renamesLimited} when pairing was cut short. */
+    private record Scan(List<DiffEntry> entries, boolean renamesLimited) {
+    }
+
+    /**
+     * Lists the changed files, then pairs renames under the configured limit and time budget. When
+     * the budget runs out the detection is redone for exact renames only, which is a hash lookup.
+     */
+    private Scan scan(Repository repo, ObjectReader reader, RevTree oldTree, RevTree newTree) throws IOException {
+        List<DiffEntry> raw;
+        try (TreeWalk tw = new TreeWalk(reader)) {
+            tw.setRecursive(true);
+            tw.setFilter(TreeFilter.ANY_DIFF);
+            tw.addTree(oldTree == null ? new EmptyTreeIterator() : parser(reader, oldTree));
+            tw.addTree(parser(reader, newTree));
+            raw = DiffEntry.scan(tw);
+        }
+
+        DiffConfig config = repo.getConfig().get(DiffConfig.KEY);
+        RenameDetector renames = new RenameDetector(reader, config);
+        renames.setRenameLimit(renameLimit);
+        renames.addAll(raw);
+        try {
+            List<DiffEntry> entries = renames.compute(reader, new DeadlineMonitor(renameBudgetMillis));
+            return new Scan(entries, renames.isOverRenameLimit());
+        } catch (CanceledException e) {
+            RenameDetector exact = new RenameDetector(reader, config);
+            exact.setRenameLimit(1);    // above the limit only exact renames are paired
+            exact.addAll(raw);
+            return new Scan(exact.compute(), true);
+        }
+    }
+
+    private static void configure(DiffFormatter df, DiffOptions options) {
+        df.setDiffAlgorithm(options.algorithm().toDiffAlgorithm());
+        df.setDiffComparator(options.whitespace().comparator());
+    }
+
+    /** Progress monitor that only reports cancellation once a deadline has passed (non-positive: never). */
+    private static final class DeadlineMonitor implements ProgressMonitor {
+        private final long deadline;
+
+        DeadlineMonitor(long budgetMillis) {
+            this.deadline = budgetMillis > 0 ? System.nanoTime() + budgetMillis * 1_000_000L : Long.MAX_VALUE;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return System.nanoTime() > deadline;
+        }
+
+        @Override
+        public void start(int totalTasks) {
+        }
+
+        @Override
+        public void beginTask(String title, int totalWork) {
+        }
+
+        @Override
+        public void update(int completed) {
+        }
+
+        @Override
+        public void endTask() {
+        }
+
+        @Override
+        public void showDuration(boolean enabled) {
+        }
+    }
+
+    private static AbstractTreeIterator parser(ObjectReader reader, RevTree tree) throws IOException {
+        CanonicalTreeParser parser = new CanonicalTreeParser();
+        parser.reset(reader, tree.getId());
+        return parser;
+    }
+}
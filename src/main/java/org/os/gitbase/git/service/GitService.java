@@ -1,53 +1,100 @@
 package org.os.gitbase.git.service;
 
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jgit.lib.ObjectId;
 import org.os.gitbase.auth.entity.User;
 import org.os.gitbase.git.dto.BranchSummaryDto;
 import org.os.gitbase.git.dto.CommitDetailDto;
+import org.os.gitbase.git.dto.CommitFilesDto;
 import org.os.gitbase.git.dto.CommitPageDto;
 import org.os.gitbase.git.dto.CompareDto;
 import org.os.gitbase.git.dto.DirectoryListingDto;
 import org.os.gitbase.git.dto.FileContentDto;
 import org.os.gitbase.git.dto.FileTreeNode;
 import org.os.gitbase.git.dto.RepositoryInfo;
-import org.os.gitbase.git.dto.RepositoryTreeDto;
+import org.os.gitbase.git.dto.RepositoryPageDto;
+import org.os.gitbase.git.util.DiffOptions;
+import org.os.gitbase.git.util.RawBlob;
 
+import java.io.OutputStream;
 import java.util.List;
 
 public interface GitService {
     void createRepository(String user, String repoName, boolean isPrivate);
     RepositoryInfo getRepositoryInfo(String username, String repoName);
-    List<RepositoryTreeDto> listRepositories(String user);
+
+    /**
+     * One page of a user's repositories as lightweight summaries served from
+     * {@link org.os.gitbase.git.cache.RepositorySummaryCache}. Full file trees are only built when
+     * {@code includeTree} is set.
+     */
+    RepositoryPageDto listRepositories(String user, int page, int size, boolean includeTree);
     void deleteRepository(String user, String repoName);
 
     /** Full recursive file tree for a single repository at the given ref (null/blank = default branch). */
     FileTreeNode getTree(String username, String repoName, String ref);
 
+    /**
+     * Depth-limited tree for lazy browsing: {@code depth} levels below {@code path} at the given ref.
+     * Every node carries its object id, so unexpanded directories can be fetched later by id.
+     */
+    FileTreeNode getTree(String username, String repoName, String ref, String path, int depth);
+
+    /** Depth-limited tree for a tree object id. Tree ids are immutable, so clients may cache by id. */
+    FileTreeNode getTreeById(String username, String repoName, String sha, String path, int depth);
+
     /** Raw content of a single file (blob) at the given ref. */
     FileContentDto getFileContent(String username, String repoName, String ref, String path);
 
+    /** Resolves {@code path} at {@code ref} for raw download without loading its content. */
+    RawBlob resolveBlob(String username, String repoName, String ref, String path);
+
+    /** Streams bytes {@code [offset, offset + length)} of a blob into {@code out}. */
+    void writeBlob(String username, String repoName, ObjectId blobId, long offset, long length, OutputStream out);
+
     /**
      * GitHub-style listing of one directory level at the given path/ref, where each entry
      * carries the commit that last modified it, plus the repo's latest commit on the ref.
      */
     DirectoryListingDto listContents(String username, String repoName, String ref, String path);
 
-    /** Paginated commit history for a ref, optionally filtered to a single path. */
-    CommitPageDto listCommitHistory(String username, String repoName, String ref, String path, int page, int size);
+    /**
+     * Paginated commit history for a ref, optionally filtered to a single path. A non-blank
+     * {@code cursor} (the previous page's {@code nextCursor}) resumes the walk directly and takes
+     * precedence over {@code page}, which is kept for compatibility.
+     */
+    CommitPageDto listCommitHistory(String username, String repoName, String ref, String path,
+                                    int page, int size, String cursor);
+
+    /** Full metadata and per-file diff (vs first parent) for a single commit; large diffs are truncated. */
+    CommitDetailDto getCommitDetail(String username, String repoName, String sha, DiffOptions options);
+
+    /** Changed files of a commit with line stats only (no patch text). */
+    CommitFilesDto listCommitFiles(String username, String repoName, String sha, DiffOptions options);
+
+    /**
+     * Streams the unified diff of one changed file ({@code path}) or of the files at indexes
+     * {@code [from, from + count)} of {@link #listCommitFiles} into {@code out}.
+     */
+    void writeCommitPatch(String username, String repoName, String sha, String path, int from, int count,
+                          DiffOptions options, OutputStream out);
 
-    /** Full metadata and per-file diff (vs first parent) for a single commit. */
-    CommitDetailDto getCommitDetail(String username, String repoName, String sha);
+    /**
+     * Streams the blame of {@code path} at {@code ref} (null means HEAD) into {@code out} as
+     * newline-delimited JSON, top of the file first. Binary files and files over 1 MB are
+     * rejected with {@link IllegalArgumentException} before anything is written.
+     */
+    void writeBlame(String username, String repoName, String ref, String path, OutputStream out);
 
     /** Live list of local branches (refs/heads) with their head commit; default branch flagged. */
     List<BranchSummaryDto> listBranches(String username, String repoName);
 
     /** Three-way comparison of two refs (ahead/behind, added commits, merge-base diff). PR basis. */
-    CompareDto compare(String username, String repoName, String base, String head);
+    CompareDto compare(String username, String repoName, String base, String head, DiffOptions options);
 
-    void handleReceivePack(String username, String repoName, HttpServletRequest request, HttpServletResponse response);
-    void handleUploadPack(String username, String repoName,
-                                 HttpServletRequest request,
-                                 HttpServletResponse response);
-    void handleInfoRefs(String username, String repoName, String service, HttpServletResponse response);
+    /**
+     * The commits {@code head} adds over {@code base}, newest first, one page at a time. A non-blank
+     * {@code cursor} (from {@link CompareDto#commitsCursor()} or a previous page) resumes the list.
+     */
+    CommitPageDto listCompareCommits(String username, String repoName, String base, String head,
+                                     String cursor, int size);
 }
@@ -1,52 +1,55 @@
 package org.os.gitbase.git.service;
 
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.LogCommand;
-import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffFormatter;
-import org.eclipse.jgit.diff.Edit;
-import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.lib.*;
-import org.eclipse.jgit.patch.FileHeader;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
-import org.eclipse.jgit.transport.ReceivePack;
-import org.eclipse.jgit.transport.RefAdvertiser;
-import org.eclipse.jgit.transport.UploadPack;
-import org.eclipse.jgit.treewalk.AbstractTreeIterator;
-import org.eclipse.jgit.treewalk.CanonicalTreeParser;
-import org.eclipse.jgit.treewalk.EmptyTreeIterator;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.os.gitbase.auth.entity.User;
 import org.os.gitbase.auth.repository.UserRepository;
+import org.os.gitbase.git.cache.RepositoryRegistry;
+import org.os.gitbase.git.cache.RepositorySummaryCache;
 import org.os.gitbase.git.dto.BranchSummaryDto;
 import org.os.gitbase.git.dto.CommitDetailDto;
+import org.os.gitbase.git.dto.CommitFilesDto;
 import org.os.gitbase.git.dto.CommitPageDto;
 import org.os.gitbase.git.dto.CommitSummaryDto;
 import org.os.gitbase.git.dto.CompareDto;
 import org.os.gitbase.git.dto.DirEntryDto;
-import org.os.gitbase.git.dto.FileDiffDto;
 import org.os.gitbase.git.dto.DirectoryListingDto;
 import org.os.gitbase.git.dto.FileContentDto;
 import org.os.gitbase.git.dto.FileTreeNode;
 import org.os.gitbase.git.dto.RepositoryInfo;
-import org.os.gitbase.git.dto.RepositoryTreeDto;
+import org.os.gitbase.git.dto.RepositoryPageDto;
+import org.os.gitbase.git.dto.RepositorySummaryDto;
 import org.os.gitbase.git.entity.RepositoryGit;
-import org.os.gitbase.git.hook.CodeReviewHook;
+import org.os.gitbase.git.maintenance.CommitGraphService;
 import org.os.gitbase.git.repository.GitRepositoryDB;
+import org.os.gitbase.git.util.AheadBehindCounter;
+import org.os.gitbase.git.util.DiffOptions;
+import org.os.gitbase.git.util.DiffResult;
+import org.os.gitbase.git.util.FileTreeBuilder;
+import org.os.gitbase.git.util.HistoryPager;
+import org.os.gitbase.git.util.LastCommitResolver;
+import org.os.gitbase.git.util.RawBlob;
 import org.os.gitbase.exception.ResourceNotFoundException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -55,11 +58,13 @@ import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.regex.Pattern;
 
+import static org.os.gitbase.constant.Constant.GITBASE_MAPPING_REQUEST;
+
+@Slf4j
 @Service
 public class GitServiceImpl implements GitService {
 
@@ -68,9 +73,24 @@ public class GitServiceImpl implements GitService {
     private static final Pattern VALID_USERNAME = Pattern.compile("^[a-zA-Z0-9._-]+$");
     private final GitRepositoryDB gitRepositoryDB;
     private final UserRepository userRepository;
-    public GitServiceImpl(GitRepositoryDB gitRepositoryDB, UserRepository userRepository) {
+    private final RepositoryRegistry repositoryRegistry;
+    private final RepositorySummaryCache repositorySummaryCache;
+    private final LastCommitIndexService lastCommitIndexService;
+    private final DiffService diffService;
+    private final CompareSnapshotStore compareSnapshotStore;
+    private final BlameService blameService;
+    public GitServiceImpl(GitRepositoryDB gitRepositoryDB, UserRepository userRepository,
+                          RepositoryRegistry repositoryRegistry, RepositorySummaryCache repositorySummaryCache,
+                          LastCommitIndexService lastCommitIndexService, DiffService diffService,
+                          CompareSnapshotStore compareSnapshotStore, BlameService blameService) {
         this.gitRepositoryDB = gitRepositoryDB;
         this.userRepository = userRepository;
+        this.repositoryRegistry = repositoryRegistry;
+        this.repositorySummaryCache = repositorySummaryCache;
+        this.lastCommitIndexService = lastCommitIndexService;
+        this.diffService = diffService;
+        this.compareSnapshotStore = compareSnapshotStore;
+        this.blameService = blameService;
     }
 
     public void createRepository(String user, String repoName, boolean isPrivate) {
@@ -91,6 +111,7 @@ public class GitServiceImpl implements GitService {
             config.setBoolean("http", null, "receivepack", true);
             config.setBoolean("core", null, "bare", true);
             config.setString("gitbase", null, "visibility", isPrivate ? "private" : "public");
+            CommitGraphService.configure(config);
             config.save();
             repo.close();
 
@@ -107,37 +128,6 @@ public class GitServiceImpl implements GitService {
         }
     }
 
-    public void handleReceivePack(String username, String repoName,
-                                  HttpServletRequest request,
-                                  HttpServletResponse response) {
-        // Validate inputs
-        validateUsername(username);
-        validateRepositoryName(repoName);
-
-        String repoPath = getRepositoryPath(username, repoName);
-
-        // Check if repository exists
-        if (!repositoryExists(username, repoName)) {
-            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            return;
-        }
-
-        try (Repository repo = new FileRepositoryBuilder()
-                .setGitDir(new File(repoPath))
-                .readEnvironment()
-                .build()) {
-
-            ReceivePack receivePack = new ReceivePack(repo);
-            receivePack.setPreReceiveHook(new CodeReviewHook());
-
-            response.setContentType("application/x-git-receive-pack-result");
-            receivePack.receive(request.getInputStream(), response.getOutputStream(), null);
-
-        } catch (Exception e) {
-            throw new RuntimeException("Git receive-pack failed for " + username + "/" + repoName, e);
-        }
-    }
-
     /**
      * Constructs the full filesystem path to a Git repository
      *
@@ -241,51 +231,45 @@ public class GitServiceImpl implements GitService {
         System.out.println("=== END DEBUG ===\n");
     }
 
-    public List<RepositoryTreeDto> listRepositories(String user) {
-        List<RepositoryGit> repos = gitRepositoryDB.findByOwner(
-                userRepository.findUserByName(user).get()
-        );
+    public RepositoryPageDto listRepositories(String user, int page, int size, boolean includeTree) {
+        validateUsername(user);
+        if (userRepository.findUserByName(user).isEmpty()) {
+            throw new ResourceNotFoundException("User not found: " + user);
+        }
 
-        List<RepositoryTreeDto> result = new ArrayList<>();
+        int safePage = Math.max(page, 0);
+        int safeSize = (size <= 0 || size > 100) ? 30 : size;
+        Page<RepositoryGit> repos = gitRepositoryDB.findByOwnerName(
+                user, PageRequest.of(safePage, safeSize, Sort.by("repoName")));
 
+        List<RepositorySummaryDto> result = new ArrayList<>(repos.getNumberOfElements());
         for (RepositoryGit repoEntity : repos) {
-            String repoPath = Paths.get(repositoriesPath, user, repoEntity.getRepoName() + ".git").toString();
-
-            try (Repository repo = new FileRepositoryBuilder()
-                    .setGitDir(new File(repoPath))
-                    .setBare()
-                    .build()) {
-
-                ObjectId headId = resolveHead(repo); // Smart resolution with auto-fix
-
-                if (headId == null) {
-                    System.out.println("⚠️ Repository " + repoEntity.getRepoName() + " is empty");
-                    result.add(new RepositoryTreeDto(repoEntity.getRepoName(), repoEntity.isPrivate(), null));
-                    continue;
-                }
-
-                try (RevWalk revWalk = new RevWalk(repo)) {
-                    RevCommit commit = revWalk.parseCommit(headId);
-                    RevTree tree = commit.getTree();
-
-                    FileTreeNode root = buildFileTree(repo, tree);
-
-                    RepositoryTreeDto dto = new RepositoryTreeDto();
-                    dto.setRepoName(repoEntity.getRepoName());
-                    dto.setPrivate(repoEntity.isPrivate());
-                    dto.setRoot(root);
+            RepositorySummaryCache.Summary summary = repositorySummaryCache.get(user, repoEntity.getRepoName());
+            RepositorySummaryDto dto = new RepositorySummaryDto(repoEntity.getRepoName(), repoEntity.isPrivate(),
+                    summary.defaultBranch(), summary.lastCommitTime(), summary.sizeBytes());
+            if (includeTree && summary.lastCommitTime() > 0) {
+                dto.setRoot(loadRootTree(user, repoEntity.getRepoName()));
+            }
+            result.add(dto);
+        }
 
-                    result.add(dto);
-                }
+        return new RepositoryPageDto(safePage, safeSize, repos.getTotalElements(), repos.hasNext(), result);
+    }
 
-            } catch (Exception e) {
-                System.err.println("❌ Failed to load repository: " + repoEntity.getRepoName());
-                e.printStackTrace();
-                result.add(new RepositoryTreeDto(repoEntity.getRepoName(), repoEntity.isPrivate(), null));
+    /** Full tree of the default branch for the opt-in {@code includeTree} listing; null while the repository is empty. */
+    private FileTreeNode loadRootTree(String user, String repoName) {
+        try (Repository repo = repositoryRegistry.open(user, repoName)) {
+            ObjectId headId = resolveHead(repo);
+            if (headId == null) {
+                return null;
             }
+            try (RevWalk revWalk = new RevWalk(repo)) {
+                return FileTreeBuilder.build(repo, revWalk.parseCommit(headId).getTree());
+            }
+        } catch (IOException e) {
+            log.warn("Failed to load repository tree for {}/{}: {}", user, repoName, e.getMessage(), e);
+            throw new RuntimeException("Failed to read tree for " + user + "/" + repoName, e);
         }
-
-        return result;
     }
 
     private ObjectId resolveHead(Repository repo) throws IOException {
@@ -334,49 +318,6 @@ public class GitServiceImpl implements GitService {
         }
     }
 
-    private FileTreeNode buildFileTree(Repository repo, RevTree tree) throws IOException {
-        FileTreeNode root = new FileTreeNode("root", true); // Changed from "/" to "root"
-
-        try (TreeWalk treeWalk = new TreeWalk(repo)) {
-            treeWalk.addTree(tree);
-            treeWalk.setRecursive(true);
-
-            int fileCount = 0;
-            while (treeWalk.next()) {
-                String path = treeWalk.getPathString();
-                addPathToTree(root, path);
-                fileCount++;
-            }
-
-            System.out.println("📁 Processed " + fileCount + " files");
-        }
-
-        return root;
-    }
-
-    private void addPathToTree(FileTreeNode root, String path) {
-        String[] parts = path.split("/");
-        FileTreeNode current = root;
-
-        for (int i = 0; i < parts.length; i++) {
-            String part = parts[i];
-            boolean isDir = (i < parts.length - 1);
-
-            FileTreeNode child = current.getChildren()
-                    .stream()
-                    .filter(c -> c.getName().equals(part))
-                    .findFirst()
-                    .orElse(null);
-
-            if (child == null) {
-                child = new FileTreeNode(part, isDir);
-                current.getChildren().add(child);
-            }
-
-            current = child;
-        }
-    }
-
     /**
      * Deletes a repository: removes the PostgreSQL metadata row first, then the bare
      * repository directory on disk. Throws {@link ResourceNotFoundException} if no
@@ -396,7 +337,11 @@ public class GitServiceImpl implements GitService {
 
         // Remove metadata first so the repo disappears from listings even if the
         // filesystem delete partially fails.
+        lastCommitIndexService.purge(entity);
+        compareSnapshotStore.purge(entity);
         gitRepositoryDB.delete(entity);
+        repositoryRegistry.invalidate(username, repoName);
+        repositorySummaryCache.invalidate(username, repoName);
 
         String repoPath = getRepositoryPath(username, repoName);
         try {
@@ -419,11 +364,7 @@ public class GitServiceImpl implements GitService {
         RepositoryGit repoEntity = repoEntityOpt.orElseThrow(() ->
                 new ResourceNotFoundException("Repository not found: " + username + "/" + repoName));
 
-        String repoPath = Paths.get(repositoriesPath, username, repoName + ".git").toString();
-
-        try (Repository repo = new FileRepositoryBuilder()
-                .setGitDir(new File(repoPath))
-                .build();
+        try (Repository repo = repositoryRegistry.open(username, repoName);
              Git git = new Git(repo)) {
 
             // ✅ Fetch last commit
@@ -457,11 +398,7 @@ public class GitServiceImpl implements GitService {
             throw new ResourceNotFoundException("Repository not found: " + username + "/" + repoName);
         }
 
-        String repoPath = Paths.get(repositoriesPath, username, repoName + ".git").toString();
-        try (Repository repo = new FileRepositoryBuilder()
-                .setGitDir(new File(repoPath))
-                .setBare()
-                .build()) {
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
 
             ObjectId commitId = resolveRef(repo, ref);
             if (commitId == null) {
@@ -470,7 +407,41 @@ public class GitServiceImpl implements GitService {
             }
             try (RevWalk revWalk = new RevWalk(repo)) {
                 RevCommit commit = revWalk.parseCommit(commitId);
-                return buildFileTree(repo, commit.getTree());
+                return FileTreeBuilder.build(repo, commit.getTree());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read tree for " + username + "/" + repoName, e);
+        }
+    }
+
+    /**
+     * Depth-limited tree below {@code path} at the given ref. Only the subtrees within
+     * {@code depth} levels are read; deeper directories are returned with {@code truncated=true}.
+     */
+    @Override
+    public FileTreeNode getTree(String username, String repoName, String ref, String path, int depth) {
+        validateUsername(username);
+        validateRepositoryName(repoName);
+        if (depth < 1) {
+            throw new IllegalArgumentException("Tree depth must be at least 1");
+        }
+        if (!repositoryExists(username, repoName)) {
+            throw new ResourceNotFoundException("Repository not found: " + username + "/" + repoName);
+        }
+
+        String normPath = path == null ? "" : path.replaceAll("^/+|/+$", "");
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
+            ObjectId commitId = resolveRef(repo, ref);
+            if (commitId == null) {
+                if (!normPath.isEmpty()) {
+                    throw new ResourceNotFoundException("Path not found: " + normPath);
+                }
+                return new FileTreeNode("root", true);
+            }
+            try (RevWalk revWalk = new RevWalk(repo)) {
+                RevCommit commit = revWalk.parseCommit(commitId);
+                ObjectId treeId = resolveDirectory(repo, commit.getTree(), normPath);
+                return FileTreeBuilder.build(repo, treeId, normPath, depth);
             }
         } catch (IOException e) {
             throw new RuntimeException("Failed to read tree for " + username + "/" + repoName, e);
@@ -478,8 +449,59 @@ public class GitServiceImpl implements GitService {
     }
 
     /**
-     * Returns the raw content of a single file (blob) at the given ref. Text files are decoded
-     * as UTF-8; binary files return {@code binary=true} with null content.
+     * Depth-limited tree for a tree object id. {@code path} is only used to label the returned
+     * nodes (the caller knows where the tree sits); it is not resolved.
+     */
+    @Override
+    public FileTreeNode getTreeById(String username, String repoName, String sha, String path, int depth) {
+        validateUsername(username);
+        validateRepositoryName(repoName);
+        if (depth < 1) {
+            throw new IllegalArgumentException("Tree depth must be at least 1");
+        }
+        if (sha == null || !ObjectId.isId(sha)) {
+            throw new IllegalArgumentException("Invalid tree id: " + sha);
+        }
+        if (!repositoryExists(username, repoName)) {
+            throw new ResourceNotFoundException("Repository not found: " + username + "/" + repoName);
+        }
+
+        String normPath = path == null ? "" : path.replaceAll("^/+|/+$", "");
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
+            ObjectId treeId = ObjectId.fromString(sha);
+            try {
+                repo.open(treeId, Constants.OBJ_TREE);
+            } catch (MissingObjectException | IncorrectObjectTypeException e) {
+                throw new ResourceNotFoundException("Tree not found: " + sha);
+            }
+            return FileTreeBuilder.build(repo, treeId, normPath, depth);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read tree " + sha + " in " + username + "/" + repoName, e);
+        }
+    }
+
+    /** Tree id of the directory at {@code path} ("" = the root tree itself). */
+    private ObjectId resolveDirectory(Repository repo, RevTree root, String path) throws IOException {
+        if (path.isEmpty()) {
+            return root;
+        }
+        try (TreeWalk sub = TreeWalk.forPath(repo, path, root)) {
+            if (sub == null) {
+                throw new ResourceNotFoundException("Path not found: " + path);
+            }
+            if (!sub.getFileMode(0).equals(FileMode.TREE)) {
+                throw new IllegalArgumentException("Not a directory: " + path);
+            }
+            return sub.getObjectId(0);
+        }
+    }
+
+    /**
+     * Returns the content of a single file (blob) at the given ref. Text files are decoded as
+     * UTF-8; binary files return {@code binary=true} with null content. The blob size is checked
+     * before anything is read: files over {@link #MAX_PREVIEW_BYTES} (or stored as large objects)
+     * get a truncated preview read from the start of the stream, never the whole blob, and every
+     * response carries a raw download link pinned to the resolved commit.
      */
     @Override
     public FileContentDto getFileContent(String username, String repoName, String ref, String path) {
@@ -493,11 +515,7 @@ public class GitServiceImpl implements GitService {
             throw new ResourceNotFoundException("Repository not found: " + username + "/" + repoName);
         }
 
-        String repoPath = Paths.get(repositoriesPath, username, repoName + ".git").toString();
-        try (Repository repo = new FileRepositoryBuilder()
-                .setGitDir(new File(repoPath))
-                .setBare()
-                .build()) {
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
 
             ObjectId commitId = resolveRef(repo, ref);
             if (commitId == null) {
@@ -507,15 +525,39 @@ public class GitServiceImpl implements GitService {
             try (RevWalk revWalk = new RevWalk(repo)) {
                 RevCommit commit = revWalk.parseCommit(commitId);
                 try (TreeWalk treeWalk = TreeWalk.forPath(repo, path, commit.getTree())) {
-                    if (treeWalk == null) {
+                    if (treeWalk == null || treeWalk.getFileMode(0).getObjectType() != Constants.OBJ_BLOB) {
                         throw new ResourceNotFoundException("File not found: " + path);
                     }
-                    ObjectLoader loader = repo.open(treeWalk.getObjectId(0));
-                    byte[] bytes = loader.getBytes();
+                    ObjectLoader loader = repo.open(treeWalk.getObjectId(0), Constants.OBJ_BLOB);
+                    long size = loader.getSize();
+                    boolean truncated = loader.isLarge() || size > MAX_PREVIEW_BYTES;
+                    byte[] bytes;
+                    if (truncated) {
+                        try (InputStream in = loader.openStream()) {
+                            bytes = in.readNBytes(MAX_PREVIEW_BYTES);
+                        }
+                    } else {
+                        bytes = loader.getCachedBytes();
+                    }
                     boolean binary = isBinary(bytes);
-                    String content = binary ? null : new String(bytes, StandardCharsets.UTF_8);
+                    String content = null;
+                    Integer lineCount = null;
+                    if (!binary) {
+                        int length = truncated ? previewLength(bytes) : bytes.length;
+                        content = new String(bytes, 0, length, StandardCharsets.UTF_8);
+                        lineCount = truncated ? null : countLines(bytes);
+                    }
                     String resolvedRef = StringUtils.hasText(ref) ? ref : "HEAD";
-                    return new FileContentDto(path, resolvedRef, bytes.length, binary, content);
+                    FileContentDto dto = new FileContentDto(path, resolvedRef, size, binary, content);
+                    dto.setTruncated(truncated);
+                    dto.setLineCount(lineCount);
+                    dto.setRawUrl(UriComponentsBuilder.fromPath(GITBASE_MAPPING_REQUEST)
+                            .pathSegment(username, repoName, "raw")
+                            .queryParam("ref", commitId.name())
+                            .queryParam("path", path)
+                            .encode()
+                            .toUriString());
+                    return dto;
                 }
             }
         } catch (IOException e) {
@@ -524,9 +566,106 @@ public class GitServiceImpl implements GitService {
     }
 
     /**
-     * GitHub-style listing of one directory level. For each entry we run a path-filtered
-     * {@code git log -1} to find the commit that last modified it. Also returns the repo's
-     * latest commit on the ref for the "latest commit" bar.
+     * A preview ends after its last complete line, so it never shows half a line or half a character.
+     * A window without any newline is cut before a UTF-8 sequence it ends in the middle of.
+     */
+    private static int previewLength(byte[] bytes) {
+        for (int i = bytes.length - 1; i >= 0; i--) {
+            if (bytes[i] == '\n') {
+                return i + 1;
+            }
+        }
+        int start = bytes.length;
+        while (start > 0 && (bytes[start - 1] & 0xC0) == 0x80 && bytes.length - start < 3) {
+            start--;
+        }
+        if (start == 0) {
+            return bytes.length;
+        }
+        int lead = bytes[start - 1] & 0xFF;
+        int sequence = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        return bytes.length - (start - 1) < sequence ? start - 1 : bytes.length;
+    }
+
+    private static int countLines(byte[] bytes) {
+        int lines = 0;
+        for (byte b : bytes) {
+            if (b == '\n') {
+                lines++;
+            }
+        }
+        return bytes.length > 0 && bytes[bytes.length - 1] != '\n' ? lines + 1 : lines;
+    }
+
+    @Override
+    public RawBlob resolveBlob(String username, String repoName, String ref, String path) {
+        validateUsername(username);
+        validateRepositoryName(repoName);
+        if (!StringUtils.hasText(path)) {
+            throw new IllegalArgumentException("File path cannot be empty");
+        }
+        if (!repositoryExists(username, repoName)) {
+            throw new ResourceNotFoundException("Repository not found: " + username + "/" + repoName);
+        }
+
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
+            ObjectId commitId = resolveRef(repo, ref);
+            if (commitId == null) {
+                throw new ResourceNotFoundException("Ref not found: " + (StringUtils.hasText(ref) ? ref : "HEAD"));
+            }
+            try (RevWalk revWalk = new RevWalk(repo);
+                 TreeWalk treeWalk = TreeWalk.forPath(repo, path, revWalk.parseCommit(commitId).getTree())) {
+                if (treeWalk == null || treeWalk.getFileMode(0).getObjectType() != Constants.OBJ_BLOB) {
+                    throw new ResourceNotFoundException("File not found: " + path);
+                }
+                ObjectId blobId = treeWalk.getObjectId(0);
+                ObjectLoader loader = repo.open(blobId, Constants.OBJ_BLOB);
+                boolean binary;
+                try (InputStream in = loader.openStream()) {
+                    binary = RawText.isBinary(in);
+                }
+                return new RawBlob(blobId, loader.getSize(), binary, treeWalk.getNameString(),
+                        ref != null && ObjectId.isId(ref));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read file " + path + " in " + username + "/" + repoName, e);
+        }
+    }
+
+    @Override
+    public void writeBlob(String username, String repoName, ObjectId blobId, long offset, long length,
+                          OutputStream out) {
+        validateUsername(username);
+        validateRepositoryName(repoName);
+
+        try (Repository repo = repositoryRegistry.open(username, repoName);
+             InputStream in = repo.open(blobId, Constants.OBJ_BLOB).openStream()) {
+            // Large blobs stream from the pack; only a small buffer is ever on the heap.
+            in.skipNBytes(offset);
+            byte[] buffer = new byte[64 * 1024];
+            long remaining = length;
+            while (remaining > 0) {
+                int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (n < 0) {
+                    break;
+                }
+                out.write(buffer, 0, n);
+                remaining -= n;
+            }
+        } catch (MissingObjectException e) {
+            throw new ResourceNotFoundException("Blob not found: " + blobId.name());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to stream blob " + blobId.name() + " in " + username + "/" + repoName, e);
+        }
+    }
+
+    /**
+     * GitHub-style listing of one directory level, with the commit that last modified each entry
+     * and the ref's latest commit for the "latest commit" bar. Last commits come from the
+     * per-directory index of {@link LastCommitIndexService} (stored, or derived from the parents'
+     * rows); on a miss, one {@link LastCommitResolver} walk shared by all entries resolves them
+     * within a time budget. {@code complete} is false when that walk ran out of budget or lost an
+     * entry to skewed commit dates; those entries have no last commit.
      */
     @Override
     public DirectoryListingDto listContents(String username, String repoName, String ref, String path) {
@@ -538,12 +677,8 @@ public class GitServiceImpl implements GitService {
         }
 
         String normPath = path == null ? "" : path.replaceAll("^/+|/+$", "");
-        String repoPath = Paths.get(repositoriesPath, username, repoName + ".git").toString();
 
-        try (Repository repo = new FileRepositoryBuilder()
-                .setGitDir(new File(repoPath))
-                .setBare()
-                .build()) {
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
 
             ObjectId commitId = resolveRef(repo, ref);
             String refLabel = StringUtils.hasText(ref) ? ref : "HEAD";
@@ -552,25 +687,12 @@ public class GitServiceImpl implements GitService {
                 return new DirectoryListingDto(normPath, refLabel, null, new ArrayList<>());
             }
 
-            try (RevWalk revWalk = new RevWalk(repo); Git git = new Git(repo)) {
+            try (RevWalk revWalk = new RevWalk(repo)) {
                 RevCommit headCommit = revWalk.parseCommit(commitId);
                 CommitSummaryDto latest = toSummary(headCommit);
 
                 // Resolve the tree object whose immediate children we want to list.
-                ObjectId treeToList;
-                if (normPath.isEmpty()) {
-                    treeToList = headCommit.getTree();
-                } else {
-                    try (TreeWalk sub = TreeWalk.forPath(repo, normPath, headCommit.getTree())) {
-                        if (sub == null) {
-                            throw new ResourceNotFoundException("Path not found: " + normPath);
-                        }
-                        if (!sub.getFileMode(0).equals(FileMode.TREE)) {
-                            throw new IllegalArgumentException("Not a directory: " + normPath);
-                        }
-                        treeToList = sub.getObjectId(0);
-                    }
-                }
+                ObjectId treeToList = resolveDirectory(repo, headCommit.getTree(), normPath);
 
                 List<DirEntryDto> entries = new ArrayList<>();
                 try (TreeWalk tw = new TreeWalk(repo)) {
@@ -578,33 +700,33 @@ public class GitServiceImpl implements GitService {
                     tw.setRecursive(false);
                     while (tw.next()) {
                         String name = tw.getNameString();
-                        boolean isDir = tw.isSubtree();
                         String fullPath = normPath.isEmpty() ? name : normPath + "/" + name;
-                        CommitSummaryDto last = lastCommitForPath(git, commitId, fullPath);
-                        entries.add(new DirEntryDto(
-                                name,
-                                fullPath,
-                                isDir ? "dir" : "file",
-                                last != null ? last.getMessage() : null,
-                                last != null ? last.getShortSha() : null,
-                                last != null ? last.getDate() : 0L
-                        ));
+                        entries.add(new DirEntryDto(name, fullPath, tw.isSubtree() ? "dir" : "file", null, null, 0L));
+                    }
+                }
+
+                // Indexed per (commit, directory); otherwise one history walk resolves every entry at once.
+                LastCommitResolver.Result lastCommits = lastCommitIndexService.lastCommits(repo, username, repoName,
+                        headCommit, normPath, entries.stream().map(DirEntryDto::getPath).toList());
+                for (DirEntryDto entry : entries) {
+                    RevCommit last = lastCommits.commits().get(entry.getPath());
+                    if (last != null) {
+                        CommitSummaryDto summary = toSummary(last);
+                        entry.setLastCommitMessage(summary.getMessage());
+                        entry.setLastCommitSha(summary.getShortSha());
+                        entry.setLastCommitDate(summary.getDate());
                     }
                 }
 
-                return new DirectoryListingDto(normPath, refLabel, latest, entries);
+                DirectoryListingDto listing = new DirectoryListingDto(normPath, refLabel, latest, entries);
+                listing.setComplete(lastCommits.complete());
+                return listing;
             }
-        } catch (IOException | GitAPIException e) {
+        } catch (IOException e) {
             throw new RuntimeException("Failed to list contents of " + username + "/" + repoName, e);
         }
     }
 
-    /** Most recent commit that modified {@code path}, starting from {@code start}; null if none. */
-    private CommitSummaryDto lastCommitForPath(Git git, ObjectId start, String path) throws GitAPIException, IOException {
-        Iterator<RevCommit> it = git.log().add(start).addPath(path).setMaxCount(1).call().iterator();
-        return it.hasNext() ? toSummary(it.next()) : null;
-    }
-
     private CommitSummaryDto toSummary(RevCommit commit) {
         String sha = commit.getName();
         String shortSha = sha.length() >= 7 ? sha.substring(0, 7) : sha;
@@ -645,10 +767,14 @@ public class GitServiceImpl implements GitService {
 
     /**
      * Paginated commit history for a ref (default branch when ref is null/blank), optionally
-     * filtered to commits touching {@code path}. Read live from JGit via {@code git log}.
+     * filtered to commits touching {@code path}. Each page is one date-ordered walk by
+     * {@link HistoryPager}: {@code nextCursor} holds the walk's frontier (plus any returned commits
+     * it could reach again), and passing it back resumes the walk there, so every page costs about
+     * {@code size} commits. Without a cursor, {@code page} skips {@code page * size} commits first.
      */
     @Override
-    public CommitPageDto listCommitHistory(String username, String repoName, String ref, String path, int page, int size) {
+    public CommitPageDto listCommitHistory(String username, String repoName, String ref, String path,
+                                           int page, int size, String cursor) {
         validateUsername(username);
         validateRepositoryName(repoName);
         if (!repositoryExists(username, repoName)) {
@@ -658,40 +784,41 @@ public class GitServiceImpl implements GitService {
         int safePage = Math.max(page, 0);
         int safeSize = (size <= 0 || size > 100) ? 30 : size;
         String refLabel = StringUtils.hasText(ref) ? ref : "HEAD";
+        String normPath = StringUtils.hasText(path) ? path.replaceAll("^/+|/+$", "") : null;
 
-        String repoPath = Paths.get(repositoriesPath, username, repoName + ".git").toString();
-        try (Repository repo = new FileRepositoryBuilder()
-                .setGitDir(new File(repoPath))
-                .setBare()
-                .build()) {
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
 
-            ObjectId startId = resolveRef(repo, ref);
-            if (startId == null) {
-                return new CommitPageDto(refLabel, safePage, safeSize, false, new ArrayList<>());
+            // A cursor resumes the walk where the previous page stopped; page offsets re-walk
+            // page * size commits and are kept only for older clients.
+            HistoryPager.Cursor from;
+            int skip;
+            if (StringUtils.hasText(cursor)) {
+                from = HistoryPager.decodeCursor(cursor);
+                skip = 0;
+            } else {
+                ObjectId startId = resolveRef(repo, ref);
+                if (startId == null) {
+                    return new CommitPageDto(refLabel, safePage, safeSize, false, new ArrayList<>());
+                }
+                from = new HistoryPager.Cursor(List.of(startId), List.of());
+                skip = safePage * safeSize;
             }
 
-            try (Git git = new Git(repo)) {
-                LogCommand log = git.log().add(startId);
-                if (StringUtils.hasText(path)) {
-                    log.addPath(path.replaceAll("^/+|/+$", ""));
-                }
-                // Fetch one extra commit to detect whether a next page exists.
-                log.setSkip(safePage * safeSize).setMaxCount(safeSize + 1);
-
-                List<CommitSummaryDto> commits = new ArrayList<>();
-                boolean hasNext = false;
-                int count = 0;
-                for (RevCommit c : log.call()) {
-                    if (count == safeSize) {
-                        hasNext = true;
-                        break;
-                    }
-                    commits.add(toSummary(c));
-                    count++;
-                }
-                return new CommitPageDto(refLabel, safePage, safeSize, hasNext, commits);
+            HistoryPager.Page result;
+            try {
+                result = HistoryPager.page(repo, from, List.of(), normPath, skip, safeSize);
+            } catch (MissingObjectException | IncorrectObjectTypeException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+
+            List<CommitSummaryDto> commits = new ArrayList<>(result.commits().size());
+            for (RevCommit c : result.commits()) {
+                commits.add(toSummary(c));
             }
-        } catch (IOException | GitAPIException e) {
+            CommitPageDto dto = new CommitPageDto(refLabel, safePage, safeSize, result.next() != null, commits);
+            dto.setNextCursor(HistoryPager.encodeCursor(result.next()));
+            return dto;
+        } catch (IOException e) {
             throw new RuntimeException("Failed to list commits for " + username + "/" + repoName, e);
         }
     }
@@ -699,10 +826,12 @@ public class GitServiceImpl implements GitService {
     /**
      * Full metadata and per-file unified diff for a single commit, compared against its first
      * parent (or the empty tree for a root commit). Binary files report {@code binary=true}
-     * with null patch text.
+     * with null patch text. The inline diff has the same file and line budget as compare; beyond
+     * it the detail is flagged truncated and the rest is read through {@link #listCommitFiles}
+     * and {@link #writeCommitPatch}.
      */
     @Override
-    public CommitDetailDto getCommitDetail(String username, String repoName, String sha) {
+    public CommitDetailDto getCommitDetail(String username, String repoName, String sha, DiffOptions options) {
         validateUsername(username);
         validateRepositoryName(repoName);
         if (!StringUtils.hasText(sha)) {
@@ -712,33 +841,19 @@ public class GitServiceImpl implements GitService {
             throw new ResourceNotFoundException("Repository not found: " + username + "/" + repoName);
         }
 
-        String repoPath = Paths.get(repositoriesPath, username, repoName + ".git").toString();
-        try (Repository repo = new FileRepositoryBuilder()
-                .setGitDir(new File(repoPath))
-                .setBare()
-                .build()) {
-
-            ObjectId commitId = repo.resolve(sha);
-            if (commitId == null) {
-                throw new ResourceNotFoundException("Commit not found: " + sha);
-            }
-
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
             try (RevWalk walk = new RevWalk(repo)) {
-                RevCommit commit = walk.parseCommit(commitId);
-                RevCommit parent = commit.getParentCount() > 0
-                        ? walk.parseCommit(commit.getParent(0).getId())
-                        : null;
-
+                RevCommit commit = parseCommitOrThrow(repo, walk, sha);
                 List<String> parents = new ArrayList<>();
                 for (RevCommit p : commit.getParents()) {
                     parents.add(p.getName());
                 }
 
-                RevTree oldTree = parent == null ? null : parent.getTree();
-                DiffResult diff = computeDiff(repo, oldTree, commit.getTree(), Integer.MAX_VALUE, Integer.MAX_VALUE);
+                DiffResult diff = diffService.diff(repo, firstParentTree(walk, commit), commit.getTree(),
+                        MAX_DIFF_FILES, MAX_DIFF_LINES, true, options);
 
                 CommitSummaryDto summary = toSummary(commit);
-                return new CommitDetailDto(
+                CommitDetailDto detail = new CommitDetailDto(
                         commit.getName(),
                         summary.getShortSha(),
                         commit.getFullMessage() != null ? commit.getFullMessage().trim() : "",
@@ -750,12 +865,113 @@ public class GitServiceImpl implements GitService {
                         diff.deletions(),
                         diff.files()
                 );
+                detail.setTruncated(diff.truncated());
+                detail.setRenamesLimited(diff.renamesLimited());
+                return detail;
             }
         } catch (IOException e) {
             throw new RuntimeException("Failed to load commit " + sha + " in " + username + "/" + repoName, e);
         }
     }
 
+    /**
+     * First phase of a large commit's diff: every changed file with its change type, paths and
+     * line counts, but no patch text. A file's position in the list is its index for
+     * {@link #writeCommitPatch}.
+     */
+    @Override
+    public CommitFilesDto listCommitFiles(String username, String repoName, String sha, DiffOptions options) {
+        validateUsername(username);
+        validateRepositoryName(repoName);
+        if (!StringUtils.hasText(sha)) {
+            throw new IllegalArgumentException("Commit sha cannot be empty");
+        }
+        if (!repositoryExists(username, repoName)) {
+            throw new ResourceNotFoundException("Repository not found: " + username + "/" + repoName);
+        }
+
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
+            try (RevWalk walk = new RevWalk(repo)) {
+                RevCommit commit = parseCommitOrThrow(repo, walk, sha);
+                DiffResult stats = diffService.diff(repo, firstParentTree(walk, commit), commit.getTree(),
+                        MAX_STAT_FILES, Integer.MAX_VALUE, false, options);
+                CommitFilesDto files = new CommitFilesDto(commit.getName(), stats.additions(), stats.deletions(),
+                        stats.truncated(), stats.files());
+                files.setRenamesLimited(stats.renamesLimited());
+                return files;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list files of commit " + sha + " in " + username + "/" + repoName, e);
+        }
+    }
+
+    /**
+     * Second phase: formats the patch of one file ({@code path}, matched against new or old path)
+     * or of the files at {@code [from, from + count)} straight into {@code out}, one file at a time,
+     * so memory stays bounded by the largest single file rather than the commit.
+     */
+    @Override
+    public void writeCommitPatch(String username, String repoName, String sha, String path, int from, int count,
+                                 DiffOptions options, OutputStream out) {
+        validateUsername(username);
+        validateRepositoryName(repoName);
+        if (!StringUtils.hasText(sha)) {
+            throw new IllegalArgumentException("Commit sha cannot be empty");
+        }
+        if (!repositoryExists(username, repoName)) {
+            throw new ResourceNotFoundException("Repository not found: " + username + "/" + repoName);
+        }
+        int first = Math.max(from, 0);
+        int safeCount = (count <= 0 || count > MAX_DIFF_FILES) ? MAX_DIFF_FILES : count;
+
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
+            try (RevWalk walk = new RevWalk(repo)) {
+                RevCommit commit = parseCommitOrThrow(repo, walk, sha);
+                diffService.writePatch(repo, firstParentTree(walk, commit), commit.getTree(), path, first, safeCount,
+                        MAX_STAT_FILES, options, out);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write patch of commit " + sha + " in " + username + "/" + repoName, e);
+        }
+    }
+
+    @Override
+    public void writeBlame(String username, String repoName, String ref, String path, OutputStream out) {
+        validateUsername(username);
+        validateRepositoryName(repoName);
+        if (!StringUtils.hasText(path)) {
+            throw new IllegalArgumentException("File path cannot be empty");
+        }
+        if (!repositoryExists(username, repoName)) {
+            throw new ResourceNotFoundException("Repository not found: " + username + "/" + repoName);
+        }
+
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
+            ObjectId commitId = resolveRef(repo, ref);
+            if (commitId == null) {
+                throw new ResourceNotFoundException("Ref not found: " + (StringUtils.hasText(ref) ? ref : "HEAD"));
+            }
+            try (RevWalk walk = new RevWalk(repo)) {
+                blameService.writeBlame(repo, walk.parseCommit(commitId), path, out);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to blame " + path + " in " + username + "/" + repoName, e);
+        }
+    }
+
+    private RevCommit parseCommitOrThrow(Repository repo, RevWalk walk, String sha) throws IOException {
+        ObjectId commitId = repo.resolve(sha);
+        if (commitId == null) {
+            throw new ResourceNotFoundException("Commit not found: " + sha);
+        }
+        return walk.parseCommit(commitId);
+    }
+
+    /** Tree of the first parent, or null (the empty tree) for a root commit. */
+    private RevTree firstParentTree(RevWalk walk, RevCommit commit) throws IOException {
+        return commit.getParentCount() > 0 ? walk.parseCommit(commit.getParent(0)).getTree() : null;
+    }
+
     /**
      * Lists local branches (refs/heads) with their head commit SHA, flagging the one HEAD points at.
      * Read live from JGit so it always reflects on-disk state.
@@ -768,11 +984,7 @@ public class GitServiceImpl implements GitService {
             throw new ResourceNotFoundException("Repository not found: " + username + "/" + repoName);
         }
 
-        String repoPath = Paths.get(repositoriesPath, username, repoName + ".git").toString();
-        try (Repository repo = new FileRepositoryBuilder()
-                .setGitDir(new File(repoPath))
-                .setBare()
-                .build()) {
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
 
             String headBranch = null;
             Ref head = repo.exactRef(Constants.HEAD);
@@ -802,14 +1014,20 @@ public class GitServiceImpl implements GitService {
     /** Diff-display limits (per pull-requests feature spec): truncate very large diffs. */
     private static final int MAX_DIFF_FILES = 500;
     private static final int MAX_DIFF_LINES = 50_000;
+    private static final int MAX_COMPARE_COMMITS = 250;
+    private static final int MAX_STAT_FILES = 10_000;
+    /** Files larger than this are previewed (first 512 KB) instead of returned whole. */
+    private static final int MAX_PREVIEW_BYTES = 512 * 1024;
 
     /**
      * Three-way comparison of two refs — the basis of a pull request. Computes ahead/behind counts,
      * the commits {@code head} adds over {@code base}, and the diff from their merge base to {@code head}
      * (so changes already present on {@code base} are excluded). Large diffs are truncated.
+     * Counts come from the reachability bitmaps when the packs have them; the commit list is
+     * capped and continues through {@link #listCompareCommits}.
      */
     @Override
-    public CompareDto compare(String username, String repoName, String base, String head) {
+    public CompareDto compare(String username, String repoName, String base, String head, DiffOptions options) {
         validateUsername(username);
         validateRepositoryName(repoName);
         if (!StringUtils.hasText(base) || !StringUtils.hasText(head)) {
@@ -819,11 +1037,7 @@ public class GitServiceImpl implements GitService {
             throw new ResourceNotFoundException("Repository not found: " + username + "/" + repoName);
         }
 
-        String repoPath = Paths.get(repositoriesPath, username, repoName + ".git").toString();
-        try (Repository repo = new FileRepositoryBuilder()
-                .setGitDir(new File(repoPath))
-                .setBare()
-                .build()) {
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
 
             ObjectId baseId = resolveRef(repo, base);
             ObjectId headId = resolveRef(repo, head);
@@ -847,23 +1061,29 @@ public class GitServiceImpl implements GitService {
                     mergeBase = mbWalk.next();
                 }
 
-                List<CommitSummaryDto> commits = new ArrayList<>();
-                int aheadBy = collectRange(repo, headId, baseId, commits);   // head not in base
-                int behindBy = collectRange(repo, baseId, headId, null);     // base not in head
+                AheadBehindCounter.Counts counts = AheadBehindCounter.count(repo, headId, baseId);
+                HistoryPager.Page firstPage = HistoryPager.page(repo, List.of(headId), List.of(baseId),
+                        null, 0, MAX_COMPARE_COMMITS);
+                List<CommitSummaryDto> commits = new ArrayList<>(firstPage.commits().size());
+                for (RevCommit c : firstPage.commits()) {
+                    commits.add(toSummary(c));
+                }
 
                 RevTree oldTree = mergeBase != null ? walk.parseCommit(mergeBase).getTree() : null;
-                DiffResult diff = computeDiff(repo, oldTree, headCommit.getTree(), MAX_DIFF_FILES, MAX_DIFF_LINES);
+                DiffResult diff = diffService.diff(repo, oldTree, headCommit.getTree(), MAX_DIFF_FILES, MAX_DIFF_LINES, true, options);
 
                 return new CompareDto(
                         base,
                         head,
                         mergeBase != null ? mergeBase.getName() : null,
-                        aheadBy,
-                        behindBy,
+                        counts.ahead(),
+                        counts.behind(),
                         commits,
+                        HistoryPager.encodeCursor(firstPage.next()),
                         diff.additions(),
                         diff.deletions(),
                         diff.truncated(),
+                        diff.renamesLimited(),
                         diff.files()
                 );
             }
@@ -872,86 +1092,49 @@ public class GitServiceImpl implements GitService {
         }
     }
 
-    /** Commits reachable from {@code include} but not {@code exclude}; appends summaries to {@code sink} if non-null. Returns the count. */
-    private int collectRange(Repository repo, ObjectId include, ObjectId exclude, List<CommitSummaryDto> sink) throws IOException {
-        int count = 0;
-        try (RevWalk walk = new RevWalk(repo)) {
-            walk.markStart(walk.parseCommit(include));
-            walk.markUninteresting(walk.parseCommit(exclude));
-            for (RevCommit c : walk) {
-                if (sink != null) {
-                    sink.add(toSummary(c));
-                }
-                count++;
-            }
+    @Override
+    public CommitPageDto listCompareCommits(String username, String repoName, String base, String head,
+                                            String cursor, int size) {
+        validateUsername(username);
+        validateRepositoryName(repoName);
+        if (!StringUtils.hasText(base) || !StringUtils.hasText(head)) {
+            throw new IllegalArgumentException("Both base and head refs are required");
+        }
+        if (!repositoryExists(username, repoName)) {
+            throw new ResourceNotFoundException("Repository not found: " + username + "/" + repoName);
         }
-        return count;
-    }
 
-    /** Holder for a computed diff. */
-    private record DiffResult(List<FileDiffDto> files, int additions, int deletions, boolean truncated) {}
+        int safeSize = (size <= 0 || size > 100) ? 30 : size;
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
+            ObjectId baseId = resolveRef(repo, base);
+            ObjectId headId = resolveRef(repo, head);
+            if (baseId == null) {
+                throw new ResourceNotFoundException("Base ref not found: " + base);
+            }
+            if (headId == null) {
+                throw new ResourceNotFoundException("Head ref not found: " + head);
+            }
 
-    /**
-     * Computes the per-file diff between two trees (a null {@code oldTree} means the empty tree, i.e. all
-     * additions). Stops and flags {@code truncated} once the file or line budget is exceeded.
-     */
-    private DiffResult computeDiff(Repository repo, RevTree oldTree, RevTree newTree, int maxFiles, int maxLines) throws IOException {
-        List<FileDiffDto> files = new ArrayList<>();
-        int totalAdd = 0;
-        int totalDel = 0;
-        int lineCount = 0;
-        boolean truncated = false;
-
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        try (DiffFormatter df = new DiffFormatter(out)) {
-            df.setRepository(repo);
-            df.setDiffComparator(RawTextComparator.DEFAULT);
-            df.setDetectRenames(true);
-
-            AbstractTreeIterator oldIt = oldTree == null ? new EmptyTreeIterator() : prepareTreeParser(repo, oldTree);
-            AbstractTreeIterator newIt = prepareTreeParser(repo, newTree);
-
-            for (DiffEntry de : df.scan(oldIt, newIt)) {
-                if (files.size() >= maxFiles || lineCount >= maxLines) {
-                    truncated = true;
-                    break;
-                }
-                out.reset();
-                df.format(de);
-                df.flush();
-                String patch = out.toString(StandardCharsets.UTF_8);
-
-                FileHeader header = df.toFileHeader(de);
-                int add = 0;
-                int del = 0;
-                for (Edit edit : header.toEditList()) {
-                    add += edit.getEndB() - edit.getBeginB();
-                    del += edit.getEndA() - edit.getBeginA();
-                }
-                boolean binary = header.getPatchType() != FileHeader.PatchType.UNIFIED;
-
-                String newPath = de.getChangeType() == DiffEntry.ChangeType.DELETE
-                        ? de.getOldPath() : de.getNewPath();
-                String oldPath = (de.getChangeType() == DiffEntry.ChangeType.RENAME
-                        || de.getChangeType() == DiffEntry.ChangeType.COPY)
-                        ? de.getOldPath() : null;
-
-                totalAdd += add;
-                totalDel += del;
-                lineCount += add + del;
-                files.add(new FileDiffDto(newPath, oldPath, de.getChangeType().name(),
-                        add, del, binary, binary ? null : patch));
+            // The cursor does not carry the base side; it is excluded again on every page.
+            HistoryPager.Cursor from = StringUtils.hasText(cursor)
+                    ? HistoryPager.decodeCursor(cursor)
+                    : new HistoryPager.Cursor(List.of(headId), List.of());
+            HistoryPager.Page result;
+            try {
+                result = HistoryPager.page(repo, from, List.of(baseId), null, 0, safeSize);
+            } catch (MissingObjectException | IncorrectObjectTypeException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
             }
-        }
-        return new DiffResult(files, totalAdd, totalDel, truncated);
-    }
 
-    /** Loads a tree into a CanonicalTreeParser for diffing. */
-    private AbstractTreeIterator prepareTreeParser(Repository repo, RevTree tree) throws IOException {
-        try (ObjectReader reader = repo.newObjectReader()) {
-            CanonicalTreeParser parser = new CanonicalTreeParser();
-            parser.reset(reader, tree.getId());
-            return parser;
+            List<CommitSummaryDto> commits = new ArrayList<>(result.commits().size());
+            for (RevCommit c : result.commits()) {
+                commits.add(toSummary(c));
+            }
+            CommitPageDto dto = new CommitPageDto(base + "..." + head, 0, safeSize, result.next() != null, commits);
+            dto.setNextCursor(HistoryPager.encodeCursor(result.next()));
+            return dto;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list commits for " + base + "..." + head + " in " + username + "/" + repoName, e);
         }
     }
 
@@ -996,72 +1179,4 @@ public class GitServiceImpl implements GitService {
                 .map(Path::toFile)
                 .forEach(File::delete);
     }
-
-    public void handleUploadPack(String username, String repoName,
-                                 HttpServletRequest request,
-                                 HttpServletResponse response) {
-        validateUsername(username);
-        validateRepositoryName(repoName);
-
-        String repoPath = getRepositoryPath(username, repoName);
-
-        if (!repositoryExists(username, repoName)) {
-            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            return;
-        }
-
-        try (Repository repo = new FileRepositoryBuilder()
-                .setGitDir(new File(repoPath))
-                .readEnvironment()
-                .build()) {
-
-            UploadPack uploadPack = new UploadPack(repo);
-            response.setContentType("application/x-git-upload-pack-result");
-            uploadPack.upload(request.getInputStream(), response.getOutputStream(), null);
-
-        } catch (Exception e) {
-            throw new RuntimeException("Git upload-pack failed for " + username + "/" + repoName, e);
-        }
-    }
-
-    public void handleInfoRefs(String username, String repoName, String service, HttpServletResponse response) {
-        validateUsername(username);
-        validateRepositoryName(repoName);
-
-        String repoPath = getRepositoryPath(username, repoName);
-
-        if (!repositoryExists(username, repoName)) {
-            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            return;
-        }
-
-        try (Repository repo = new FileRepositoryBuilder()
-                .setGitDir(new File(repoPath))
-                .readEnvironment()
-                .build();
-             OutputStream out = response.getOutputStream()) {
-
-            if ("git-upload-pack".equals(service)) {
-                response.setContentType("application/x-git-upload-pack-advertisement");
-
-                UploadPack uploadPack = new UploadPack(repo);
-                RefAdvertiser.PacketLineOutRefAdvertiser advertiser =
-                        new RefAdvertiser.PacketLineOutRefAdvertiser(new org.eclipse.jgit.transport.PacketLineOut(out));
-                uploadPack.sendAdvertisedRefs(advertiser);
-            } else if ("git-receive-pack".equals(service)) {
-                response.setContentType("application/x-git-receive-pack-advertisement");
-
-                ReceivePack rp = new ReceivePack(repo);
-                RefAdvertiser.PacketLineOutRefAdvertiser advertiser =
-                        new RefAdvertiser.PacketLineOutRefAdvertiser(new org.eclipse.jgit.transport.PacketLineOut(out));
-                rp.sendAdvertisedRefs(advertiser);
-            } else {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            }
-
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to handle info/refs for " + username + "/" + repoName, e);
-        }
-    }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,340 @@
+package org.os.gitbase.git.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.os.gitbase.git.cache.RepositoryRegistry;
+import org.os.gitbase.git.entity.LastCommitIndex;
+import org.os.gitbase.git.entity.RepositoryGit;
+import org.os.gitbase.git.repository.GitRepositoryDB;
+import org.os.gitbase.git.repository.LastCommitIndexRepository;
+import org.os.gitbase.git.util.LastCommitResolver;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persistent "last commit per entry" index behind directory listings.
+ *
+ * <p>The answer for a (commit, directory) pair never changes, so it is stored once in
+ * {@code last_commit_index} and repeat listings are a single lookup. A missing row is derived
+ * incrementally when the parents' rows exist: entries identical to a parent inherit that parent's
+ * answer, everything else was changed by the commit itself. Only when no parent row is available
+ * does a listing fall back to a {@link LastCommitResolver} history walk.
+ *
+ * <p>Push sync keeps the index warm: every pushed commit gets a row for the root directory and for
+ * directories already indexed at its first parent, oldest commit first, so each row is derived
+ * from its parent's without walking history. That runs on a background thread, one push at a
+ * time and in push order, so the pushing client never waits for it; rows that already exist are
+ * skipped, so indexing a range twice is harmless.
+ */
+@Slf4j
+@Service
+public class LastCommitIndexService {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, String>> ENTRIES_TYPE = new TypeReference<>() {
+    };
+
+    private final LastCommitIndexRepository indexRepository;
+    private final GitRepositoryDB gitRepositoryDB;
+    private final RepositoryRegistry repositoryRegistry;
+    private final long budgetMillis;
+    private final int maxCommitsPerPush;
+    private final int maxDirsPerCommit;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "last-commit-indexer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public LastCommitIndexService(LastCommitIndexRepository indexRepository,
+                                  GitRepositoryDB gitRepositoryDB,
+                                  RepositoryRegistry repositoryRegistry,
+                                  @Value("${gitbase.listing.last-commit-budget-ms:2000}") long budgetMillis,
+                                  @Value("${gitbase.listing.index-max-commits-per-push:1000}") int maxCommitsPerPush,
+                                  @Value("${gitbase.listing.index-max-dirs-per-commit:32}") int maxDirsPerCommit) {
+        this.indexRepository = indexRepository;
+        this.gitRepositoryDB = gitRepositoryDB;
+        this.repositoryRegistry = repositoryRegistry;
+        this.budgetMillis = budgetMillis;
+        this.maxCommitsPerPush = maxCommitsPerPush;
+        this.maxDirsPerCommit = maxDirsPerCommit;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Last commit of every entry of {@code dirPath} at {@code commit}, keyed by full entry path.
+     * Served from the index when possible; a fresh, complete answer is persisted for next time.
+     */
+    public LastCommitResolver.Result lastCommits(Repository repo, String owner, String repoName,
+                                                 RevCommit commit, String dirPath, List<String> paths) throws IOException {
+        Optional<RepositoryGit> entity = gitRepositoryDB.findByOwnerNameAndRepoName(owner, repoName);
+        if (entity.isEmpty()) {
+            return LastCommitResolver.resolve(repo, commit, paths, budgetMillis);
+        }
+
+        try (RevWalk walk = new RevWalk(repo)) {
+            RevCommit start = walk.parseCommit(commit);
+            Map<String, String> byName = lookup(entity.get(), start, dirPath);
+            if (byName == null) {
+                byName = derive(walk, entity.get(), start, dirPath);
+            }
+            if (byName == null) {
+                LastCommitResolver.Result walked = LastCommitResolver.resolve(repo, start, paths, budgetMillis);
+                if (walked.complete()) {
+                    byName = new LinkedHashMap<>();
+                    for (Map.Entry<String, RevCommit> e : walked.commits().entrySet()) {
+                        byName.put(nameOf(e.getKey()), e.getValue().getName());
+                    }
+                    store(entity.get(), start, dirPath, dirTree(walk.getObjectReader(), start, dirPath), byName);
+                }
+                return walked;
+            }
+
+            Map<String, RevCommit> commits = new HashMap<>();
+            for (String path : paths) {
+                String sha = byName.get(nameOf(path));
+                if (sha != null) {
+                    commits.put(path, walk.parseCommit(ObjectId.fromString(sha)));
+                }
+            }
+            return new LastCommitResolver.Result(commits, commits.size() == paths.size());
+        }
+    }
+
+    /**
+     * Post-receive: queues indexing of the root directory, plus directories indexed at each
+     * commit's first parent, for every commit a push introduced. Oversized pushes only index the
+     * new tips (by history walk); later pushes derive from those rows. Returns immediately.
+     */
+    public void indexPush(String owner, String repoName, Collection<ReceiveCommand> commands) {
+        List<ReceiveCommand> updates = new ArrayList<>();
+        for (ReceiveCommand cmd : commands) {
+            if (cmd.getResult() == ReceiveCommand.Result.OK
+                    && cmd.getType() != ReceiveCommand.Type.DELETE
+                    && cmd.getRefName().startsWith(Constants.R_HEADS)) {
+                updates.add(new ReceiveCommand(cmd.getOldId(), cmd.getNewId(), cmd.getRefName()));
+            }
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+        executor.execute(() -> {
+            try (Repository repo = repositoryRegistry.open(owner, repoName)) {
+                Optional<RepositoryGit> entity = gitRepositoryDB.findByOwnerNameAndRepoName(owner, repoName);
+                if (entity.isEmpty()) {
+                    return;
+                }
+                for (ReceiveCommand cmd : updates) {
+                    indexRange(repo, entity.get(), cmd.getRefName(), cmd.getOldId(), cmd.getNewId());
+                }
+            } catch (Exception e) {
+                log.warn("Last-commit indexing failed for {}/{}: {}", owner, repoName, e.getMessage());
+            }
+        });
+    }
+
+    /** Drops every row of a repository (before the repository row itself is deleted). */
+    public void purge(RepositoryGit repository) {
+        indexRepository.deleteByRepository(repository);
+    }
+
+    private void indexRange(Repository repo, RepositoryGit entity, String refName, ObjectId oldId, ObjectId newId)
+            throws IOException {
+        try (RevWalk walk = new RevWalk(repo)) {
+            RevCommit tip = walk.parseCommit(newId);
+            walk.markStart(tip);
+            if (oldId != null && !ObjectId.zeroId().equals(oldId)) {
+                walk.markUninteresting(walk.parseCommit(oldId));
+            }
+            // Commits reachable from other branches were indexed when those were pushed.
+            for (Ref other : repo.getRefDatabase().getRefsByPrefix(Constants.R_HEADS)) {
+                if (!other.getName().equals(refName) && other.getObjectId() != null) {
+                    walk.markUninteresting(walk.parseCommit(other.getObjectId()));
+                }
+            }
+            walk.sort(RevSort.TOPO, true);
+            walk.sort(RevSort.REVERSE, true);
+
+            List<RevCommit> fresh = new ArrayList<>();
+            for (RevCommit c : walk) {
+                fresh.add(c);
+                if (fresh.size() > maxCommitsPerPush) {
+                    break;
+                }
+            }
+
+            if (fresh.size() > maxCommitsPerPush) {
+                if (lookup(entity, tip, "") == null) {
+                    walkAndStore(repo, entity, walk, tip, "");
+                }
+                return;
+            }
+            for (RevCommit c : fresh) {
+                Set<String> dirs = new LinkedHashSet<>();
+                dirs.add("");
+                if (c.getParentCount() > 0) {
+                    dirs.addAll(indexRepository.findDirPaths(entity, c.getParent(0).getName(),
+                            PageRequest.of(0, maxDirsPerCommit)));
+                }
+                for (String dir : dirs) {
+                    if (lookup(entity, c, dir) == null && derive(walk, entity, c, dir) == null && c == tip) {
+                        walkAndStore(repo, entity, walk, tip, dir);
+                    }
+                }
+            }
+        }
+    }
+
+    /** History-walk fallback for push sync; stores the answer if it completed within budget. */
+    private void walkAndStore(Repository repo, RepositoryGit entity, RevWalk walk, RevCommit commit, String dirPath)
+            throws IOException {
+        ObjectId dirTree = dirTree(walk.getObjectReader(), commit, dirPath);
+        if (dirTree == null) {
+            return;
+        }
+        List<String> paths = new ArrayList<>();
+        try (TreeWalk tw = new TreeWalk(walk.getObjectReader())) {
+            tw.addTree(dirTree);
+            while (tw.next()) {
+                paths.add(dirPath.isEmpty() ? tw.getNameString() : dirPath + "/" + tw.getNameString());
+            }
+        }
+        LastCommitResolver.Result walked = LastCommitResolver.resolve(repo, commit, paths, budgetMillis);
+        if (walked.complete()) {
+            Map<String, String> byName = new LinkedHashMap<>();
+            walked.commits().forEach((path, c) -> byName.put(nameOf(path), c.getName()));
+            store(entity, commit, dirPath, dirTree, byName);
+        }
+    }
+
+    private Map<String, String> lookup(RepositoryGit entity, RevCommit commit, String dirPath) {
+        return indexRepository.findByRepositoryAndCommitShaAndDirPath(entity, commit.getName(), dirPath)
+                .map(row -> readEntries(row.getEntries()))
+                .orElse(null);
+    }
+
+    /**
+     * Derives a row from the parents' rows: an entry identical to the first matching parent
+     * inherits that parent's answer, any other entry was changed by {@code commit}. Returns null
+     * (and stores nothing) when a needed parent row is missing or the directory does not exist.
+     */
+    private Map<String, String> derive(RevWalk walk, RepositoryGit entity, RevCommit commit, String dirPath)
+            throws IOException {
+        ObjectReader reader = walk.getObjectReader();
+        ObjectId dirTree = dirTree(reader, commit, dirPath);
+        if (dirTree == null) {
+            return null;
+        }
+
+        RevCommit[] parents = commit.getParents();
+        ObjectId[] parentTrees = new ObjectId[parents.length];
+        Map<Integer, Map<String, String>> parentRows = new HashMap<>();
+        for (int i = 0; i < parents.length; i++) {
+            walk.parseHeaders(parents[i]);
+            parentTrees[i] = dirTree(reader, parents[i], dirPath);
+        }
+
+        Map<String, String> byName = new LinkedHashMap<>();
+        try (TreeWalk tw = new TreeWalk(reader)) {
+            tw.addTree(dirTree);
+            for (ObjectId parentTree : parentTrees) {
+                if (parentTree != null) {
+                    tw.addTree(parentTree);
+                } else {
+                    tw.addTree(new EmptyTreeIterator());
+                }
+            }
+            while (tw.next()) {
+                if (tw.getRawMode(0) == 0) {
+                    continue; // only in a parent: deleted here
+                }
+                String name = tw.getNameString();
+                int same = -1;
+                for (int i = 0; i < parents.length && same < 0; i++) {
+                    if (tw.getRawMode(0) == tw.getRawMode(i + 1) && tw.idEqual(0, i + 1)) {
+                        same = i;
+                    }
+                }
+                if (same < 0) {
+                    byName.put(name, commit.getName());
+                    continue;
+                }
+                Map<String, String> parentRow = parentRows.computeIfAbsent(same,
+                        i -> lookup(entity, parents[i], dirPath));
+                String inherited = parentRow != null ? parentRow.get(name) : null;
+                if (inherited == null) {
+                    return null;
+                }
+                byName.put(name, inherited);
+            }
+        }
+        store(entity, commit, dirPath, dirTree, byName);
+        return byName;
+    }
+
+    private void store(RepositoryGit entity, RevCommit commit, String dirPath, ObjectId dirTree,
+                       Map<String, String> byName) {
+        if (dirTree == null) {
+            return;
+        }
+        try {
+            indexRepository.save(new LastCommitIndex(entity, commit.getName(), dirPath, dirTree.getName(),
+                    OBJECT_MAPPER.writeValueAsString(byName)));
+        } catch (Exception e) {
+            // Usually a concurrent listing stored the same row first; the index is best-effort.
+            log.debug("Skipped last-commit row {}:{}: {}", commit.getName(), dirPath, e.getMessage());
+        }
+    }
+
+    private static ObjectId dirTree(ObjectReader reader, RevCommit commit, String dirPath) throws IOException {
+        if (dirPath.isEmpty()) {
+            return commit.getTree();
+        }
+        try (TreeWalk tw = TreeWalk.forPath(reader, dirPath, commit.getTree())) {
+            return tw != null && tw.isSubtree() ? tw.getObjectId(0) : null;
+        }
+    }
+
+    private static Map<String, String> readEntries(String json) {
+        try {
+            return OBJECT_MAPPER.readValue(json, ENTRIES_TYPE);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String nameOf(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+}
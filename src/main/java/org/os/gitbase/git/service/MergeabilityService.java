@@ -0,0 +1,98 @@
+package org.os.gitbase.git.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.os.gitbase.git.cache.BoundedCache;
+import org.os.gitbase.git.cache.RepositoryRegistry;
+import org.os.gitbase.git.dto.MergeabilityDto;
+import org.os.gitbase.git.util.InCoreMerge;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Whether one commit merges cleanly into another, from an in-memory three-way merge
+ * ({@link InCoreMerge}). Results are cached by {@code (base tip, head tip)}, which fully determines
+ * them. Request paths only read the cache: a miss queues the check on a background worker and
+ * answers UNKNOWN, so no page ever runs a merge inline. Pushes refresh open pull requests through
+ * {@link PullRequestCompareService}.
+ */
+@Slf4j
+@Service
+public class MergeabilityService {
+
+    private final RepositoryRegistry repositoryRegistry;
+    private final BoundedCache<String, MergeabilityDto> cache;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "merge-checker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public MergeabilityService(RepositoryRegistry repositoryRegistry,
+                               @Value("${gitbase.mergeability-cache.max-entries:10000}") long maxEntries) {
+        this.repositoryRegistry = repositoryRegistry;
+        this.cache = BoundedCache.ofEntries(maxEntries);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Cached result for the tips, or UNKNOWN with the check queued. */
+    public MergeabilityDto get(String owner, String repoName, String baseSha, String headSha) {
+        MergeabilityDto cached = cache.get(key(baseSha, headSha));
+        if (cached != null) {
+            return cached;
+        }
+        schedule(owner, repoName, baseSha, headSha);
+        return new MergeabilityDto("UNKNOWN", false, List.of(), baseSha, headSha);
+    }
+
+    /** Runs the check now unless cached (background callers only). */
+    public MergeabilityDto refresh(String owner, String repoName, String baseSha, String headSha) throws IOException {
+        String key = key(baseSha, headSha);
+        MergeabilityDto cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        MergeabilityDto result;
+        try (Repository repo = repositoryRegistry.open(owner, repoName)) {
+            InCoreMerge.Result merge = InCoreMerge.check(repo, ObjectId.fromString(baseSha), ObjectId.fromString(headSha));
+            result = new MergeabilityDto(merge.clean() ? "CLEAN" : "CONFLICTING", merge.clean(),
+                    merge.conflicts(), baseSha, headSha);
+        }
+        cache.put(key, result);
+        return result;
+    }
+
+    private void schedule(String owner, String repoName, String baseSha, String headSha) {
+        String key = key(baseSha, headSha);
+        if (!queued.add(key)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                refresh(owner, repoName, baseSha, headSha);
+            } catch (Exception e) {
+                log.warn("Mergeability check {}..{} in {}/{} failed: {}", baseSha, headSha, owner, repoName, e.getMessage());
+            } finally {
+                queued.remove(key);
+            }
+        });
+    }
+
+    private static String key(String baseSha, String headSha) {
+        return baseSha + ":" + headSha;
+    }
+}
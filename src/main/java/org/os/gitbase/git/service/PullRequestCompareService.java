@@ -0,0 +1,181 @@
+package org.os.gitbase.git.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.os.gitbase.exception.ResourceNotFoundException;
+import org.os.gitbase.git.cache.RepositoryRegistry;
+import org.os.gitbase.git.dto.CompareDto;
+import org.os.gitbase.git.dto.MergeabilityDto;
+import org.os.gitbase.git.entity.PullRequest;
+import org.os.gitbase.git.entity.RepositoryGit;
+import org.os.gitbase.git.entity.enums.PullRequestStatus;
+import org.os.gitbase.git.repository.GitRepositoryDB;
+import org.os.gitbase.git.repository.PullRequestRepository;
+import org.os.gitbase.git.util.DiffOptions;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves a pull request's compare (target branch as base, source branch as head) from a snapshot
+ * keyed by the two branch tips, and rematerializes the snapshot in the background whenever a push
+ * moves either branch, so the pull request page rarely computes a compare on request. The same
+ * background pass refreshes the pull request's mergeability.
+ */
+@Slf4j
+@Service
+public class PullRequestCompareService {
+
+    private final GitService gitService;
+    private final GitRepositoryDB gitRepositoryDB;
+    private final PullRequestRepository pullRequestRepository;
+    private final CompareSnapshotStore compareSnapshotStore;
+    private final RepositoryRegistry repositoryRegistry;
+    private final MergeabilityService mergeabilityService;
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "pr-compare-materializer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public PullRequestCompareService(GitService gitService, GitRepositoryDB gitRepositoryDB,
+                                     PullRequestRepository pullRequestRepository,
+                                     CompareSnapshotStore compareSnapshotStore,
+                                     RepositoryRegistry repositoryRegistry,
+                                     MergeabilityService mergeabilityService) {
+        this.gitService = gitService;
+        this.gitRepositoryDB = gitRepositoryDB;
+        this.pullRequestRepository = pullRequestRepository;
+        this.compareSnapshotStore = compareSnapshotStore;
+        this.repositoryRegistry = repositoryRegistry;
+        this.mergeabilityService = mergeabilityService;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Compare of a pull request at its branches' current tips; computed and stored on a snapshot miss. */
+    public CompareDto compare(String username, String repoName, Long pullRequestId) {
+        RepositoryGit entity = repository(username, repoName);
+        PullRequest pr = pullRequest(entity, pullRequestId);
+        return materialize(username, repoName, entity, pr, tips(username, repoName, pr));
+    }
+
+    /** Mergeability at the current tips from the cache; UNKNOWN (and queued) until checked. */
+    public MergeabilityDto mergeability(String username, String repoName, Long pullRequestId) {
+        PullRequest pr = pullRequest(repository(username, repoName), pullRequestId);
+        Tips tips = tips(username, repoName, pr);
+        return mergeabilityService.get(username, repoName, tips.baseSha(), tips.headSha());
+    }
+
+    /**
+     * Post-receive: queues a rematerialization of every open pull request whose source or target
+     * branch was updated. Returns immediately; the database lookup runs on the worker too.
+     */
+    public void onPush(String username, String repoName, Collection<ReceiveCommand> commands) {
+        Set<String> branches = new HashSet<>();
+        for (ReceiveCommand cmd : commands) {
+            if (cmd.getResult() == ReceiveCommand.Result.OK && cmd.getRefName().startsWith(Constants.R_HEADS)) {
+                branches.add(cmd.getRefName().substring(Constants.R_HEADS.length()));
+            }
+        }
+        if (branches.isEmpty()) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                Optional<RepositoryGit> entity = gitRepositoryDB.findByOwnerNameAndRepoName(username, repoName);
+                if (entity.isEmpty()) {
+                    return;
+                }
+                for (PullRequest pr : pullRequestRepository.findWithBranches(entity.get(), PullRequestStatus.OPEN)) {
+                    if (branches.contains(pr.getSourceBranch().getName())
+                            || branches.contains(pr.getTargetBranch().getName())) {
+                        schedule(username, repoName, entity.get(), pr);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Failed to queue pull request compares for {}/{}: {}", username, repoName, e.getMessage());
+            }
+        });
+    }
+
+    /** Coalesces per pull request: a push landing while one is queued is covered by that run. */
+    private void schedule(String username, String repoName, RepositoryGit entity, PullRequest pr) {
+        if (!queued.add(pr.getId())) {
+            return;
+        }
+        executor.execute(() -> {
+            queued.remove(pr.getId());
+            try {
+                Tips tips = tips(username, repoName, pr);
+                materialize(username, repoName, entity, pr, tips);
+                mergeabilityService.refresh(username, repoName, tips.baseSha(), tips.headSha());
+            } catch (Exception e) {
+                log.warn("Failed to materialize compare of pull request {} in {}/{}: {}",
+                        pr.getId(), username, repoName, e.getMessage());
+            }
+        });
+    }
+
+    private CompareDto materialize(String username, String repoName, RepositoryGit entity, PullRequest pr, Tips tips) {
+        CompareDto snapshot = compareSnapshotStore.find(entity, tips.baseSha(), tips.headSha()).orElse(null);
+        if (snapshot == null) {
+            snapshot = gitService.compare(username, repoName, tips.baseSha(), tips.headSha(), DiffOptions.DEFAULT);
+            compareSnapshotStore.store(entity, pr.getId(), tips.baseSha(), tips.headSha(), snapshot);
+        }
+        return relabel(snapshot, tips.base(), tips.head());
+    }
+
+    private RepositoryGit repository(String username, String repoName) {
+        return gitRepositoryDB.findByOwnerNameAndRepoName(username, repoName)
+                .orElseThrow(() -> new ResourceNotFoundException("Repository not found: " + username + "/" + repoName));
+    }
+
+    private PullRequest pullRequest(RepositoryGit entity, Long pullRequestId) {
+        return pullRequestRepository.findWithBranches(entity, pullRequestId)
+                .orElseThrow(() -> new ResourceNotFoundException("Pull request not found: " + pullRequestId));
+    }
+
+    /** Branch names and current tip shas of a pull request (base = target, head = source). */
+    private record Tips(String base, String head, String baseSha, String headSha) {
+    }
+
+    private Tips tips(String username, String repoName, PullRequest pr) {
+        String base = pr.getTargetBranch().getName();
+        String head = pr.getSourceBranch().getName();
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
+            return new Tips(base, head, tip(repo, base), tip(repo, head));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to resolve branches of pull request " + pr.getId(), e);
+        }
+    }
+
+    private String tip(Repository repo, String branch) throws IOException {
+        Ref ref = repo.exactRef(Constants.R_HEADS + branch);
+        if (ref == null || ref.getObjectId() == null) {
+            throw new ResourceNotFoundException("Branch not found: " + branch);
+        }
+        return ref.getObjectId().getName();
+    }
+
+    /** Snapshots are stored with tip shas as refs; show the branch names instead. */
+    private CompareDto relabel(CompareDto c, String base, String head) {
+        return new CompareDto(base, head, c.mergeBase(), c.aheadBy(), c.behindBy(), c.commits(), c.commitsCursor(),
+                c.totalAdditions(), c.totalDeletions(), c.truncated(), c.renamesLimited(), c.files());
+    }
+}
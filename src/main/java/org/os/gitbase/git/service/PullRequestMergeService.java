@@ -0,0 +1,187 @@
+package org.os.gitbase.git.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.os.gitbase.auth.repository.UserRepository;
+import org.os.gitbase.exception.ConflictException;
+import org.os.gitbase.exception.ResourceNotFoundException;
+import org.os.gitbase.git.cache.RepositoryRegistry;
+import org.os.gitbase.git.dto.MergePullRequestDto;
+import org.os.gitbase.git.dto.MergeResultDto;
+import org.os.gitbase.git.entity.PullRequest;
+import org.os.gitbase.git.entity.RepositoryGit;
+import org.os.gitbase.git.entity.enums.ActivityType;
+import org.os.gitbase.git.entity.enums.PullRequestStatus;
+import org.os.gitbase.git.hook.PushSyncHook;
+import org.os.gitbase.git.repository.GitRepositoryDB;
+import org.os.gitbase.git.repository.PullRequestRepository;
+import org.os.gitbase.git.util.PullRequestMerger;
+import org.os.gitbase.helper.Helper;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Merges, squashes or rebases a pull request on the server. The result commits are built in
+ * memory by {@link PullRequestMerger} (no clone, no checkout) and the target branch is then moved
+ * with a compare-and-swap {@link RefUpdate}: it only succeeds if the branch still points at the
+ * tip the merge was computed from, so a push racing the merge makes it fail instead of being lost.
+ *
+ * <p>Merges into the same target branch are serialized by a striped lock, so two merges started
+ * together queue up rather than one of them failing the compare-and-swap. A successful merge runs
+ * the same post-update steps as a push ({@link PushSyncHook#afterUpdate}).
+ */
+@Slf4j
+@Service
+public class PullRequestMergeService {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final GitRepositoryDB gitRepositoryDB;
+    private final PullRequestRepository pullRequestRepository;
+    private final UserRepository userRepository;
+    private final RepositoryRegistry repositoryRegistry;
+    private final PushSyncHook pushSyncHook;
+    private final ActivityService activityService;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public PullRequestMergeService(GitRepositoryDB gitRepositoryDB, PullRequestRepository pullRequestRepository,
+                                   UserRepository userRepository, RepositoryRegistry repositoryRegistry,
+                                   PushSyncHook pushSyncHook, ActivityService activityService) {
+        this.gitRepositoryDB = gitRepositoryDB;
+        this.pullRequestRepository = pullRequestRepository;
+        this.userRepository = userRepository;
+        this.repositoryRegistry = repositoryRegistry;
+        this.pushSyncHook = pushSyncHook;
+        this.activityService = activityService;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public MergeResultDto merge(String username, String repoName, Long pullRequestId,
+                                MergePullRequestDto request, String actorEmail) {
+        PullRequestMerger.Method method = PullRequestMerger.Method.parse(request == null ? null : request.getMethod());
+        RepositoryGit entity = gitRepositoryDB.findByOwnerNameAndRepoName(username, repoName)
+                .orElseThrow(() -> new ResourceNotFoundException("Repository not found: " + username + "/" + repoName));
+        String target = pullRequest(entity, pullRequestId).getTargetBranch().getName();
+
+        ReentrantLock lock = lockFor(username, repoName, target);
+        lock.lock();
+        try {
+            // Re-read under the lock: a merge that held it may have just merged this pull request.
+            PullRequest pr = pullRequest(entity, pullRequestId);
+            if (pr.getStatus() != PullRequestStatus.OPEN) {
+                throw new ConflictException("Pull request #" + pullRequestId + " is "
+                        + pr.getStatus().name().toLowerCase(Locale.ROOT));
+            }
+            return merge(username, repoName, pr, method, request, actorEmail);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to merge pull request " + pullRequestId, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private MergeResultDto merge(String username, String repoName, PullRequest pr, PullRequestMerger.Method method,
+                                 MergePullRequestDto request, String actorEmail) throws IOException {
+        String target = pr.getTargetBranch().getName();
+        String source = pr.getSourceBranch().getName();
+        PersonIdent committer = ident(actorEmail);
+
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
+            ObjectId targetTip = tip(repo, target);
+            ObjectId sourceTip = tip(repo, source);
+            if (request != null && StringUtils.hasText(request.getSha()) && !sourceTip.name().equals(request.getSha())) {
+                throw new ConflictException("Branch " + source + " has moved to " + sourceTip.name());
+            }
+
+            PullRequestMerger.Outcome outcome = PullRequestMerger.apply(repo, method, targetTip, sourceTip,
+                    committer, message(pr, method, request));
+            if (!outcome.clean()) {
+                throw new ConflictException("Merge conflict in " + String.join(", ", outcome.conflicts()));
+            }
+            if (outcome.commit().equals(targetTip)) {
+                // A rebase whose every change is already on the target: there is nothing to land.
+                throw new ConflictException("Every change of " + source + " is already on " + target);
+            }
+
+            String refName = Constants.R_HEADS + target;
+            RefUpdate update = repo.updateRef(refName);
+            update.setExpectedOldObjectId(targetTip);
+            update.setNewObjectId(outcome.commit());
+            update.setRefLogIdent(committer);
+            update.setRefLogMessage("merge pull request #" + pr.getId() + " (" + method.name().toLowerCase(Locale.ROOT) + ")", false);
+            RefUpdate.Result result = update.update();
+            switch (result) {
+                case FAST_FORWARD, NEW -> { }
+                case LOCK_FAILURE, REJECTED -> throw new ConflictException("Branch " + target + " moved during the merge; retry");
+                case NO_CHANGE -> throw new ConflictException("Every change of " + source + " is already on " + target);
+                default -> throw new IOException("Failed to update " + refName + ": " + result);
+            }
+
+            String mergedBy = Helper.removeAtSymbolAndFollowing(actorEmail);
+            pr.setStatus(PullRequestStatus.MERGED);
+            pr.setMergedAt(LocalDateTime.now());
+            pr.setMergedBy(mergedBy);
+            pullRequestRepository.save(pr);
+            log.info("Merged pull request #{} of {}/{} into {} ({}): {}", pr.getId(), username, repoName, target,
+                    method, outcome.commit().name());
+
+            ReceiveCommand command = new ReceiveCommand(targetTip, outcome.commit(), refName);
+            command.setResult(ReceiveCommand.Result.OK);
+            pushSyncHook.afterUpdate(repo, username, repoName, List.of(command));
+            activityService.logActivity(ActivityType.PULL_REQUEST, mergedBy, repoName,
+                    "Merged pull request #" + pr.getId() + " into " + target);
+
+            return new MergeResultDto(pr.getId(), method.name().toLowerCase(Locale.ROOT), target,
+                    outcome.commit().name(), targetTip.name(), mergedBy, pr.getMergedAt());
+        }
+    }
+
+    private PullRequest pullRequest(RepositoryGit entity, Long pullRequestId) {
+        return pullRequestRepository.findWithBranches(entity, pullRequestId)
+                .orElseThrow(() -> new ResourceNotFoundException("Pull request not found: " + pullRequestId));
+    }
+
+    private ReentrantLock lockFor(String username, String repoName, String branch) {
+        int hash = (username + "/" + repoName + ":" + branch).hashCode();
+        return locks[Math.floorMod(hash, LOCK_STRIPES)];
+    }
+
+    private static ObjectId tip(Repository repo, String branch) throws IOException {
+        Ref ref = repo.exactRef(Constants.R_HEADS + branch);
+        if (ref == null || ref.getObjectId() == null) {
+            throw new ResourceNotFoundException("Branch not found: " + branch);
+        }
+        return ref.getObjectId();
+    }
+
+    private PersonIdent ident(String email) {
+        String name = userRepository.findUserByEmail(email)
+                .map(u -> StringUtils.hasText(u.getFullName()) ? u.getFullName() : u.getName())
+                .orElse(Helper.removeAtSymbolAndFollowing(email));
+        return new PersonIdent(name, email);
+    }
+
+    private static String message(PullRequest pr, PullRequestMerger.Method method, MergePullRequestDto request) {
+        if (request != null && StringUtils.hasText(request.getCommitMessage())) {
+            return request.getCommitMessage();
+        }
+        String body = StringUtils.hasText(pr.getDescription()) ? "\n\n" + pr.getDescription() : "";
+        return method == PullRequestMerger.Method.SQUASH
+                ? pr.getTitle() + " (#" + pr.getId() + ")" + body
+                : "Merge pull request #" + pr.getId() + " from " + pr.getSourceBranch().getName() + "\n\n" + pr.getTitle();
+    }
+}
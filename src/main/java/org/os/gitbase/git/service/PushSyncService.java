@@ -8,10 +8,10 @@ import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.jgit.transport.ReceiveCommand;
 import org.os.gitbase.auth.entity.User;
 import org.os.gitbase.auth.repository.UserRepository;
+import org.os.gitbase.git.cache.RepositoryRegistry;
 import org.os.gitbase.git.entity.Branch;
 import org.os.gitbase.git.entity.Commit;
 import org.os.gitbase.git.entity.RepositoryGit;
@@ -22,7 +22,6 @@ import org.os.gitbase.git.repository.GitRepositoryDB;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.File;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -47,24 +46,25 @@ import java.util.Optional;
 @Service
 public class PushSyncService {
 
-    private static final String BASE_PATH = "./gitbase/repositories";
-
     private final GitRepositoryDB repositoryDB;
     private final CommitRepository commitRepository;
     private final BranchRepository branchRepository;
     private final UserRepository userRepository;
     private final ActivityService activityService;
+    private final RepositoryRegistry repositoryRegistry;
 
     public PushSyncService(GitRepositoryDB repositoryDB,
                            CommitRepository commitRepository,
                            BranchRepository branchRepository,
                            UserRepository userRepository,
-                           ActivityService activityService) {
+                           ActivityService activityService,
+                           RepositoryRegistry repositoryRegistry) {
         this.repositoryDB = repositoryDB;
         this.commitRepository = commitRepository;
         this.branchRepository = branchRepository;
         this.userRepository = userRepository;
         this.activityService = activityService;
+        this.repositoryRegistry = repositoryRegistry;
     }
 
     @Transactional
@@ -128,11 +128,10 @@ public class PushSyncService {
     @Transactional
     public void ensureSynced(String username, String repoName) {
         try {
-            File gitDir = new File(BASE_PATH + "/" + username + "/" + repoName + ".git");
-            if (!gitDir.exists()) {
+            if (!repositoryRegistry.gitDir(username, repoName).exists()) {
                 return;
             }
-            try (Repository repo = new FileRepositoryBuilder().setGitDir(gitDir).setBare().build()) {
+            try (Repository repo = repositoryRegistry.open(username, repoName)) {
                 ObjectId head = repo.resolve(Constants.HEAD);
                 if (head == null) {
                     return; // empty / unborn repository — nothing to sync
@@ -0,0 +1,258 @@
+package org.os.gitbase.git.transport;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.PacketLineOut;
+import org.eclipse.jgit.transport.ReceivePack;
+import org.eclipse.jgit.transport.RefAdvertiser;
+import org.eclipse.jgit.transport.UploadPack;
+import org.os.gitbase.git.cache.ClonePackCache;
+import org.os.gitbase.git.cache.RepositoryRegistry;
+import org.os.gitbase.git.hook.PushSyncHook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The Git smart-HTTP transport: {@code info/refs}, {@code git-upload-pack} and
+ * {@code git-receive-pack} for every repository, behind both URL schemes
+ * ({@code /gitbase/<owner>/<repo>.git} and {@code /api/v1/gitbase/<owner>/<repo>.git}), so a
+ * clone behaves the same whichever remote URL it was given.
+ *
+ * <ul>
+ *   <li>Repositories come from the shared {@link RepositoryRegistry}, like every other read.</li>
+ *   <li>Fetches are negotiated by {@link GitUploadPackFactory} (protocol v2, partial clone,
+ *       pack threads) and fresh clones are answered from {@link ClonePackCache} when stored.</li>
+ *   <li>Pushes are checked object by object and mirrored into the database by
+ *       {@link PushSyncHook}.</li>
+ *   <li>Progress and remote messages travel on the side-band channels the client negotiated,
+ *       so they show up in the client's terminal instead of the server log.</li>
+ *   <li>Every request is timed in {@code gitbase.git.transport}, tagged by service and
+ *       outcome.</li>
+ * </ul>
+ * Each HTTP request is one stateless exchange; errors are reported with a bare status code
+ * because git clients do not read JSON bodies.
+ */
+@Slf4j
+@Component
+public class GitHttpTransport {
+
+    public static final String UPLOAD_PACK = "git-upload-pack";
+    public static final String RECEIVE_PACK = "git-receive-pack";
+
+    private final RepositoryRegistry repositoryRegistry;
+    private final GitUploadPackFactory uploadPackFactory;
+    private final ClonePackCache clonePackCache;
+    private final PushSyncHook pushSyncHook;
+    private final MeterRegistry meterRegistry;
+    private final int timeoutSeconds;
+
+    public GitHttpTransport(RepositoryRegistry repositoryRegistry, GitUploadPackFactory uploadPackFactory,
+                            ClonePackCache clonePackCache, PushSyncHook pushSyncHook, MeterRegistry meterRegistry,
+                            @Value("${gitbase.transport.timeout-seconds:0}") int timeoutSeconds) {
+        this.repositoryRegistry = repositoryRegistry;
+        this.uploadPackFactory = uploadPackFactory;
+        this.clonePackCache = clonePackCache;
+        this.pushSyncHook = pushSyncHook;
+        this.meterRegistry = meterRegistry;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * Ref advertisement. A protocol v2 client ({@code Git-Protocol: version=2}) asking for
+     * upload-pack gets the v2 capability list instead of the refs.
+     */
+    public void infoRefs(String username, String repoName, String service,
+                         HttpServletRequest request, HttpServletResponse response) {
+        if (!UPLOAD_PACK.equals(service) && !RECEIVE_PACK.equals(service)) {
+            sendError(response, HttpStatus.BAD_REQUEST.value(), "Unsupported or missing service");
+            return;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String result = "error";
+        try (Repository repo = repositoryRegistry.open(username, repoName)) {
+            noCache(response);
+            response.setContentType("application/x-" + service + "-advertisement");
+
+            OutputStream out = response.getOutputStream();
+            PacketLineOut pckOut = new PacketLineOut(out);
+            RefAdvertiser.PacketLineOutRefAdvertiser adv = new RefAdvertiser.PacketLineOutRefAdvertiser(pckOut);
+            if (UPLOAD_PACK.equals(service)) {
+                // Writes the "# service" line itself, except for v2 where it is omitted.
+                UploadPack up = newUploadPack(request, repo);
+                try {
+                    up.sendAdvertisedRefs(adv, service);
+                } finally {
+                    up.close();
+                }
+            } else {
+                pckOut.writeString("# service=" + RECEIVE_PACK + "\n");
+                pckOut.end();
+                newReceivePack(repo).sendAdvertisedRefs(adv);
+            }
+            out.flush();
+            result = "ok";
+        } catch (RepositoryNotFoundException e) {
+            result = "not_found";
+            sendError(response, HttpStatus.NOT_FOUND.value(), "Repository not found");
+        } catch (Exception e) {
+            log.error("info/refs failed for {}/{} service={}: {}", username, repoName, service, e.getMessage(), e);
+            sendError(response, HttpStatus.INTERNAL_SERVER_ERROR.value(), "Internal server error");
+        } finally {
+            sample.stop(timer("info-refs", result));
+        }
+    }
+
+    /**
+     * Fetch / clone. Fresh clones are answered from {@link ClonePackCache} when the same clone
+     * was served before with the same refs, and stored on the way out otherwise.
+     */
+    public void uploadPack(String username, String repoName,
+                           HttpServletRequest request, HttpServletResponse response) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String result = "error";
+        try (Repository repo = repositoryRegistry.open(username, repoName);
+             InputStream in = requestBody(request)) {
+            response.setContentType("application/x-" + UPLOAD_PACK + "-result");
+            response.setHeader("Cache-Control", "no-cache");
+            OutputStream out = response.getOutputStream();
+
+            UploadPack up = newUploadPack(request, repo);
+            byte[] head = in.readNBytes(ClonePackCache.MAX_REQUEST_BYTES + 1);
+            InputStream body = new SequenceInputStream(new ByteArrayInputStream(head), in);
+            String cloneKey = clonePackCache.keyFor(repo, head);
+            if (cloneKey == null) {
+                up.upload(body, out, null);
+            } else {
+                try (FileChannel cached = clonePackCache.open(cloneKey)) {
+                    if (cached != null) {
+                        up.close();
+                        response.setContentLengthLong(cached.size());
+                        transfer(cached, out);
+                        result = "cached";
+                        return;
+                    }
+                }
+                clonePackCache.writeThrough(cloneKey, out, target -> up.upload(body, target, null));
+            }
+            out.flush();
+            result = "ok";
+        } catch (RepositoryNotFoundException e) {
+            result = "not_found";
+            sendError(response, HttpStatus.NOT_FOUND.value(), "Repository not found");
+        } catch (Exception e) {
+            log.error("upload-pack failed for {}/{}: {}", username, repoName, e.getMessage(), e);
+            sendError(response, HttpStatus.INTERNAL_SERVER_ERROR.value(), "Upload failed");
+        } finally {
+            sample.stop(timer("upload-pack", result));
+        }
+    }
+
+    /** Push. Rejected commands are reported per ref in the response, as git expects. */
+    public void receivePack(String username, String repoName,
+                            HttpServletRequest request, HttpServletResponse response) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String result = "error";
+        try (Repository repo = repositoryRegistry.open(username, repoName);
+             InputStream in = requestBody(request)) {
+            response.setContentType("application/x-" + RECEIVE_PACK + "-result");
+            response.setHeader("Cache-Control", "no-cache");
+            OutputStream out = response.getOutputStream();
+
+            newReceivePack(repo).receive(in, out, null);
+            out.flush();
+            result = "ok";
+        } catch (RepositoryNotFoundException e) {
+            result = "not_found";
+            sendError(response, HttpStatus.NOT_FOUND.value(), "Repository not found");
+        } catch (Exception e) {
+            log.error("receive-pack failed for {}/{}: {}", username, repoName, e.getMessage(), e);
+            sendError(response, HttpStatus.INTERNAL_SERVER_ERROR.value(), "Push failed");
+        } finally {
+            sample.stop(timer("receive-pack", result));
+        }
+    }
+
+    private UploadPack newUploadPack(HttpServletRequest request, Repository repo) {
+        UploadPack up = uploadPackFactory.create(request, repo);
+        up.setBiDirectionalPipe(false);
+        up.setTimeout(timeoutSeconds);
+        return up;
+    }
+
+    private ReceivePack newReceivePack(Repository repo) {
+        ReceivePack rp = new ReceivePack(repo);
+        rp.setBiDirectionalPipe(false);
+        rp.setTimeout(timeoutSeconds);
+        rp.setCheckReceivedObjects(true);
+        rp.setCheckReferencedObjectsAreReachable(true);
+        rp.setAllowCreates(true);
+        rp.setAllowDeletes(true);
+        rp.setAllowNonFastForwards(true);
+        // Mirror the push into the database (commits / branch heads / activity).
+        rp.setPostReceiveHook(pushSyncHook);
+        return rp;
+    }
+
+    private Timer timer(String service, String result) {
+        return Timer.builder("gitbase.git.transport")
+                .description("Git smart-HTTP requests")
+                .tag("service", service)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /** The request body, inflated when the client compressed it (git gzips large negotiations). */
+    private static InputStream requestBody(HttpServletRequest request) throws IOException {
+        String encoding = request.getHeader("Content-Encoding");
+        InputStream in = request.getInputStream();
+        return "gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding) ? new GZIPInputStream(in) : in;
+    }
+
+    /**
+     * Copies a whole stored response to the client. This is a buffered user-space copy, not
+     * zero-copy: the servlet output stream is not a socket channel, so {@link FileChannel#transferTo}
+     * falls back to reading the file into a buffer and writing it to the stream. What the cache
+     * saves is the pack generation, not the copy.
+     */
+    private static void transfer(FileChannel file, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long size = file.size();
+        long position = 0;
+        while (position < size) {
+            position += file.transferTo(position, size - position, target);
+        }
+        out.flush();
+    }
+
+    private static void noCache(HttpServletResponse response) {
+        response.setHeader("Cache-Control", "no-cache, max-age=0, must-revalidate");
+        response.setHeader("Pragma", "no-cache");
+        response.setHeader("Expires", "Fri, 01 Jan 1980 00:00:00 GMT");
+    }
+
+    private static void sendError(HttpServletResponse response, int status, String message) {
+        try {
+            if (!response.isCommitted()) {
+                response.sendError(status, message);
+            }
+        } catch (IOException ex) {
+            log.error("Failed to send error response: {}", ex.getMessage(), ex);
+        }
+    }
+}
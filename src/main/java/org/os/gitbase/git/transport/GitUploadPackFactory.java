@@ -0,0 +1,84 @@
+package org.os.gitbase.git.transport;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.pack.PackConfig;
+import org.eclipse.jgit.transport.TransferConfig;
+import org.eclipse.jgit.transport.UploadPack;
+import org.eclipse.jgit.transport.resolver.UploadPackFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.Arrays;
+
+/**
+ * Creates the {@link UploadPack} behind every fetch and clone served by {@link GitHttpTransport},
+ * whichever of its two mounts the client uses.
+ *
+ * <ul>
+ *   <li><b>Protocol v2</b> when the client asks for it through the {@code Git-Protocol} header:
+ *       {@code ls-refs} with ref-prefix filtering, so a fetch of one branch no longer receives
+ *       every ref of the repository. {@code gitbase.upload-pack.protocol-version=0} turns it off.</li>
+ *   <li><b>Partial clone</b> ({@code uploadpack.allowFilter}): {@code --filter=blob:none} or
+ *       {@code tree:0} clones skip the contents, and the blobs fetched on demand later are
+ *       accepted as wants once checked reachable (by bitmap when the repository has one).</li>
+ *   <li><b>ref-in-want</b>, so v2 clients can fetch a branch by name without a race against a
+ *       concurrent push.</li>
+ *   <li><b>Pack generation</b>: at most {@code gitbase.upload-pack.threads} threads search for
+ *       deltas per pack (0 uses every core), so one large clone cannot take the whole machine.
+ *       Objects and deltas already packed (after a GC, with bitmaps) are reused as they are.</li>
+ * </ul>
+ * Shallow fetches ({@code --depth}, {@code --shallow-since}, {@code --shallow-exclude}) are always
+ * available in JGit and need no setting. These are server-wide settings, layered over each
+ * repository's config.
+ */
+@Component
+public class GitUploadPackFactory implements UploadPackFactory<HttpServletRequest> {
+
+    /** Request header carrying the client's protocol parameters, {@code version=2} among them. */
+    public static final String GIT_PROTOCOL_HEADER = "Git-Protocol";
+
+    private final String protocolVersion;
+    private final boolean allowFilter;
+    private final int threads;
+
+    public GitUploadPackFactory(@Value("${gitbase.upload-pack.protocol-version:2}") String protocolVersion,
+                                @Value("${gitbase.upload-pack.allow-filter:true}") boolean allowFilter,
+                                @Value("${gitbase.upload-pack.threads:2}") int threads) {
+        this.protocolVersion = protocolVersion;
+        this.allowFilter = allowFilter;
+        this.threads = threads;
+    }
+
+    @Override
+    public UploadPack create(HttpServletRequest req, Repository db) {
+        UploadPack up = new UploadPack(db);
+        up.setTransferConfig(new TransferConfig(transferConfig(db.getConfig())));
+        up.setPackConfig(packConfig(db));
+        String protocol = req.getHeader(GIT_PROTOCOL_HEADER);
+        if (StringUtils.hasText(protocol)) {
+            up.setExtraParameters(Arrays.asList(protocol.split(":")));
+        }
+        return up;
+    }
+
+    /** The repository's config with the server's transfer settings on top (not saved). */
+    Config transferConfig(Config repoConfig) {
+        Config config = new Config(repoConfig);
+        config.setString("protocol", null, "version", protocolVersion);
+        config.setBoolean("uploadpack", null, "allowFilter", allowFilter);
+        config.setBoolean("uploadpack", null, "allowRefInWant", true);
+        return config;
+    }
+
+    /** The repository's pack settings with the server's limits applied. */
+    PackConfig packConfig(Repository db) {
+        PackConfig packConfig = new PackConfig(db);
+        packConfig.setThreads(threads);
+        packConfig.setReuseObjects(true);
+        packConfig.setReuseDeltas(true);
+        return packConfig;
+    }
+}
@@ -0,0 +1,213 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.BitmapIndex;
+import org.eclipse.jgit.lib.BitmapObject;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.BitmapWalker;
+import org.eclipse.jgit.revwalk.ObjectWalk;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Counts the commits {@code head} has that {@code base} lacks (ahead) and vice versa (behind).
+ *
+ * <p>When the repository's packs carry reachability bitmaps, both reachable sets come from the
+ * bitmap index (only commits newer than the last bitmapped one are walked) and the counts are the
+ * commits among {@code head AND NOT base} and {@code base AND NOT head}, found by iterating those
+ * bitmaps rather than by parsing commits. Without bitmaps it falls back to two range walks.
+ *
+ * <p>{@link #countAll} answers many heads against one base. Without bitmaps it walks all of them
+ * at once, the way {@code git for-each-ref --format=%(ahead-behind:...)} does: every commit carries
+ * one bit per tip that reaches it, bits flow from children to parents in commit-time order, and the
+ * walk stops as soon as only commits reachable from every tip are left, since those count nowhere.
+ * Tips are taken {@value #WALK_BATCH} at a time so the bits fit in a {@code long} per commit.
+ */
+public final class AheadBehindCounter {
+
+    /** {@code fromBitmaps} tells whether the bitmap index answered (for diagnostics). */
+    public record Counts(int ahead, int behind, boolean fromBitmaps) {
+    }
+
+    /** Bit 0 marks commits reachable from the base, bit {@code i + 1} those reachable from {@code heads[i]}. */
+    private static final int WALK_BATCH = 63;
+
+    private AheadBehindCounter() {
+    }
+
+    public static Counts count(Repository repo, AnyObjectId head, AnyObjectId base) throws IOException {
+        try (ObjectReader reader = repo.newObjectReader()) {
+            BitmapIndex index = reader.getBitmapIndex();
+            if (index != null) {
+                try (ObjectWalk ow = new ObjectWalk(reader)) {
+                    BitmapWalker bitmaps = new BitmapWalker(ow, index, NullProgressMonitor.INSTANCE);
+                    BitmapIndex.Bitmap headBits = bitmaps.findObjects(List.of(head.copy()), null, true).build();
+                    BitmapIndex.Bitmap baseBits = bitmaps.findObjects(List.of(base.copy()), null, true).build();
+                    return new Counts(commits(headBits.andNot(baseBits)), commits(baseBits.andNot(headBits)), true);
+                }
+            }
+            try (RevWalk walk = new RevWalk(reader)) {
+                int ahead = walkCount(walk, head, base);
+                walk.reset();
+                int behind = walkCount(walk, base, head);
+                return new Counts(ahead, behind, false);
+            }
+        }
+    }
+
+    /** Counts for each distinct head against {@code base}, keyed by head id. */
+    public static Map<ObjectId, Counts> countAll(Repository repo, AnyObjectId base,
+                                                 Collection<? extends AnyObjectId> heads) throws IOException {
+        List<ObjectId> distinct = heads.stream().map(AnyObjectId::copy).distinct().toList();
+        Map<ObjectId, Counts> counts = new HashMap<>();
+        try (ObjectReader reader = repo.newObjectReader()) {
+            BitmapIndex index = reader.getBitmapIndex();
+            if (index != null) {
+                try (ObjectWalk ow = new ObjectWalk(reader)) {
+                    BitmapWalker bitmaps = new BitmapWalker(ow, index, NullProgressMonitor.INSTANCE);
+                    BitmapIndex.Bitmap baseBits = bitmaps.findObjects(List.of(base.copy()), null, true).build();
+                    for (ObjectId head : distinct) {
+                        BitmapIndex.Bitmap headBits = bitmaps.findObjects(List.of(head), null, true).build();
+                        counts.put(head, new Counts(commits(headBits.andNot(baseBits)),
+                                commits(baseBits.andNot(headBits)), true));
+                    }
+                }
+                return counts;
+            }
+            for (int from = 0; from < distinct.size(); from += WALK_BATCH) {
+                walkBatch(reader, base, distinct.subList(from, Math.min(distinct.size(), from + WALK_BATCH)), counts);
+            }
+        }
+        return counts;
+    }
+
+    private static void walkBatch(ObjectReader reader, AnyObjectId base, List<ObjectId> heads,
+                                  Map<ObjectId, Counts> counts) throws IOException {
+        try (MarkingWalk walk = new MarkingWalk(reader)) {
+            long all = heads.size() + 1 == Long.SIZE ? -1L : (1L << (heads.size() + 1)) - 1;
+            PriorityQueue<Marked> queue = new PriorityQueue<>(
+                    Comparator.comparingInt(RevCommit::getCommitTime).reversed());
+            List<Marked> seen = new ArrayList<>();
+            int[] active = {0}; // queued commits not yet reachable from every tip
+
+            walk.mark((Marked) walk.parseCommit(base), 1L, all, queue, seen, active);
+            for (int i = 0; i < heads.size(); i++) {
+                walk.mark((Marked) walk.parseCommit(heads.get(i)), 1L << (i + 1), all, queue, seen, active);
+            }
+            while (active[0] > 0) {
+                Marked c = queue.poll();
+                c.queued = false;
+                if (c.bits != all) {
+                    active[0]--;
+                }
+                for (RevCommit p : c.getParents()) {
+                    walk.parseHeaders(p);
+                    walk.mark((Marked) p, c.bits, all, queue, seen, active);
+                }
+            }
+
+            int[] ahead = new int[heads.size()];
+            int[] behind = new int[heads.size()];
+            for (Marked c : seen) {
+                boolean fromBase = (c.bits & 1L) != 0;
+                for (int i = 0; i < heads.size(); i++) {
+                    boolean fromHead = (c.bits & (1L << (i + 1))) != 0;
+                    if (fromHead && !fromBase) {
+                        ahead[i]++;
+                    } else if (fromBase && !fromHead) {
+                        behind[i]++;
+                    }
+                }
+            }
+            for (int i = 0; i < heads.size(); i++) {
+                counts.put(heads.get(i), new Counts(ahead[i], behind[i], false));
+            }
+        }
+    }
+
+    /** A commit with the set of tips known to reach it. */
+    private static final class Marked extends RevCommit {
+        long bits;
+        boolean queued;
+
+        Marked(AnyObjectId id) {
+            super(id);
+        }
+    }
+
+    private static final class MarkingWalk extends RevWalk {
+        MarkingWalk(ObjectReader reader) {
+            super(reader);
+        }
+
+        @Override
+        protected RevCommit createCommit(AnyObjectId id) {
+            return new Marked(id);
+        }
+
+        /**
+         * Adds {@code bits} to {@code c} and queues it if they were new. A commit can be queued
+         * again after being processed (clock skew); its parents then receive the late bits.
+         */
+        void mark(Marked c, long bits, long all, PriorityQueue<Marked> queue, List<Marked> seen, int[] active) {
+            long merged = c.bits | bits;
+            if (merged == c.bits) {
+                return;
+            }
+            if (c.bits == 0) {
+                seen.add(c);
+            }
+            if (c.queued) {
+                if (merged == all) {
+                    active[0]--;
+                }
+            } else {
+                c.queued = true;
+                queue.add(c);
+                if (merged != all) {
+                    active[0]++;
+                }
+            }
+            c.bits = merged;
+        }
+    }
+
+    /**
+     * Counts the commits in a bitmap. Iterating a bitmap reads each object's type from the bitmap
+     * index (or, for objects newer than the bitmapped pack, from the few objects walked on top of
+     * it) and opens no objects, so this costs one step per object in the set.
+     */
+    private static int commits(BitmapIndex.Bitmap bits) {
+        int count = 0;
+        for (BitmapObject object : bits) {
+            if (object.getType() == Constants.OBJ_COMMIT) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Commits reachable from {@code include} but not {@code exclude}. */
+    private static int walkCount(RevWalk walk, AnyObjectId include, AnyObjectId exclude) throws IOException {
+        walk.markStart(walk.parseCommit(include));
+        walk.markUninteresting(walk.parseCommit(exclude));
+        int count = 0;
+        while (walk.next() != null) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,259 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a snapshot of a tree as a zip or gzip-compressed tar, the way {@code git archive} does:
+ * every path sits under a common prefix and carries the commit time as its modification time.
+ * Entries are streamed straight from the object database through a {@link TreeWalk}; a blob is
+ * copied through a small buffer, so neither the archive nor any single file is held in memory.
+ *
+ * <p>Tar output is POSIX ustar, with a pax extended header for paths, link targets or sizes that
+ * do not fit the fixed fields. It keeps file modes and symlinks. Zip has no portable place for
+ * either, so executables are plain files there and a symlink is stored as a file holding its
+ * target. Submodules (gitlinks) appear as empty directories in both formats.
+ */
+public final class ArchiveWriter {
+
+    public enum Format {
+        ZIP(".zip", "application/zip"),
+        TAR_GZ(".tar.gz", "application/gzip");
+
+        private final String extension;
+        private final String contentType;
+
+        Format(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        /** Format named by an archive file name's extension ({@code main.zip}, {@code v1.0.tar.gz}), or null. */
+        public static Format ofFileName(String fileName) {
+            for (Format f : values()) {
+                if (fileName.endsWith(f.extension)) {
+                    return f;
+                }
+            }
+            return null;
+        }
+    }
+
+    private ArchiveWriter() {
+    }
+
+    /**
+     * Writes every entry of {@code tree} under {@code prefix} (normally ending in {@code /}) to
+     * {@code out}, which is finished but left open.
+     */
+    public static void write(ObjectReader reader, AnyObjectId tree, String prefix, long mtimeMillis,
+                             Format format, OutputStream out) throws IOException {
+        Sink sink = format == Format.ZIP ? new ZipSink(out, mtimeMillis) : new TarSink(out, mtimeMillis);
+        try (TreeWalk walk = new TreeWalk(reader)) {
+            walk.addTree(tree);
+            walk.setRecursive(false);
+            while (walk.next()) {
+                String name = prefix + walk.getPathString();
+                int mode = walk.getRawMode(0);
+                if (FileMode.TREE.equals(mode)) {
+                    sink.directory(name + "/");
+                    walk.enterSubtree();
+                } else if (FileMode.GITLINK.equals(mode)) {
+                    sink.directory(name + "/");
+                } else if (FileMode.SYMLINK.equals(mode)) {
+                    byte[] target = reader.open(walk.getObjectId(0), Constants.OBJ_BLOB).getCachedBytes();
+                    sink.symlink(name, new String(target, StandardCharsets.UTF_8));
+                } else {
+                    sink.file(name, FileMode.EXECUTABLE_FILE.equals(mode),
+                            reader.open(walk.getObjectId(0), Constants.OBJ_BLOB));
+                }
+            }
+        }
+        sink.finish();
+    }
+
+    private interface Sink {
+        void directory(String name) throws IOException;
+
+        void file(String name, boolean executable, ObjectLoader blob) throws IOException;
+
+        void symlink(String name, String target) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static final class ZipSink implements Sink {
+        private final ZipOutputStream zip;
+        private final long mtime;
+
+        ZipSink(OutputStream out, long mtime) {
+            this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+            this.mtime = mtime;
+        }
+
+        @Override
+        public void directory(String name) throws IOException {
+            entry(name);
+            zip.closeEntry();
+        }
+
+        @Override
+        public void file(String name, boolean executable, ObjectLoader blob) throws IOException {
+            entry(name);
+            blob.copyTo(zip);
+            zip.closeEntry();
+        }
+
+        @Override
+        public void symlink(String name, String target) throws IOException {
+            entry(name);
+            zip.write(target.getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+
+        private void entry(String name) throws IOException {
+            ZipEntry entry = new ZipEntry(name);
+            entry.setTime(mtime);
+            zip.putNextEntry(entry);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            zip.finish();
+        }
+    }
+
+    private static final class TarSink implements Sink {
+        private static final int BLOCK = 512;
+        private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+        private final GZIPOutputStream gzip;
+        private final long mtimeSeconds;
+
+        TarSink(OutputStream out, long mtime) throws IOException {
+            this.gzip = new GZIPOutputStream(out, 64 * 1024);
+            this.mtimeSeconds = mtime / 1000;
+        }
+
+        @Override
+        public void directory(String name) throws IOException {
+            header(name, '5', 0755, 0, "");
+        }
+
+        @Override
+        public void file(String name, boolean executable, ObjectLoader blob) throws IOException {
+            long size = blob.getSize();
+            header(name, '0', executable ? 0755 : 0644, size, "");
+            blob.copyTo(gzip);
+            pad(size);
+        }
+
+        @Override
+        public void symlink(String name, String target) throws IOException {
+            header(name, '2', 0777, 0, target);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            gzip.write(new byte[2 * BLOCK]);
+            gzip.finish();
+        }
+
+        private void header(String name, char type, int mode, long size, String linkName) throws IOException {
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            byte[] linkBytes = linkName.getBytes(StandardCharsets.UTF_8);
+            boolean longName = nameBytes.length > 100;
+            boolean longLink = linkBytes.length > 100;
+            boolean largeSize = size > MAX_OCTAL_SIZE;
+            if (longName || longLink || largeSize) {
+                StringBuilder records = new StringBuilder();
+                if (longName) {
+                    records.append(paxRecord("path", name));
+                }
+                if (longLink) {
+                    records.append(paxRecord("linkpath", linkName));
+                }
+                if (largeSize) {
+                    records.append(paxRecord("size", Long.toString(size)));
+                }
+                byte[] pax = records.toString().getBytes(StandardCharsets.UTF_8);
+                gzip.write(block(("PaxHeader/" + name).getBytes(StandardCharsets.UTF_8), 'x', 0644, pax.length, new byte[0]));
+                gzip.write(pax);
+                pad(pax.length);
+            }
+            gzip.write(block(nameBytes, type, mode, largeSize ? 0 : size, linkBytes));
+        }
+
+        /** One ustar header block; fields too long for it are truncated (the pax header carries them). */
+        private byte[] block(byte[] name, char type, int mode, long size, byte[] linkName) {
+            byte[] h = new byte[BLOCK];
+            System.arraycopy(name, 0, h, 0, Math.min(name.length, 100));
+            octal(h, 100, 8, mode);
+            octal(h, 108, 8, 0);
+            octal(h, 116, 8, 0);
+            octal(h, 124, 12, size);
+            octal(h, 136, 12, mtimeSeconds);
+            h[156] = (byte) type;
+            System.arraycopy(linkName, 0, h, 157, Math.min(linkName.length, 100));
+            System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, h, 257, 8);
+            System.arraycopy("root".getBytes(StandardCharsets.US_ASCII), 0, h, 265, 4);
+            System.arraycopy("root".getBytes(StandardCharsets.US_ASCII), 0, h, 297, 4);
+            // The checksum is computed with its own field read as spaces.
+            for (int i = 148; i < 156; i++) {
+                h[i] = ' ';
+            }
+            long sum = 0;
+            for (byte b : h) {
+                sum += b & 0xff;
+            }
+            octal(h, 148, 7, sum);
+            return h;
+        }
+
+        private void pad(long size) throws IOException {
+            int rest = (int) (size % BLOCK);
+            if (rest != 0) {
+                gzip.write(new byte[BLOCK - rest]);
+            }
+        }
+
+        /** Zero-padded octal digits filling {@code len - 1} bytes, then NUL. */
+        private static void octal(byte[] h, int off, int len, long value) {
+            String digits = Long.toOctalString(value);
+            int pad = len - 1 - digits.length();
+            for (int i = 0; i < len - 1; i++) {
+                h[off + i] = (byte) (i < pad ? '0' : digits.charAt(i - pad));
+            }
+            h[off + len - 1] = 0;
+        }
+
+        /** {@code "<length> <key>=<value>\n"}, where the length counts the whole record including itself. */
+        private static String paxRecord(String key, String value) {
+            int body = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+            int length = body + Integer.toString(body).length();
+            if (Integer.toString(length).length() != Integer.toString(body).length()) {
+                length++;
+            }
+            return length + " " + key + "=" + value + "\n";
+        }
+    }
+}
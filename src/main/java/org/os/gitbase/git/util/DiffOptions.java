@@ -0,0 +1,69 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.springframework.util.StringUtils;
+
+import java.util.Locale;
+
+/**
+ * Per-request diff rendering choices: the line diff algorithm and how whitespace is compared.
+ * Server-wide limits (rename detection, per-file size) are configured on the diff service.
+ */
+public record DiffOptions(Algorithm algorithm, Whitespace whitespace) {
+
+    public static final DiffOptions DEFAULT = new DiffOptions(Algorithm.HISTOGRAM, Whitespace.NONE);
+
+    public enum Algorithm {
+        HISTOGRAM(DiffAlgorithm.SupportedAlgorithm.HISTOGRAM),
+        MYERS(DiffAlgorithm.SupportedAlgorithm.MYERS);
+
+        private final DiffAlgorithm.SupportedAlgorithm jgit;
+
+        Algorithm(DiffAlgorithm.SupportedAlgorithm jgit) {
+            this.jgit = jgit;
+        }
+
+        public DiffAlgorithm toDiffAlgorithm() {
+            return DiffAlgorithm.getAlgorithm(jgit);
+        }
+    }
+
+    public enum Whitespace {
+        NONE(RawTextComparator.DEFAULT),
+        IGNORE_ALL(RawTextComparator.WS_IGNORE_ALL),          // git diff -w
+        IGNORE_CHANGE(RawTextComparator.WS_IGNORE_CHANGE),    // git diff -b
+        IGNORE_LEADING(RawTextComparator.WS_IGNORE_LEADING),
+        IGNORE_TRAILING(RawTextComparator.WS_IGNORE_TRAILING);
+
+        private final RawTextComparator comparator;
+
+        Whitespace(RawTextComparator comparator) {
+            this.comparator = comparator;
+        }
+
+        public RawTextComparator comparator() {
+            return comparator;
+        }
+    }
+
+    /** Parses request parameters (case-insensitive, {@code ignore-all} or {@code ignore_all}); blank means default. */
+    public static DiffOptions parse(String algorithm, String whitespace) {
+        Algorithm a = StringUtils.hasText(algorithm) ? parse(Algorithm.class, algorithm, "algorithm") : DEFAULT.algorithm;
+        Whitespace w = StringUtils.hasText(whitespace) ? parse(Whitespace.class, whitespace, "whitespace") : DEFAULT.whitespace;
+        return new DiffOptions(a, w);
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value, String name) {
+        try {
+            return Enum.valueOf(type, value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported " + name + ": " + value);
+        }
+    }
+
+    /** Stable text for cache keys. */
+    public String key() {
+        return algorithm.name().toLowerCase(Locale.ROOT) + ";ws=" + whitespace.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,15 @@
+package org.os.gitbase.git.util;
+
+import org.os.gitbase.git.dto.FileDiffDto;
+
+import java.util.List;
+
+/**
+ * Per-file diff between two trees with totals. {@code truncated} is set when the file or line
+ * budget stopped the diff early; {@code renamesLimited} when rename detection hit its file limit
+ * or time budget and only exact renames were paired. Immutable once built, so it can be shared
+ * from a cache.
+ */
+public record DiffResult(List<FileDiffDto> files, int additions, int deletions, boolean truncated,
+                         boolean renamesLimited) {
+}
@@ -0,0 +1,90 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.os.gitbase.git.dto.FileTreeNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a {@link FileTreeNode} hierarchy from a git tree in a single pass.
+ *
+ * <p>A non-recursive {@link TreeWalk} that enters subtrees yields entries in pre-order, so the
+ * parent of the current entry is always the directory at index {@code depth} of a stack of open
+ * directories. Each entry is attached in O(1): no path splitting, no scanning of siblings. The
+ * cost is linear in the number of tree entries visited, and subtrees that are not entered are
+ * never read from the object database.
+ */
+public final class FileTreeBuilder {
+
+    private FileTreeBuilder() {
+    }
+
+    /** Full recursive tree rooted at {@code treeId}; the root node is named {@code "root"}. */
+    public static FileTreeNode build(Repository repo, AnyObjectId treeId) throws IOException {
+        FileTreeNode root = new FileTreeNode("root", true);
+        walk(repo, treeId, root, null, Integer.MAX_VALUE);
+        return root;
+    }
+
+    /**
+     * Depth-limited tree for lazy browsing. {@code basePath} is the repository path of
+     * {@code treeId} ("" for the root tree); {@code maxDepth} is the number of levels below it to
+     * load (1 = immediate children only). Every node carries its object id and full path, and
+     * directories at the depth limit are flagged {@code truncated} so clients can fetch them later
+     * by id.
+     */
+    public static FileTreeNode build(Repository repo, AnyObjectId treeId, String basePath, int maxDepth) throws IOException {
+        String name = basePath.isEmpty() ? "root" : basePath.substring(basePath.lastIndexOf('/') + 1);
+        FileTreeNode root = new FileTreeNode(name, true);
+        root.setSha(treeId.name());
+        root.setPath(basePath);
+        root.setTruncated(maxDepth <= 0);
+        if (maxDepth > 0) {
+            walk(repo, treeId, root, basePath, maxDepth);
+        }
+        return root;
+    }
+
+    /** {@code basePath == null} means the full dump: no ids, paths or truncation flags. */
+    private static void walk(Repository repo, AnyObjectId treeId, FileTreeNode root,
+                             String basePath, int maxDepth) throws IOException {
+        boolean lazy = basePath != null;
+        String prefix = lazy && !basePath.isEmpty() ? basePath + "/" : "";
+
+        List<FileTreeNode> open = new ArrayList<>();
+        open.add(root);
+
+        try (TreeWalk walk = new TreeWalk(repo)) {
+            walk.addTree(treeId);
+            walk.setRecursive(false);
+
+            while (walk.next()) {
+                int depth = walk.getDepth();
+                // Leaving directories: drop everything deeper than this entry's parent.
+                while (open.size() > depth + 1) {
+                    open.remove(open.size() - 1);
+                }
+                boolean dir = walk.isSubtree();
+                FileTreeNode node = new FileTreeNode(walk.getNameString(), dir);
+                open.get(depth).getChildren().add(node);
+
+                boolean enter = dir && depth + 1 < maxDepth;
+                if (lazy) {
+                    node.setSha(walk.getObjectId(0).name());
+                    node.setPath(prefix + walk.getPathString());
+                    if (dir) {
+                        node.setTruncated(!enter);
+                    }
+                }
+                if (enter) {
+                    open.add(node);
+                    walk.enterSubtree();
+                }
+            }
+        }
+    }
+}
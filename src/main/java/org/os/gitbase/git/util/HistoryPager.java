@@ -0,0 +1,282 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.internal.storage.commitgraph.CommitGraph;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.TreeRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.filter.ChangedPathTreeFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Resumable, newest-first commit history for one or more start commits, optionally limited to
+ * commits that touch a path (with the same merge simplification as {@code git log -- path}).
+ *
+ * <p>The state of a date-ordered walk is its frontier: the commits queued but not yet visited.
+ * The pager tracks that frontier as the walk visits commits and hands it back as an opaque cursor
+ * after the last commit of a page. Restarting a walk from the frontier continues exactly where the
+ * previous page stopped, so page N costs the same as page 1 instead of re-walking
+ * {@code N * size} commits. Path filtering uses {@link ChangedPathTreeFilter}, which consults the
+ * commit-graph's changed-path Bloom filters before diffing trees.
+ *
+ * <p>When commit dates are skewed (a commit dated after one of its children), the walk can visit
+ * a commit before a descendant still on the frontier, and a restarted walk would reach it again.
+ * The cursor therefore also names the visited commits the frontier may still reach, and the next
+ * walk stops at them. A commit can only be reached from a commit with a higher generation number,
+ * which the commit-graph provides; for commits outside the graph the pager falls back to commit
+ * dates, which covers equal dates but not skew.
+ */
+public final class HistoryPager {
+
+    /**
+     * Where a walk resumes: the {@code frontier} to start from and the already returned commits
+     * it must not return again ({@code seen}).
+     */
+    public record Cursor(List<ObjectId> frontier, List<ObjectId> seen) {
+    }
+
+    /** {@code next} is the cursor to resume from; null when history is exhausted. */
+    public record Page(List<RevCommit> commits, Cursor next) {
+    }
+
+    private HistoryPager() {
+    }
+
+    /**
+     * Walks from {@code starts}, drops the first {@code skip} matching commits (legacy page
+     * offsets only), and returns up to {@code size} commits plus the resume cursor.
+     */
+    public static Page page(Repository repo, Collection<? extends AnyObjectId> starts, String path,
+                            int skip, int size) throws IOException {
+        return page(repo, starts, List.of(), path, skip, size);
+    }
+
+    /**
+     * As {@link #page(Repository, Collection, String, int, int)}, limited to commits not reachable
+     * from {@code exclude} (a {@code base..head} range).
+     */
+    public static Page page(Repository repo, Collection<? extends AnyObjectId> starts,
+                            Collection<? extends AnyObjectId> exclude, String path,
+                            int skip, int size) throws IOException {
+        List<ObjectId> frontier = new ArrayList<>(starts.size());
+        for (AnyObjectId start : starts) {
+            frontier.add(start.copy());
+        }
+        return page(repo, new Cursor(frontier, List.of()), exclude, path, skip, size);
+    }
+
+    /**
+     * Resumes a walk from a cursor returned with an earlier page. Resuming a range needs the same
+     * {@code exclude} again; the cursor does not carry it.
+     */
+    public static Page page(Repository repo, Cursor from, Collection<? extends AnyObjectId> exclude,
+                            String path, int skip, int size) throws IOException {
+        try (RevWalk walk = new RevWalk(repo)) {
+            CommitGraph graph = walk.getObjectReader().getCommitGraph().orElse(CommitGraph.EMPTY);
+            RevFlag visited = walk.newFlag("visited");
+            Set<RevCommit> frontier = new LinkedHashSet<>();
+            for (AnyObjectId start : from.frontier()) {
+                RevCommit c = walk.parseCommit(start);
+                walk.markStart(c);
+                frontier.add(c);
+            }
+            for (AnyObjectId id : exclude) {
+                walk.markUninteresting(walk.parseCommit(id));
+            }
+            // Returned on an earlier page: the walk neither returns them nor walks past them, since
+            // their parents were queued, and are on the frontier, when they were visited.
+            List<RevCommit> walked = new ArrayList<>();
+            for (AnyObjectId id : from.seen()) {
+                RevCommit c = walk.parseCommit(id);
+                if (!frontier.contains(c)) {
+                    c.add(RevFlag.SEEN);
+                    c.add(visited);
+                    walked.add(c);
+                }
+            }
+
+            RevFilter matches = path == null || path.isEmpty()
+                    ? RevFilter.ALL
+                    : new TreeRevFilter(walk, ChangedPathTreeFilter.create(path));
+            // With an excluded side the walk buffers a few matches before returning them
+            // (to settle uninteresting ancestry); those are not visited again on resume.
+            Set<RevCommit> buffered = new LinkedHashSet<>();
+            walk.setRevFilter(new FrontierTracker(matches, visited, frontier, buffered, walked));
+
+            List<RevCommit> commits = new ArrayList<>(size);
+            Cursor resume = null;
+            int skipped = 0;
+            RevCommit c;
+            while ((c = walk.next()) != null) {
+                buffered.remove(c);
+                if (skipped < skip) {
+                    skipped++;
+                    continue;
+                }
+                if (commits.size() == size) {
+                    // One more matching commit exists, so the snapshot taken after the page is needed.
+                    return new Page(commits, resume);
+                }
+                commits.add(c);
+                if (commits.size() == size) {
+                    Set<RevCommit> next = new LinkedHashSet<>(buffered);
+                    next.addAll(frontier);
+                    resume = new Cursor(copies(next), reachable(graph, walked, next));
+                }
+            }
+            return new Page(commits, null);
+        }
+    }
+
+    /**
+     * The walked commits the {@code frontier} may still reach. The commit-graph contains every
+     * ancestor of its commits, so a commit in it is reachable from a graph commit only with a
+     * lower generation number, and a commit outside it never is.
+     */
+    private static List<ObjectId> reachable(CommitGraph graph, List<RevCommit> walked, Set<RevCommit> frontier) {
+        int maxGeneration = 0;
+        int maxTime = Integer.MIN_VALUE;
+        for (RevCommit f : frontier) {
+            int pos = graph.findGraphPosition(f);
+            if (pos >= 0) {
+                maxGeneration = Math.max(maxGeneration, graph.getCommitData(pos).getGeneration());
+            } else {
+                maxTime = Math.max(maxTime, f.getCommitTime());
+            }
+        }
+        List<ObjectId> reachable = new ArrayList<>();
+        for (RevCommit w : walked) {
+            if (frontier.contains(w)) {
+                continue;
+            }
+            int pos = graph.findGraphPosition(w);
+            if ((pos >= 0 && graph.getCommitData(pos).getGeneration() < maxGeneration)
+                    || w.getCommitTime() <= maxTime) {
+                reachable.add(w.copy());
+            }
+        }
+        return reachable;
+    }
+
+    private static List<ObjectId> copies(Collection<RevCommit> commits) {
+        List<ObjectId> ids = new ArrayList<>(commits.size());
+        for (RevCommit c : commits) {
+            ids.add(c.copy());
+        }
+        return ids;
+    }
+
+    /**
+     * Opaque, URL-safe cursor: the frontier ids, then the seen ids after a {@code -} when there
+     * are any.
+     */
+    public static String encodeCursor(Cursor cursor) {
+        if (cursor == null || cursor.frontier().isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder((cursor.frontier().size() + cursor.seen().size()) * 41);
+        append(sb, cursor.frontier());
+        if (!cursor.seen().isEmpty()) {
+            sb.append('-');
+            append(sb, cursor.seen());
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void append(StringBuilder sb, List<ObjectId> ids) {
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                sb.append('.');
+            }
+            sb.append(ids.get(i).name());
+        }
+    }
+
+    /** Decodes a cursor produced by {@link #encodeCursor}; malformed input is rejected. */
+    public static Cursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int dash = raw.indexOf('-');
+            return dash < 0
+                    ? new Cursor(ids(raw), List.of())
+                    : new Cursor(ids(raw.substring(0, dash)), ids(raw.substring(dash + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private static List<ObjectId> ids(String raw) {
+        List<ObjectId> ids = new ArrayList<>();
+        for (String part : raw.split("\\.")) {
+            if (!ObjectId.isId(part)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            ids.add(ObjectId.fromString(part));
+        }
+        return ids;
+    }
+
+    /**
+     * Sees every commit the walk visits (the walk calls its filter once per visited commit) and
+     * maintains the frontier: a visited commit leaves it, its parents join it unless visited. The
+     * parents are read after the path filter ran, because merge simplification may prune them.
+     */
+    private static final class FrontierTracker extends RevFilter {
+        private final RevFilter delegate;
+        private final RevFlag visited;
+        private final Set<RevCommit> frontier;
+        private final Set<RevCommit> buffered;
+        private final List<RevCommit> walked;
+
+        FrontierTracker(RevFilter delegate, RevFlag visited, Set<RevCommit> frontier, Set<RevCommit> buffered,
+                        List<RevCommit> walked) {
+            this.delegate = delegate;
+            this.visited = visited;
+            this.frontier = frontier;
+            this.buffered = buffered;
+            this.walked = walked;
+        }
+
+        @Override
+        public boolean include(RevWalk walker, RevCommit c)
+                throws MissingObjectException, IncorrectObjectTypeException, IOException {
+            boolean include = delegate.include(walker, c);
+            c.add(visited);
+            walked.add(c);
+            frontier.remove(c);
+            for (RevCommit p : c.getParents()) {
+                if (!p.has(visited)) {
+                    frontier.add(p);
+                }
+            }
+            if (include) {
+                buffered.add(c);
+            }
+            return include;
+        }
+
+        @Override
+        public boolean requiresCommitBody() {
+            return delegate.requiresCommitBody();
+        }
+
+        @Override
+        public RevFilter clone() {
+            return this;
+        }
+    }
+}
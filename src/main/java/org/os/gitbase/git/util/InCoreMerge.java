@@ -0,0 +1,135 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.errors.NoMergeBaseException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.Merger;
+import org.eclipse.jgit.merge.ResolveMerger;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Three-way merge of two commits entirely in memory: {@link ResolveMerger} in in-core mode builds
+ * the result in a {@code DirCache} of its own and never touches a working tree or index file.
+ *
+ * <p>{@link #check} is a dry run: merged blobs and trees only get their ids computed, nothing is
+ * written to the object database. History with several merge bases needs the recursive strategy,
+ * which has to read back the virtual base it builds, so that (rare) case writes its objects; they
+ * stay unreferenced until the next GC.
+ */
+public final class InCoreMerge {
+
+    /** {@code tree} is the merged tree (null when conflicting); {@code conflicts} lists unmerged paths. */
+    public record Result(boolean clean, ObjectId tree, List<String> conflicts) {
+    }
+
+    private InCoreMerge() {
+    }
+
+    /** Merges {@code theirs} into {@code ours} without writing any object. */
+    public static Result check(Repository repo, AnyObjectId ours, AnyObjectId theirs) throws IOException {
+        try (ObjectInserter real = repo.newObjectInserter();
+             ObjectInserter dryRun = new DryRunInserter(real)) {
+            return run(MergeStrategy.RESOLVE.newMerger(dryRun, repo.getConfig()), ours, theirs);
+        } catch (NoMergeBaseException e) {
+            return merge(repo, ours, theirs);
+        }
+    }
+
+    /** Merges {@code theirs} into {@code ours} and writes the merged blobs and tree to the repository. */
+    public static Result merge(Repository repo, AnyObjectId ours, AnyObjectId theirs) throws IOException {
+        try (ObjectInserter inserter = repo.newObjectInserter()) {
+            Result result = merge(inserter, repo.getConfig(), ours, theirs);
+            inserter.flush();
+            return result;
+        }
+    }
+
+    /** As {@link #merge(Repository, AnyObjectId, AnyObjectId)} through the caller's inserter, left unflushed. */
+    public static Result merge(ObjectInserter inserter, Config config, AnyObjectId ours, AnyObjectId theirs)
+            throws IOException {
+        return run(MergeStrategy.RECURSIVE.newMerger(inserter, config), ours, theirs);
+    }
+
+    /**
+     * Applies the change {@code commit} made against its first parent on top of {@code onto}
+     * (a cherry-pick: three-way merge with that parent as the base). Objects go through the
+     * caller's inserter, left unflushed, so successive picks can build on each other.
+     */
+    public static Result cherryPick(ObjectInserter inserter, Config config, RevCommit commit, AnyObjectId onto)
+            throws IOException {
+        if (commit.getParentCount() == 0) {
+            throw new IllegalArgumentException("Cannot cherry-pick root commit " + commit.name());
+        }
+        ResolveMerger merger = (ResolveMerger) MergeStrategy.RESOLVE.newMerger(inserter, config);
+        merger.setBase(commit.getParent(0));
+        return run(merger, onto, commit);
+    }
+
+    private static Result run(Merger merger, AnyObjectId ours, AnyObjectId theirs) throws IOException {
+        ResolveMerger resolve = (ResolveMerger) merger;
+        if (resolve.merge(ours, theirs)) {
+            return new Result(true, resolve.getResultTreeId(), List.of());
+        }
+        List<String> conflicts = new ArrayList<>(resolve.getUnmergedPaths());
+        if (resolve.getFailingPaths() != null) {
+            for (String path : resolve.getFailingPaths().keySet()) {
+                if (!conflicts.contains(path)) {
+                    conflicts.add(path);
+                }
+            }
+        }
+        return new Result(false, null, conflicts);
+    }
+
+    /** Computes object ids without storing anything; reads go to the real repository. */
+    private static final class DryRunInserter extends ObjectInserter.Filter {
+        private final ObjectInserter delegate;
+
+        DryRunInserter(ObjectInserter delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        protected ObjectInserter delegate() {
+            return delegate;
+        }
+
+        @Override
+        public ObjectId insert(int type, byte[] data) {
+            return idFor(type, data);
+        }
+
+        @Override
+        public ObjectId insert(int type, byte[] data, int off, int len) {
+            return idFor(type, data, off, len);
+        }
+
+        @Override
+        public ObjectId insert(int type, long length, InputStream in) throws IOException {
+            return idFor(type, length, in);
+        }
+
+        @Override
+        public ObjectReader newReader() {
+            return delegate.newReader();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
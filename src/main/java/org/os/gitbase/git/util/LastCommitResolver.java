@@ -0,0 +1,167 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.internal.storage.commitgraph.ChangedPathFilter;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Finds the most recent commit that touched each of a set of paths in a single history walk.
+ *
+ * <p>One {@link RevWalk} visits history newest first. Every commit carries the set of paths whose
+ * history passes through it; for those paths its tree is compared against its parents in one
+ * path-filtered {@link TreeWalk}. A path whose entry differs from every parent is attributed to the
+ * commit; otherwise it is handed to the first parent with an identical entry, which is the same
+ * history simplification {@code git log -1 -- path} applies at merges. The walk stops as soon as
+ * every path is resolved, so a directory listing costs one walk back to the oldest last-touching
+ * commit instead of one walk per entry. When the repository has a commit-graph, its changed-path
+ * Bloom filters let most commits skip the tree comparison entirely.
+ *
+ * <p>With skewed commit dates (a commit dated after one of its children) the walk can visit a
+ * commit before the child that hands it paths. Those paths are dropped and the result is flagged
+ * incomplete rather than sorting all of history up front.
+ *
+ * <p>The walk is abandoned once {@code budgetMillis} elapses (non-positive means unlimited); paths
+ * not resolved by then are reported as missing and the result is flagged incomplete.
+ */
+public final class LastCommitResolver {
+
+    /**
+     * {@code commits} maps path to its last commit; {@code complete} is false if the budget ran out
+     * or skewed dates lost a path.
+     */
+    public record Result(Map<String, RevCommit> commits, boolean complete) {
+    }
+
+    private LastCommitResolver() {
+    }
+
+    public static Result resolve(Repository repo, AnyObjectId start, Collection<String> paths, long budgetMillis)
+            throws IOException {
+        Map<String, RevCommit> resolved = new HashMap<>();
+        int pending = new HashSet<>(paths).size();
+        if (pending == 0) {
+            return new Result(resolved, true);
+        }
+
+        long deadline = budgetMillis > 0 ? System.nanoTime() + budgetMillis * 1_000_000L : Long.MAX_VALUE;
+        Map<RevCommit, NavigableSet<String>> carried = new HashMap<>();
+        boolean skewed = false;
+        Map<String, byte[]> rawPaths = new HashMap<>();
+        for (String path : paths) {
+            rawPaths.put(path, Constants.encode(path));
+        }
+        try (RevWalk walk = new RevWalk(repo)) {
+            RevFlag visited = walk.newFlag("visited");
+            RevCommit head = walk.parseCommit(start);
+            carried.put(head, new TreeSet<>(paths));
+            walk.markStart(head);
+
+            RevCommit commit;
+            while (pending > 0 && (commit = walk.next()) != null) {
+                commit.add(visited);
+                NavigableSet<String> mine = carried.remove(commit);
+                if (mine == null || mine.isEmpty()) {
+                    continue;
+                }
+                if (System.nanoTime() > deadline) {
+                    break;
+                }
+                if (untouched(walk, commit, mine, rawPaths)) {
+                    carried.computeIfAbsent(commit.getParent(0), p -> new TreeSet<>()).addAll(mine);
+                } else {
+                    for (String path : attribute(walk, commit, mine, carried)) {
+                        resolved.put(path, commit);
+                        pending--;
+                    }
+                }
+                // A parent dated after this commit was visited already and will not come again.
+                for (RevCommit parent : commit.getParents()) {
+                    if (parent.has(visited) && carried.containsKey(parent)) {
+                        pending -= carried.remove(parent).size();
+                        skewed = true;
+                    }
+                }
+            }
+        }
+        return new Result(resolved, pending == 0 && !skewed);
+    }
+
+    /**
+     * True when the commit-graph's changed-path Bloom filter proves a single-parent commit did not
+     * touch any of {@code paths}, so they pass to the parent without diffing trees.
+     */
+    private static boolean untouched(RevWalk walk, RevCommit commit, Set<String> paths, Map<String, byte[]> rawPaths) {
+        if (commit.getParentCount() != 1) {
+            return false;
+        }
+        ChangedPathFilter filter = commit.getChangedPathFilter(walk);
+        if (filter == null) {
+            return false;
+        }
+        for (String path : paths) {
+            if (filter.maybeContains(rawPaths.get(path))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the paths {@code commit} changed relative to every parent, and hands each remaining
+     * path to the first parent whose entry is identical.
+     */
+    private static Set<String> attribute(RevWalk walk, RevCommit commit, NavigableSet<String> paths,
+                                         Map<RevCommit, NavigableSet<String>> carried) throws IOException {
+        RevCommit[] parents = commit.getParents();
+        Set<String> changed = new HashSet<>();
+        try (TreeWalk tw = new TreeWalk(walk.getObjectReader())) {
+            tw.addTree(commit.getTree());
+            for (RevCommit parent : parents) {
+                walk.parseHeaders(parent);
+                tw.addTree(parent.getTree());
+            }
+            tw.setFilter(PathFilterGroup.createFromStrings(paths));
+            tw.setRecursive(false);
+
+            while (tw.next()) {
+                String path = tw.getPathString();
+                if (paths.contains(path)) {
+                    int same = -1;
+                    for (int i = 0; i < parents.length && same < 0; i++) {
+                        if (tw.getRawMode(0) == tw.getRawMode(i + 1) && tw.idEqual(0, i + 1)) {
+                            same = i;
+                        }
+                    }
+                    if (same < 0) {
+                        changed.add(path);
+                    } else {
+                        carried.computeIfAbsent(parents[same], p -> new TreeSet<>()).add(path);
+                    }
+                }
+                if (tw.isSubtree()) {
+                    // Only descend towards requested paths below this one.
+                    String below = paths.ceiling(path + "/");
+                    if (below != null && below.startsWith(path + "/")) {
+                        tw.enterSubtree();
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,141 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Builds the commit(s) that land a pull request on its target branch, without a working tree:
+ * trees come from {@link InCoreMerge} and commits go straight through an {@link ObjectInserter}.
+ * Moving the branch ref is left to the caller.
+ *
+ * <ul>
+ *   <li>{@code MERGE}: a merge commit with parents (target, source), even when a fast-forward is possible.</li>
+ *   <li>{@code SQUASH}: one commit on top of target with the merged tree.</li>
+ *   <li>{@code REBASE}: each commit of {@code target..source}, oldest first, replayed on target with its
+ *   original author; commits whose change is already on target are dropped, merge commits are refused.</li>
+ * </ul>
+ */
+public final class PullRequestMerger {
+
+    public enum Method {
+        MERGE, SQUASH, REBASE;
+
+        /** Case-insensitive; blank means MERGE. */
+        public static Method parse(String value) {
+            if (!StringUtils.hasText(value)) {
+                return MERGE;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported merge method: " + value);
+            }
+        }
+    }
+
+    /**
+     * {@code commit} is the new target tip when clean; otherwise {@code conflicts} lists the unmerged paths.
+     * A REBASE whose every change is already on the target is clean with {@code commit} equal to the target.
+     */
+    public record Outcome(ObjectId commit, List<String> conflicts) {
+        public boolean clean() {
+            return commit != null;
+        }
+    }
+
+    private PullRequestMerger() {
+    }
+
+    /**
+     * Lands {@code source} on {@code target}. {@code message} is used for MERGE and SQUASH;
+     * {@code committer} commits every new commit (and authors the MERGE and SQUASH ones).
+     * Nothing is flushed to the repository unless the outcome is clean.
+     */
+    public static Outcome apply(Repository repo, Method method, AnyObjectId target, AnyObjectId source,
+                                PersonIdent committer, String message) throws IOException {
+        try (ObjectInserter inserter = repo.newObjectInserter();
+             ObjectReader reader = inserter.newReader();
+             RevWalk walk = new RevWalk(reader)) {
+            List<RevCommit> commits = pending(walk, target, source);
+            if (commits.isEmpty()) {
+                throw new IllegalArgumentException("Nothing to merge: source is already contained in the target");
+            }
+            Outcome outcome = switch (method) {
+                case MERGE, SQUASH -> {
+                    InCoreMerge.Result merged = InCoreMerge.merge(inserter, repo.getConfig(), target, source);
+                    if (!merged.clean()) {
+                        yield new Outcome(null, merged.conflicts());
+                    }
+                    ObjectId[] parents = method == Method.MERGE
+                            ? new ObjectId[]{target.copy(), source.copy()}
+                            : new ObjectId[]{target.copy()};
+                    yield new Outcome(commit(inserter, merged.tree(), parents, committer, committer, message), List.of());
+                }
+                case REBASE -> rebase(repo, inserter, walk, commits, target, committer);
+            };
+            if (outcome.clean()) {
+                inserter.flush();
+            }
+            return outcome;
+        }
+    }
+
+    private static Outcome rebase(Repository repo, ObjectInserter inserter, RevWalk walk, List<RevCommit> commits,
+                                  AnyObjectId target, PersonIdent committer) throws IOException {
+        ObjectId tip = target.copy();
+        ObjectId tipTree = walk.parseCommit(target).getTree().copy();
+        for (RevCommit c : commits) {
+            if (c.getParentCount() > 1) {
+                throw new IllegalArgumentException("Cannot rebase merge commit " + c.name() + "; use merge or squash");
+            }
+            InCoreMerge.Result picked = InCoreMerge.cherryPick(inserter, repo.getConfig(), c, tip);
+            if (!picked.clean()) {
+                return new Outcome(null, picked.conflicts());
+            }
+            if (picked.tree().equals(tipTree)) {
+                continue; // change already on the target
+            }
+            tip = commit(inserter, picked.tree(), new ObjectId[]{tip}, c.getAuthorIdent(), committer, c.getFullMessage());
+            tipTree = picked.tree();
+        }
+        return new Outcome(tip, List.of());
+    }
+
+    /** Commits of {@code target..source}, oldest first. */
+    private static List<RevCommit> pending(RevWalk walk, AnyObjectId target, AnyObjectId source) throws IOException {
+        walk.sort(RevSort.TOPO);
+        walk.sort(RevSort.REVERSE, true);
+        walk.markStart(walk.parseCommit(source));
+        walk.markUninteresting(walk.parseCommit(target));
+        List<RevCommit> commits = new ArrayList<>();
+        for (RevCommit c : walk) {
+            commits.add(c);
+        }
+        return commits;
+    }
+
+    private static ObjectId commit(ObjectInserter inserter, ObjectId tree, ObjectId[] parents,
+                                   PersonIdent author, PersonIdent committer, String message) throws IOException {
+        CommitBuilder cb = new CommitBuilder();
+        cb.setTreeId(tree);
+        cb.setParentIds(parents);
+        cb.setAuthor(author);
+        cb.setCommitter(committer);
+        cb.setMessage(message);
+        return inserter.insert(cb);
+    }
+}
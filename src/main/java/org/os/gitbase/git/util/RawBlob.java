@@ -0,0 +1,11 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * A file resolved for raw download, before any content is read. {@code binary} is judged from
+ * the first few KB only; {@code pinned} means the ref was a full commit id, so the response for
+ * this request can never change.
+ */
+public record RawBlob(ObjectId id, long size, boolean binary, String name, boolean pinned) {
+}
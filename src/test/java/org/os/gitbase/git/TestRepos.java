@@ -0,0 +1,61 @@
+package org.os.gitbase.git;
+
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Commits written straight into a repository (usually an {@code InMemoryRepository}), without a
+ * working tree. Unless given explicitly, commit times come from one clock that moves forward a
+ * second per commit, so commits made later in a test are always newer.
+ */
+public final class TestRepos {
+
+    private static final AtomicLong CLOCK = new AtomicLong(1_700_000_000L);
+
+    private TestRepos() {
+    }
+
+    /** A commit of exactly {@code files} (path to content) on top of {@code parents}. */
+    public static ObjectId commit(Repository repo, Map<String, String> files, ObjectId... parents) throws Exception {
+        return commit(repo, CLOCK.getAndIncrement(), files, parents);
+    }
+
+    /** Same, authored and committed at {@code epochSeconds}, e.g. to simulate clock skew. */
+    public static ObjectId commit(Repository repo, long epochSeconds, Map<String, String> files,
+                                  ObjectId... parents) throws Exception {
+        try (ObjectInserter ins = repo.newObjectInserter()) {
+            DirCache index = DirCache.newInCore();
+            DirCacheBuilder builder = index.builder();
+            for (Map.Entry<String, String> f : new TreeMap<>(files).entrySet()) {
+                DirCacheEntry entry = new DirCacheEntry(f.getKey());
+                entry.setFileMode(FileMode.REGULAR_FILE);
+                entry.setObjectId(ins.insert(Constants.OBJ_BLOB, f.getValue().getBytes(StandardCharsets.UTF_8)));
+                builder.add(entry);
+            }
+            builder.finish();
+            CommitBuilder cb = new CommitBuilder();
+            cb.setTreeId(index.writeTree(ins));
+            cb.setParentIds(parents);
+            PersonIdent who = new PersonIdent("t", "t@example.com", epochSeconds * 1000, 0);
+            cb.setAuthor(who);
+            cb.setCommitter(who);
+            cb.setMessage("c" + epochSeconds);
+            ObjectId id = ins.insert(cb);
+            ins.flush();
+            return id;
+        }
+    }
+}
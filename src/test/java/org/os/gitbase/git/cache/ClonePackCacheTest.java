@@ -0,0 +1,117 @@
+package org.os.gitbase.git.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.transport.PacketLineOut;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClonePackCacheTest {
+
+    @TempDir
+    Path tmp;
+
+    private static final ObjectId TIP = ObjectId.fromString("1111111111111111111111111111111111111111");
+    private static final ObjectId OTHER = ObjectId.fromString("2222222222222222222222222222222222222222");
+
+    @Test
+    void recognizesFreshClonesInBothProtocolVersions() throws IOException {
+        Set<ObjectId> tips = Set.of(TIP);
+        assertTrue(ClonePackCache.isClone(v0("want " + TIP.name() + " multi_ack_detailed side-band-64k ofs-delta", null, "done"), tips));
+        assertTrue(ClonePackCache.isClone(v2("want " + TIP.name(), "ofs-delta", "done"), tips));
+
+        assertFalse(ClonePackCache.isClone(v0("want " + TIP.name(), "have " + OTHER.name(), "done"), tips));
+        assertFalse(ClonePackCache.isClone(v0("want " + TIP.name(), "deepen 1", "done"), tips));
+        assertFalse(ClonePackCache.isClone(v0("want " + OTHER.name(), null, "done"), tips));
+        assertFalse(ClonePackCache.isClone(v0("want " + TIP.name(), null, null), tips));
+        assertFalse(ClonePackCache.isClone(v2("want " + TIP.name(), "filter blob:none", "done"), tips));
+    }
+
+    @Test
+    void keyFollowsTheRefsAndStoredResponsesAreServedBack() throws Exception {
+        ClonePackCache cache = new ClonePackCache(new SimpleMeterRegistry(), tmp.resolve("cache").toString(), 1 << 20);
+        try (Git git = Git.init().setDirectory(tmp.resolve("repo").toFile()).call()) {
+            RevCommit first = git.commit().setMessage("first").setAllowEmpty(true).call();
+            byte[] clone = v0("want " + first.name() + " side-band-64k", null, "done");
+            String key = cache.keyFor(git.getRepository(), clone);
+            assertNotNull(key);
+            assertNull(cache.keyFor(git.getRepository(), v0("want " + first.name(), "have " + first.name(), "done")));
+
+            assertNull(cache.open(key));
+            ByteArrayOutputStream client = new ByteArrayOutputStream();
+            cache.writeThrough(key, client, out -> out.write("response".getBytes(StandardCharsets.UTF_8)));
+            assertEquals("response", client.toString(StandardCharsets.UTF_8));
+            try (FileChannel stored = cache.open(key)) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) stored.size());
+                stored.read(buffer);
+                assertEquals("response", new String(buffer.array(), StandardCharsets.UTF_8));
+            }
+
+            git.tag().setName("v1").call();
+            assertNotEquals(key, cache.keyFor(git.getRepository(), clone));
+        }
+    }
+
+    @Test
+    void failedResponsesAreNotStored() throws Exception {
+        ClonePackCache cache = new ClonePackCache(new SimpleMeterRegistry(), tmp.resolve("cache").toString(), 1 << 20);
+        try {
+            cache.writeThrough("key", new ByteArrayOutputStream(), out -> {
+                out.write(1);
+                throw new IOException("client went away");
+            });
+        } catch (IOException expected) {
+            // propagated to the caller
+        }
+        assertNull(cache.open("key"));
+        try (var files = Files.walk(tmp.resolve("cache"))) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(".tmp")));
+        }
+    }
+
+    /** want line(s), optional extra line, flush, optional done. */
+    private static byte[] v0(String want, String extra, String done) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        PacketLineOut out = new PacketLineOut(buf);
+        out.writeString(want + "\n");
+        if (extra != null) {
+            out.writeString(extra + "\n");
+        }
+        out.end();
+        if (done != null) {
+            out.writeString(done + "\n");
+        }
+        return buf.toByteArray();
+    }
+
+    private static byte[] v2(String... args) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        PacketLineOut out = new PacketLineOut(buf);
+        out.writeString("command=fetch\n");
+        out.writeString("agent=git/2.43.0\n");
+        out.writeDelim();
+        for (String arg : args) {
+            out.writeString(arg + "\n");
+        }
+        out.end();
+        return buf.toByteArray();
+    }
+}
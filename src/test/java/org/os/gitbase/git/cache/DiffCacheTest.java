@@ -0,0 +1,66 @@
+package org.os.gitbase.git.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.os.gitbase.git.dto.FileDiffDto;
+import org.os.gitbase.git.util.DiffResult;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DiffCacheTest {
+
+    @TempDir
+    Path tmp;
+
+    private final ObjectId oldTree = ObjectId.fromString("4b825dc642cb6eb9a060e54bf8d69288fbee4904");
+    private final ObjectId newTree = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+
+    @Test
+    void diskTierSurvivesANewInstance() {
+        DiffResult diff = new DiffResult(List.of(
+                new FileDiffDto("a.txt", null, "MODIFY", 2, 1, false, "@@ -1 +1,2 @@\n-x\n+y\n+z\n"),
+                new FileDiffDto("logo.png", "old.png", "RENAME", 0, 0, true, null)), 2, 1, false, false);
+        DiffCache.Key key = new DiffCache.Key(oldTree, newTree, "renames");
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DiffCache first = new DiffCache(registry, 1 << 20, tmp.toString(), 1 << 20, Duration.ofMinutes(1));
+        assertNull(first.get(key));
+        first.put(key, diff);
+        assertEquals(diff, first.get(key));
+
+        DiffCache second = new DiffCache(registry, 1 << 20, tmp.toString(), 1 << 20, Duration.ofMinutes(1));
+        DiffResult restored = second.get(key);
+        assertEquals(2, restored.files().size());
+        assertEquals("old.png", restored.files().get(1).getOldPath());
+        assertEquals(diff.files().get(0).getPatch(), restored.files().get(0).getPatch());
+        assertNull(second.get(new DiffCache.Key(oldTree, newTree, "no-renames")));
+
+        assertEquals(1.0, registry.get("gitbase.diff.cache").tag("tier", "memory").counter().count());
+        assertEquals(1.0, registry.get("gitbase.diff.cache").tag("tier", "disk").counter().count());
+        assertEquals(2.0, registry.get("gitbase.diff.cache").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void renameLimitedResultsStayInMemoryUntilTheyExpire() throws Exception {
+        DiffResult diff = new DiffResult(List.of(
+                new FileDiffDto("b.txt", null, "ADD", 1, 0, false, "@@ -0,0 +1 @@\n+b\n")), 1, 0, false, true);
+        DiffCache.Key key = new DiffCache.Key(oldTree, newTree, "renames");
+
+        DiffCache live = new DiffCache(new SimpleMeterRegistry(), 1 << 20, tmp.toString(), 1 << 20, Duration.ofMinutes(1));
+        live.put(key, diff);
+        assertEquals(diff, live.get(key));
+        assertNull(new DiffCache(new SimpleMeterRegistry(), 1 << 20, tmp.toString(), 1 << 20, Duration.ofMinutes(1)).get(key));
+
+        DiffCache expiring = new DiffCache(new SimpleMeterRegistry(), 1 << 20, tmp.toString(), 1 << 20, Duration.ofMillis(1));
+        expiring.put(key, diff);
+        Thread.sleep(5);
+        assertNull(expiring.get(key));
+    }
+}
@@ -0,0 +1,149 @@
+package org.os.gitbase.git.cache;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.lang.reflect.Field;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.os.gitbase.git.TestRepos.commit;
+
+class RepositoryRegistryTest {
+
+    private static final String OWNER = "registry-test";
+
+    // The registry resolves repositories below a fixed root relative to the working directory.
+    private final Path ownerDir = Paths.get("./gitbase/repositories", OWNER);
+    private RepositoryRegistry registry;
+    private ObjectId tipA;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (String name : new String[] {"a", "b"}) {
+            try (Git git = Git.init().setBare(true).setDirectory(ownerDir.resolve(name + ".git").toFile()).call()) {
+                ObjectId tip = commit(git.getRepository(), Map.of("README.md", name));
+                if (name.equals("a")) {
+                    tipA = tip;
+                }
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (registry != null) {
+            registry.shutdown();
+        }
+        FileSystemUtils.deleteRecursively(ownerDir);
+        // Drop the parent directories too when this test created them.
+        for (Path dir = ownerDir.getParent(); dir != null && dir.getNameCount() > 1; dir = dir.getParent()) {
+            try {
+                Files.deleteIfExists(dir);
+            } catch (DirectoryNotEmptyException e) {
+                break;
+            }
+        }
+    }
+
+    @Test
+    void callersShareOneHandleAndEachHoldsAReference() throws Exception {
+        registry = new RepositoryRegistry(8, Duration.ofMinutes(10));
+
+        Repository first = registry.open(OWNER, "a");
+        Repository second = registry.open(OWNER, "a.git");
+        assertSame(first, second);
+        assertSame(first, registry.open(OWNER + "/a.git"));
+        assertEquals(4, useCount(first));
+
+        first.close();
+        second.close();
+        first.close();
+        assertEquals(1, useCount(first));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void lruEvictedRepositoryStaysUsableUntilItsLastHandleCloses() throws Exception {
+        registry = new RepositoryRegistry(1, Duration.ofMinutes(10));
+
+        Repository a = registry.open(OWNER, "a");
+        registry.open(OWNER, "b").close();
+        assertEquals(1, registry.size());
+        assertEquals(1, useCount(a));
+        assertReadable(a);
+
+        a.close();
+        assertEquals(0, useCount(a));
+        try (Repository reopened = registry.open(OWNER, "a")) {
+            assertNotSame(a, reopened);
+            assertReadable(reopened);
+        }
+    }
+
+    @Test
+    void idleRepositoryStaysUsableUntilItsLastHandleCloses() throws Exception {
+        registry = new RepositoryRegistry(8, Duration.ZERO);
+
+        Repository a = registry.open(OWNER, "a");
+        Thread.sleep(5);
+        registry.closeIdle();
+        assertEquals(0, registry.size());
+        assertEquals(1, useCount(a));
+        assertReadable(a);
+
+        a.close();
+        assertEquals(0, useCount(a));
+    }
+
+    @Test
+    void invalidateForgetsRenamedAndDeletedRepositories() throws Exception {
+        registry = new RepositoryRegistry(8, Duration.ofMinutes(10));
+        Repository a = registry.open(OWNER, "a");
+
+        Files.move(ownerDir.resolve("a.git"), ownerDir.resolve("c.git"));
+        registry.invalidate(OWNER, "a");
+        assertEquals(1, useCount(a));
+        assertThrows(RepositoryNotFoundException.class, () -> registry.open(OWNER, "a"));
+        try (Repository renamed = registry.open(OWNER, "c")) {
+            assertNotSame(a, renamed);
+            assertReadable(renamed);
+        }
+        a.close();
+        assertEquals(0, useCount(a));
+
+        FileSystemUtils.deleteRecursively(ownerDir.resolve("c.git"));
+        registry.invalidate(OWNER, "c");
+        assertEquals(0, registry.size());
+        assertThrows(RepositoryNotFoundException.class, () -> registry.open(OWNER, "c"));
+    }
+
+    private void assertReadable(Repository repo) throws Exception {
+        try (RevWalk walk = new RevWalk(repo)) {
+            assertEquals(tipA, walk.parseCommit(tipA).getId());
+        }
+    }
+
+    /** JGit's own reference count; the files are closed when it drops to zero. */
+    private static int useCount(Repository repo) throws Exception {
+        Field field = Repository.class.getDeclaredField("useCnt");
+        field.setAccessible(true);
+        return ((AtomicInteger) field.get(repo)).get();
+    }
+}
@@ -0,0 +1,139 @@
+package org.os.gitbase.git.controller;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.os.gitbase.git.service.GitService;
+import org.os.gitbase.git.util.RawBlob;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GitControllerTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+    private static final ObjectId BLOB = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+    private static final String ETAG = "\"" + BLOB.name() + "\"";
+
+    private final GitService gitService = mock(GitService.class);
+    private final GitController controller = new GitController(gitService, null, null, null, null, null, null);
+
+    GitControllerTest() {
+        when(gitService.resolveBlob("alice", "repo", null, "a.txt"))
+                .thenReturn(new RawBlob(BLOB, CONTENT.length, false, "a.txt", false));
+        doAnswer(i -> {
+            long offset = i.getArgument(3);
+            long length = i.getArgument(4);
+            OutputStream out = i.getArgument(5);
+            out.write(CONTENT, (int) offset, (int) length);
+            return null;
+        }).when(gitService).writeBlob(any(), any(), any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void servesTheWholeFileWithItsEtag() throws Exception {
+        MockHttpServletResponse response = get(null, null);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(CONTENT.length, response.getContentLength());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    void matchingIfNoneMatchIsNotModified() throws Exception {
+        for (String ifNoneMatch : new String[] {ETAG, "W/" + ETAG, "\"other\", " + ETAG, "*"}) {
+            MockHttpServletResponse response = get(null, ifNoneMatch);
+
+            assertEquals(304, response.getStatus(), ifNoneMatch);
+            assertEquals(0, response.getContentAsByteArray().length);
+        }
+        verify(gitService, never()).writeBlob(any(), any(), any(), anyLong(), anyLong(), any());
+        assertEquals(200, get(null, "\"other\"").getStatus());
+    }
+
+    @Test
+    void singleRangeIsPartialContent() throws Exception {
+        assertPartial(get("bytes=2-5", null), "2345", "bytes 2-5/10");
+        assertPartial(get("bytes=7-", null), "789", "bytes 7-9/10");
+        assertPartial(get("bytes=-3", null), "789", "bytes 7-9/10");
+        assertPartial(get("bytes=8-100", null), "89", "bytes 8-9/10");
+    }
+
+    @Test
+    void rangeStartingPastTheEndIsNotSatisfiable() throws Exception {
+        MockHttpServletResponse response = get("bytes=10-20", null);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void multipleRangesAreIgnoredForTheWholeFile() throws Exception {
+        assertWhole(get("bytes=0-1,4-5", null));
+    }
+
+    @Test
+    void malformedRangesAreIgnoredForTheWholeFile() throws Exception {
+        for (String range : new String[] {"bytes=abc", "items=0-1", "bytes=5-2", "bytes="}) {
+            assertWhole(get(range, null));
+        }
+    }
+
+    @Test
+    void staleIfRangeServesTheWholeFile() throws Exception {
+        MockHttpServletRequest request = request("bytes=2-5", null);
+        request.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getRawFile("alice", "repo", null, "a.txt", request, response);
+
+        assertWhole(response);
+    }
+
+    private MockHttpServletResponse get(String range, String ifNoneMatch) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getRawFile("alice", "repo", null, "a.txt", request(range, ifNoneMatch), response);
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String range, String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/alice/repo/raw");
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return request;
+    }
+
+    private static void assertPartial(MockHttpServletResponse response, String body, String contentRange)
+            throws Exception {
+        assertEquals(206, response.getStatus());
+        assertEquals(contentRange, response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(body.length(), response.getContentLength());
+        assertEquals(body, response.getContentAsString());
+    }
+
+    private static void assertWhole(MockHttpServletResponse response) throws Exception {
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(CONTENT.length, response.getContentLength());
+        assertEquals(Arrays.toString(CONTENT), Arrays.toString(response.getContentAsByteArray()));
+    }
+}
@@ -0,0 +1,104 @@
+package org.os.gitbase.git.maintenance;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.commitgraph.CommitGraph;
+import org.eclipse.jgit.internal.storage.commitgraph.CommitGraphLoader;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.os.gitbase.git.cache.RepositoryRegistry;
+import org.os.gitbase.git.util.LastCommitResolver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CommitGraphServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void writesGraphWithBloomFiltersAndEnablesItInTheRepositoryConfig() throws Exception {
+        RevCommit first;
+        RevCommit last = null;
+        try (Git git = Git.init().setDirectory(tmp.toFile()).call()) {
+            write("a.txt", "1");
+            write("dir/b.txt", "1");
+            git.add().addFilepattern(".").call();
+            first = git.commit().setMessage("initial").call();
+            for (int i = 0; i < 20; i++) {
+                write("a.txt", Integer.toString(i));
+                git.add().addFilepattern(".").call();
+                last = git.commit().setMessage("edit " + i).call();
+            }
+        }
+
+        try (FileRepository repo = new FileRepository(new File(tmp.toFile(), ".git"))) {
+            new CommitGraphService(null, new MaintenanceLocks(), Duration.ZERO).write(repo);
+
+            File graphFile = new File(repo.getObjectsDirectory(), "info/commit-graph");
+            assertTrue(graphFile.isFile());
+            assertTrue(repo.getObjectDatabase().getCommitGraph().isPresent());
+            assertTrue(repo.getConfig().getBoolean("core", "commitGraph", false));
+            assertTrue(repo.getConfig().getBoolean("commitGraph", "readChangedPaths", false));
+            try (InputStream in = new FileInputStream(graphFile)) {
+                CommitGraph graph = CommitGraphLoader.read(in, true);
+                assertNotNull(graph.getChangedPathFilter(graph.findGraphPosition(last)));
+            }
+
+            LastCommitResolver.Result result = LastCommitResolver.resolve(repo, last, List.of("a.txt", "dir"), 0);
+            assertTrue(result.complete());
+            assertEquals(last, result.commits().get("a.txt"));
+            assertEquals(first, result.commits().get("dir"));
+        }
+    }
+
+    @Test
+    void writesAtMostOncePerIntervalPerRepository() throws Exception {
+        RepositoryRegistry registry = mock(RepositoryRegistry.class);
+        Repository repo = new InMemoryRepository(new DfsRepositoryDescription("repo"));
+        when(registry.open(any(), any())).thenAnswer(i -> {
+            repo.incrementOpen();
+            return repo;
+        });
+        CommitGraphService service = new CommitGraphService(registry, new MaintenanceLocks(), Duration.ofHours(1));
+        try {
+            service.scheduleWrite("alice", "repo");
+            verify(registry, timeout(5000)).open("alice", "repo");
+
+            service.scheduleWrite("alice", "repo");
+            service.scheduleWrite("bob", "repo");
+            verify(registry, timeout(5000)).open("bob", "repo");
+            // The second write of alice/repo waits out the interval.
+            verify(registry, times(1)).open("alice", "repo");
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private void write(String path, String content) throws Exception {
+        Path file = tmp.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,66 @@
+package org.os.gitbase.git.maintenance;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RepositoryMaintenanceServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void gcPacksLooseObjectsIntoOnePackWithBitmap() throws Exception {
+        try (Git git = Git.init().setDirectory(tmp.toFile()).call()) {
+            for (int i = 0; i < 200; i++) {
+                Files.writeString(tmp.resolve("file-" + (i % 20) + ".txt"), "content " + i + "\n");
+                git.add().addFilepattern(".").call();
+                git.commit().setMessage("commit " + i).call();
+            }
+        }
+
+        RepositoryMaintenanceService service = new RepositoryMaintenanceService(null, new MaintenanceLocks(),
+                new SimpleMeterRegistry(), 10, 100, 1);
+        try (FileRepository repo = new FileRepository(new File(tmp.toFile(), ".git"))) {
+            assertTrue(service.needsGc(new RepositoryMaintenanceService.Stats(11, 0, 0)));
+            assertTrue(service.needsGc(new RepositoryMaintenanceService.Stats(1, 512, 0)));
+            assertTrue(repo.getObjectDatabase().getPacks().isEmpty());
+
+            service.collect(repo, "test");
+
+            assertEquals(1, repo.getObjectDatabase().getPacks().size());
+            assertEquals(0, RepositoryMaintenanceService.estimateLooseObjects(repo.getObjectsDirectory()));
+            File[] bitmaps = repo.getObjectDatabase().getPackDirectory().listFiles((d, n) -> n.endsWith(".bitmap"));
+            assertEquals(1, bitmaps.length);
+            assertFalse(service.needsGc(new RepositoryMaintenanceService.Stats(1, 0, 0)));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void requestDuringARunningCollectionRunsItAgainAfterwards() {
+        RepositoryMaintenanceService service = new RepositoryMaintenanceService(null, new MaintenanceLocks(),
+                new SimpleMeterRegistry(), 10, 100, 1);
+        try {
+            assertTrue(service.start("alice/repo"));
+            assertFalse(service.start("alice/repo"));
+            assertTrue(service.finish("alice/repo"));
+
+            assertTrue(service.start("alice/repo"));
+            assertFalse(service.finish("alice/repo"));
+        } finally {
+            service.shutdown();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.os.gitbase.git.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.os.gitbase.git.TestRepos;
+import org.os.gitbase.git.cache.BlameRegionCache;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlameServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void incrementalBlameMatchesAFullBlame() throws Exception {
+        List<RevCommit> commits = new ArrayList<>();
+        try (Git git = Git.init().setDirectory(tmp.toFile()).call()) {
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                lines.add("line " + i);
+            }
+            commits.add(commit(git, lines, "initial"));
+            for (int round = 1; round <= 8; round++) {
+                lines.set((round * 7) % lines.size(), "changed in " + round);
+                lines.add(round * 3, "inserted in " + round);
+                if (round % 3 == 0) {
+                    lines.remove(round);
+                }
+                commits.add(commit(git, lines, "round " + round));
+            }
+        }
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BlameService service = new BlameService(new BlameRegionCache(registry, 1 << 20, "", 0));
+        try (Git git = Git.open(tmp.toFile()); RevWalk walk = new RevWalk(git.getRepository())) {
+            Repository repo = git.getRepository();
+
+            // Blame an older commit first; the newer blame then stops at it instead of walking to the root.
+            blame(service, repo, walk.parseCommit(commits.get(4)));
+            RevCommit tip = walk.parseCommit(commits.get(commits.size() - 1));
+            List<JsonNode> stream = blame(service, repo, tip);
+            assertTrue(registry.get("gitbase.blame.cache").tag("tier", "memory").counter().count() >= 1);
+
+            BlameResult expected = git.blame().setFilePath("file.txt").setStartCommit(tip).call();
+            expected.computeAll();
+            assertEquals(tip.name(), stream.get(0).get("commit").asText());
+            assertEquals(expected.getResultContents().size(), stream.get(0).get("lines").asInt());
+
+            int line = 0;
+            for (JsonNode range : stream.subList(1, stream.size())) {
+                assertEquals(line, range.get("start").asInt(), "ranges arrive top to bottom");
+                for (int i = 0; i < range.get("count").asInt(); i++, line++) {
+                    assertEquals(expected.getSourceCommit(line).name(), range.get("commit").asText(), "line " + line);
+                }
+            }
+            assertEquals(expected.getResultContents().size(), line);
+
+            // A repeat is served from the cache with the same attribution.
+            assertEquals(stream, blame(service, repo, tip));
+        }
+    }
+
+    @Test
+    void fileOverTheCapIsRefusedBeforeAnythingIsWritten() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("large"));
+             RevWalk walk = new RevWalk(repo)) {
+            RevCommit commit = walk.parseCommit(TestRepos.commit(repo,
+                    Map.of("file.txt", "x".repeat(BlameService.MAX_BLAME_BYTES) + "\n")));
+            BlameService service = new BlameService(new BlameRegionCache(new SimpleMeterRegistry(), 1 << 20, "", 0));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            assertThrows(IllegalArgumentException.class, () -> service.writeBlame(repo, commit, "file.txt", out));
+            assertEquals(0, out.size());
+        }
+    }
+
+    private List<JsonNode> blame(BlameService service, Repository repo, RevCommit commit) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeBlame(repo, commit, "file.txt", out);
+        List<JsonNode> nodes = new ArrayList<>();
+        for (String l : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            nodes.add(mapper.readTree(l));
+        }
+        return nodes;
+    }
+
+    private RevCommit commit(Git git, List<String> lines, String message) throws Exception {
+        Files.writeString(tmp.resolve("file.txt"), String.join("\n", lines) + "\n", StandardCharsets.UTF_8);
+        git.add().addFilepattern("file.txt").call();
+        return git.commit().setMessage(message).call();
+    }
+}
@@ -0,0 +1,76 @@
+package org.os.gitbase.git.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.os.gitbase.git.dto.CompareDto;
+import org.os.gitbase.git.dto.FileDiffDto;
+import org.os.gitbase.git.entity.CompareSnapshot;
+import org.os.gitbase.git.entity.RepositoryGit;
+import org.os.gitbase.git.repository.CompareSnapshotRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CompareSnapshotStoreTest {
+
+    private static final String BASE = "1111111111111111111111111111111111111111";
+    private static final String HEAD = "2222222222222222222222222222222222222222";
+
+    private final RepositoryGit repository = new RepositoryGit();
+    private final CompareSnapshotRepository rows = mock(CompareSnapshotRepository.class);
+    private final CompareSnapshotStore store = new CompareSnapshotStore(rows);
+
+    @Test
+    void storedCompareIsFoundForTheSameTipsOnly() {
+        CompareDto compare = new CompareDto(BASE, HEAD, BASE, 1, 0, List.of(), null, 2, 1, false, false,
+                List.of(new FileDiffDto("a.txt", null, "MODIFY", 2, 1, false, "@@ -1 +1,2 @@\n-x\n+y\n+z\n")));
+        when(rows.findByRepositoryAndBaseShaAndHeadSha(repository, BASE, HEAD)).thenReturn(Optional.empty());
+
+        assertTrue(store.find(repository, BASE, HEAD).isEmpty());
+        store.store(repository, 7L, BASE, HEAD, compare);
+
+        ArgumentCaptor<CompareSnapshot> saved = ArgumentCaptor.forClass(CompareSnapshot.class);
+        verify(rows).save(saved.capture());
+        verify(rows).deleteSuperseded(repository, 7L, BASE, HEAD);
+        when(rows.findByRepositoryAndBaseShaAndHeadSha(repository, BASE, HEAD)).thenReturn(Optional.of(saved.getValue()));
+
+        CompareDto found = store.find(repository, BASE, HEAD).orElseThrow();
+        assertEquals(compare.mergeBase(), found.mergeBase());
+        assertEquals(compare.aheadBy(), found.aheadBy());
+        assertEquals(compare.totalAdditions(), found.totalAdditions());
+        assertEquals("a.txt", found.files().get(0).getPath());
+        assertEquals(compare.files().get(0).getPatch(), found.files().get(0).getPatch());
+    }
+
+    @Test
+    void existingSnapshotIsNotWrittenAgain() {
+        when(rows.findByRepositoryAndBaseShaAndHeadSha(repository, BASE, HEAD))
+                .thenReturn(Optional.of(new CompareSnapshot(repository, BASE, HEAD, 7L, "{}")));
+
+        store.store(repository, 7L, BASE, HEAD, new CompareDto(BASE, HEAD, null, 0, 0, List.of(), null, 0, 0,
+                false, false, List.of()));
+
+        verify(rows, never()).save(any());
+        verify(rows).deleteSuperseded(repository, 7L, BASE, HEAD);
+    }
+
+    @Test
+    void unreadableSnapshotIsAMissAndFailedWritesAreSwallowed() {
+        when(rows.findByRepositoryAndBaseShaAndHeadSha(repository, BASE, HEAD))
+                .thenReturn(Optional.of(new CompareSnapshot(repository, BASE, HEAD, 7L, "not json")));
+        assertTrue(store.find(repository, BASE, HEAD).isEmpty());
+
+        doThrow(new IllegalStateException("constraint")).when(rows).deleteSuperseded(any(), any(), any(), any());
+        store.store(repository, 7L, BASE, HEAD, new CompareDto(BASE, HEAD, null, 0, 0, List.of(), null, 0, 0,
+                false, false, List.of()));
+    }
+}
@@ -0,0 +1,193 @@
+package org.os.gitbase.git.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.os.gitbase.git.cache.DiffCache;
+import org.os.gitbase.git.dto.FileDiffDto;
+import org.os.gitbase.git.util.DiffOptions;
+import org.os.gitbase.git.util.DiffResult;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiffServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private final DiffService diffService =
+            new DiffService(new DiffCache(new SimpleMeterRegistry(), 1 << 20, "", 0, Duration.ofMinutes(1)), 4, 1000, 0, 1 << 20);
+
+    @AfterEach
+    void tearDown() {
+        diffService.shutdown();
+    }
+
+    @Test
+    void parallelDiffMatchesSequentialFormatInOrder() throws Exception {
+        RevCommit before;
+        RevCommit after;
+        try (Git git = Git.init().setDirectory(tmp.toFile()).call()) {
+            for (int i = 0; i < 60; i++) {
+                write("src/F" + i + ".txt", lines("f" + i, 20));
+            }
+            write("moved/original.txt", lines("keep", 40));
+            git.add().addFilepattern(".").call();
+            before = git.commit().setMessage("initial").call();
+
+            for (int i = 0; i < 60; i += 2) {
+                write("src/F" + i + ".txt", lines("g" + i, 25));
+            }
+            Files.delete(tmp.resolve("src/F1.txt"));
+            Files.move(tmp.resolve("moved/original.txt"), tmp.resolve("moved/renamed.txt"));
+            write("added.txt", lines("new", 3));
+            git.add().addFilepattern(".").call();
+            git.add().setUpdate(true).addFilepattern(".").call();
+            after = git.commit().setMessage("change").call();
+        }
+
+        try (Git git = Git.open(tmp.toFile()); RevWalk walk = new RevWalk(git.getRepository())) {
+            Repository repo = git.getRepository();
+            DiffResult diff = diffService.diff(repo, walk.parseCommit(before).getTree(),
+                    walk.parseCommit(after).getTree(), Integer.MAX_VALUE, Integer.MAX_VALUE, true, DiffOptions.DEFAULT);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (DiffFormatter df = new DiffFormatter(out)) {
+                df.setRepository(repo);
+                df.setDetectRenames(true);
+                List<DiffEntry> entries = df.scan(before.getTree(), after.getTree());
+                assertEquals(entries.size(), diff.files().size());
+                for (int i = 0; i < entries.size(); i++) {
+                    out.reset();
+                    df.format(entries.get(i));
+                    df.flush();
+                    assertEquals(out.toString(StandardCharsets.UTF_8), diff.files().get(i).getPatch());
+                }
+            }
+            assertTrue(diff.files().stream().anyMatch(f -> "RENAME".equals(f.getChangeType())));
+
+            // Streamed patches are picked from the listing, by index or by (old) path.
+            ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            diffService.writePatch(repo, before.getTree(), after.getTree(), null, 0, Integer.MAX_VALUE,
+                    Integer.MAX_VALUE, DiffOptions.DEFAULT, streamed);
+            assertEquals(String.join("", diff.files().stream().map(FileDiffDto::getPatch).toList()),
+                    streamed.toString(StandardCharsets.UTF_8));
+            streamed.reset();
+            diffService.writePatch(repo, before.getTree(), after.getTree(), "moved/original.txt", 0, 1,
+                    Integer.MAX_VALUE, DiffOptions.DEFAULT, streamed);
+            assertEquals(file(diff, "moved/renamed.txt").getPatch(), streamed.toString(StandardCharsets.UTF_8));
+            assertEquals(diff.additions(), diff.files().stream().mapToInt(FileDiffDto::getAdditions).sum());
+            assertFalse(diff.truncated());
+
+            DiffResult limited = diffService.diff(repo, before.getTree(), after.getTree(), 10, Integer.MAX_VALUE, false, DiffOptions.DEFAULT);
+            assertTrue(limited.truncated());
+            assertEquals(diff.files().subList(0, 10).stream().map(FileDiffDto::getPath).toList(),
+                    limited.files().stream().map(FileDiffDto::getPath).toList());
+
+            // The line budget spans batches and chunks: files are kept while the lines before them fit.
+            int lines = 0;
+            int kept = 0;
+            while (lines < 100) {
+                lines += diff.files().get(kept).getAdditions() + diff.files().get(kept).getDeletions();
+                kept++;
+            }
+            DiffResult budgeted = diffService.diff(repo, before.getTree(), after.getTree(), Integer.MAX_VALUE, 100, true, DiffOptions.DEFAULT);
+            assertTrue(budgeted.truncated());
+            assertEquals(diff.files().subList(0, kept).stream().map(FileDiffDto::getPatch).toList(),
+                    budgeted.files().stream().map(FileDiffDto::getPatch).toList());
+        }
+    }
+
+    @Test
+    void optionsAndLimitsShapeTheResult() throws Exception {
+        RevCommit before;
+        RevCommit after;
+        try (Git git = Git.init().setDirectory(tmp.toFile()).call()) {
+            write("spaces.txt", "a b\nc\n");
+            write("big.txt", lines("big", 200));
+            write("one.txt", lines("one", 30));
+            write("two.txt", lines("two", 30));
+            git.add().addFilepattern(".").call();
+            before = git.commit().setMessage("initial").call();
+
+            write("spaces.txt", "a   b\nc\n");
+            write("big.txt", lines("bigger", 200));
+            Files.move(tmp.resolve("one.txt"), tmp.resolve("one-moved.txt"));
+            Files.writeString(tmp.resolve("one-moved.txt"), lines("one", 30) + "tail\n");
+            Files.move(tmp.resolve("two.txt"), tmp.resolve("two-moved.txt"));
+            Files.writeString(tmp.resolve("two-moved.txt"), lines("two", 30) + "tail\n");
+            git.add().addFilepattern(".").call();
+            git.add().setUpdate(true).addFilepattern(".").call();
+            after = git.commit().setMessage("change").call();
+        }
+
+        DiffService limited = new DiffService(new DiffCache(new SimpleMeterRegistry(), 1 << 20, "", 0, Duration.ofMinutes(1)), 2, 1, 0, 1024);
+        try (Git git = Git.open(tmp.toFile())) {
+            Repository repo = git.getRepository();
+            DiffResult ignoring = limited.diff(repo, before.getTree(), after.getTree(), 100, 10_000, true,
+                    DiffOptions.parse("myers", "ignore-all"));
+
+            FileDiffDto spaces = file(ignoring, "spaces.txt");
+            assertEquals(0, spaces.getAdditions());
+            FileDiffDto big = file(ignoring, "big.txt");
+            assertTrue(big.isTooLarge());
+            assertNull(big.getPatch());
+            assertTrue(ignoring.renamesLimited());
+            assertTrue(ignoring.files().stream().noneMatch(f -> "RENAME".equals(f.getChangeType())));
+
+            // The patch at each index is the file listed there, renames unpaired as in the listing.
+            DiffResult listing = limited.diff(repo, before.getTree(), after.getTree(), 100, Integer.MAX_VALUE, false,
+                    DiffOptions.parse("myers", "ignore-all"));
+            for (int i = 0; i < listing.files().size(); i++) {
+                ByteArrayOutputStream patch = new ByteArrayOutputStream();
+                limited.writePatch(repo, before.getTree(), after.getTree(), null, i, 1, 100,
+                        DiffOptions.parse("myers", "ignore-all"), patch);
+                FileDiffDto listed = listing.files().get(i);
+                assertTrue(patch.toString(StandardCharsets.UTF_8)
+                        .startsWith("diff --git a/" + listed.getPath() + " b/" + listed.getPath()), listed.getPath());
+            }
+
+            DiffResult plain = diffService.diff(repo, before.getTree(), after.getTree(), 100, 10_000, true, DiffOptions.DEFAULT);
+            assertEquals(1, file(plain, "spaces.txt").getAdditions());
+            assertFalse(plain.renamesLimited());
+            assertEquals(2, plain.files().stream().filter(f -> "RENAME".equals(f.getChangeType())).count());
+        } finally {
+            limited.shutdown();
+        }
+    }
+
+    private static FileDiffDto file(DiffResult diff, String path) {
+        return diff.files().stream().filter(f -> path.equals(f.getPath())).findFirst().orElseThrow();
+    }
+
+    private void write(String path, String content) throws Exception {
+        Path file = tmp.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+
+    private static String lines(String prefix, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(prefix).append(' ').append(i).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,127 @@
+package org.os.gitbase.git.service;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.os.gitbase.git.cache.RepositoryRegistry;
+import org.os.gitbase.git.dto.FileContentDto;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.os.gitbase.git.TestRepos.commit;
+
+class GitServiceImplTest {
+
+    private static final int PREVIEW_BYTES = 512 * 1024;
+    private static final String OWNER = "file-content-test";
+    private static final String LINE = "x".repeat(63) + "\n";
+
+    // GitServiceImpl checks for the bare repository on disk before opening it through the registry.
+    private final Path repoDir = Paths.get("./gitbase/repositories", OWNER, "repo.git");
+    private final Repository repo = new InMemoryRepository(new DfsRepositoryDescription("repo"));
+    private final RepositoryRegistry registry = mock(RepositoryRegistry.class);
+    private final GitServiceImpl gitService = new GitServiceImpl(null, null, registry, null, null, null, null, null);
+    private ObjectId head;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(repoDir);
+        Files.createFile(repoDir.resolve("HEAD"));
+        Files.createFile(repoDir.resolve("config"));
+
+        head = commit(repo, Map.of(
+                "under.txt", LINE.repeat(PREVIEW_BYTES / LINE.length() - 1) + "y".repeat(63),
+                "over.txt", LINE.repeat(PREVIEW_BYTES / LINE.length()) + "z\n",
+                "image.png", "PNG\0\1\2\3",
+                // The preview window ends after the first two bytes of the three-byte euro sign.
+                "one-line.txt", "x".repeat(PREVIEW_BYTES - 2) + "\u20ac\u20ac"));
+        var update = repo.updateRef(Constants.R_HEADS + "main");
+        update.setNewObjectId(head);
+        update.update();
+        when(registry.open(OWNER, "repo")).thenAnswer(i -> {
+            repo.incrementOpen();
+            return repo;
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        repo.close();
+        FileSystemUtils.deleteRecursively(repoDir.getParent());
+        // Drop the parent directories too when this test created them.
+        for (Path dir = repoDir.getParent().getParent(); dir != null && dir.getNameCount() > 1; dir = dir.getParent()) {
+            try {
+                Files.deleteIfExists(dir);
+            } catch (DirectoryNotEmptyException e) {
+                break;
+            }
+        }
+    }
+
+    @Test
+    void fileJustUnderThePreviewLimitIsReturnedWhole() {
+        FileContentDto file = gitService.getFileContent(OWNER, "repo", "main", "under.txt");
+
+        assertEquals(PREVIEW_BYTES - 1, file.getSize());
+        assertFalse(file.isTruncated());
+        assertFalse(file.isBinary());
+        assertEquals(PREVIEW_BYTES - 1, file.getContent().length());
+        assertEquals(PREVIEW_BYTES / LINE.length(), file.getLineCount());
+        assertEquals("/api/v1/web/gitbase/" + OWNER + "/repo/raw?ref=" + head.name() + "&path=under.txt",
+                file.getRawUrl());
+    }
+
+    @Test
+    void fileJustOverThePreviewLimitIsTruncatedAtALineBoundary() {
+        FileContentDto file = gitService.getFileContent(OWNER, "repo", "main", "over.txt");
+
+        assertEquals(PREVIEW_BYTES + 2, file.getSize());
+        assertTrue(file.isTruncated());
+        assertFalse(file.isBinary());
+        assertEquals(PREVIEW_BYTES, file.getContent().length());
+        assertTrue(file.getContent().endsWith(LINE));
+        assertNull(file.getLineCount());
+        assertEquals("/api/v1/web/gitbase/" + OWNER + "/repo/raw?ref=" + head.name() + "&path=over.txt",
+                file.getRawUrl());
+    }
+
+    @Test
+    void previewWithoutANewlineIsCutBeforeASplitCharacter() {
+        FileContentDto file = gitService.getFileContent(OWNER, "repo", "main", "one-line.txt");
+
+        assertEquals(PREVIEW_BYTES + 4, file.getSize());
+        assertTrue(file.isTruncated());
+        assertFalse(file.isBinary());
+        assertEquals("x".repeat(PREVIEW_BYTES - 2), file.getContent());
+        assertNull(file.getLineCount());
+    }
+
+    @Test
+    void binaryFileHasNoContentOrLineCount() {
+        FileContentDto file = gitService.getFileContent(OWNER, "repo", "main", "image.png");
+
+        assertEquals(7, file.getSize());
+        assertTrue(file.isBinary());
+        assertFalse(file.isTruncated());
+        assertNull(file.getContent());
+        assertNull(file.getLineCount());
+        assertEquals("/api/v1/web/gitbase/" + OWNER + "/repo/raw?ref=" + head.name() + "&path=image.png",
+                file.getRawUrl());
+    }
+}
@@ -0,0 +1,166 @@
+package org.os.gitbase.git.service;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.os.gitbase.git.cache.RepositoryRegistry;
+import org.os.gitbase.git.dto.CompareDto;
+import org.os.gitbase.git.entity.Branch;
+import org.os.gitbase.git.entity.CompareSnapshot;
+import org.os.gitbase.git.entity.PullRequest;
+import org.os.gitbase.git.entity.RepositoryGit;
+import org.os.gitbase.git.entity.enums.PullRequestStatus;
+import org.os.gitbase.git.repository.CompareSnapshotRepository;
+import org.os.gitbase.git.repository.GitRepositoryDB;
+import org.os.gitbase.git.repository.PullRequestRepository;
+import org.os.gitbase.git.util.DiffOptions;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.os.gitbase.git.TestRepos.commit;
+
+class PullRequestCompareServiceTest {
+
+    private final Repository repo = new InMemoryRepository(new DfsRepositoryDescription("repo"));
+    private final RepositoryGit entity = new RepositoryGit();
+    private final PullRequest pr = new PullRequest();
+    private final GitService gitService = mock(GitService.class);
+    private final MergeabilityService mergeabilityService = mock(MergeabilityService.class);
+    /** Snapshot rows keyed by {@code base..head}, behind a real {@link CompareSnapshotStore}. */
+    private final Map<String, CompareSnapshot> rows = new ConcurrentHashMap<>();
+    private CompareSnapshotStore store;
+    private PullRequestCompareService service;
+    private ObjectId main;
+    private ObjectId feature;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ObjectId root = commit(repo, Map.of("a.txt", "a\n"));
+        main = commit(repo, Map.of("a.txt", "a\n", "b.txt", "b\n"), root);
+        feature = commit(repo, Map.of("a.txt", "a2\n"), root);
+        setBranch("main", main);
+        setBranch("feature", feature);
+
+        pr.setId(7L);
+        pr.setStatus(PullRequestStatus.OPEN);
+        pr.setTargetBranch(branch("main"));
+        pr.setSourceBranch(branch("feature"));
+
+        GitRepositoryDB gitRepositoryDB = mock(GitRepositoryDB.class);
+        PullRequestRepository pullRequestRepository = mock(PullRequestRepository.class);
+        RepositoryRegistry registry = mock(RepositoryRegistry.class);
+        when(gitRepositoryDB.findByOwnerNameAndRepoName("alice", "repo")).thenReturn(Optional.of(entity));
+        when(pullRequestRepository.findWithBranches(entity, 7L)).thenReturn(Optional.of(pr));
+        when(pullRequestRepository.findWithBranches(entity, PullRequestStatus.OPEN)).thenReturn(List.of(pr));
+        when(registry.open("alice", "repo")).thenAnswer(i -> {
+            repo.incrementOpen();
+            return repo;
+        });
+        when(gitService.compare(eq("alice"), eq("repo"), anyString(), anyString(), eq(DiffOptions.DEFAULT)))
+                .thenAnswer(i -> new CompareDto(i.getArgument(2), i.getArgument(3), null, 1, 1, List.of(), null,
+                        1, 0, false, false, List.of()));
+
+        CompareSnapshotRepository snapshots = mock(CompareSnapshotRepository.class);
+        when(snapshots.findByRepositoryAndBaseShaAndHeadSha(any(), anyString(), anyString()))
+                .thenAnswer(i -> Optional.ofNullable(rows.get(i.getArgument(1) + ".." + i.getArgument(2))));
+        when(snapshots.save(any())).thenAnswer(i -> {
+            CompareSnapshot row = i.getArgument(0);
+            rows.put(row.getBaseSha() + ".." + row.getHeadSha(), row);
+            return row;
+        });
+        doAnswer(i -> rows.keySet().removeIf(key -> !key.equals(i.getArgument(2) + ".." + i.getArgument(3))))
+                .when(snapshots).deleteSuperseded(any(), any(), anyString(), anyString());
+        store = new CompareSnapshotStore(snapshots);
+
+        service = new PullRequestCompareService(gitService, gitRepositoryDB, pullRequestRepository, store,
+                registry, mergeabilityService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        repo.close();
+    }
+
+    @Test
+    void missComputesAndStoresTheCompareAndAHitReusesIt() {
+        CompareDto first = service.compare("alice", "repo", 7L);
+        CompareDto second = service.compare("alice", "repo", 7L);
+
+        verify(gitService, times(1)).compare("alice", "repo", main.name(), feature.name(), DiffOptions.DEFAULT);
+        assertTrue(rows.containsKey(main.name() + ".." + feature.name()));
+        assertEquals("main", first.base());
+        assertEquals("feature", first.head());
+        assertEquals(first, second);
+    }
+
+    @Test
+    void renamedBranchAtTheSameTipReusesTheSnapshotUnderItsNewName() throws Exception {
+        service.compare("alice", "repo", 7L);
+        setBranch("trunk", main);
+        pr.setTargetBranch(branch("trunk"));
+
+        CompareDto relabeled = service.compare("alice", "repo", 7L);
+
+        verify(gitService, times(1)).compare(eq("alice"), eq("repo"), anyString(), anyString(), any());
+        assertEquals("trunk", relabeled.base());
+        assertEquals("feature", relabeled.head());
+        assertEquals(1, relabeled.aheadBy());
+    }
+
+    @Test
+    void pushToABranchOfAnOpenPullRequestRematerializesItsCompare() throws Exception {
+        service.compare("alice", "repo", 7L);
+        ObjectId moved = commit(repo, Map.of("a.txt", "a3\n"), feature);
+        setBranch("feature", moved);
+
+        // A push to an unrelated branch runs first on the same worker and changes nothing.
+        service.onPush("alice", "repo", List.of(pushed("docs", main, moved)));
+        service.onPush("alice", "repo", List.of(pushed("feature", feature, moved)));
+
+        verify(mergeabilityService, timeout(5000)).refresh("alice", "repo", main.name(), moved.name());
+        verify(gitService, times(2)).compare(eq("alice"), eq("repo"), anyString(), anyString(), any());
+        verify(gitService).compare("alice", "repo", main.name(), moved.name(), DiffOptions.DEFAULT);
+        assertEquals(List.of(main.name() + ".." + moved.name()), List.copyOf(rows.keySet()));
+        assertTrue(store.find(entity, main.name(), moved.name()).isPresent());
+    }
+
+    private ReceiveCommand pushed(String branch, ObjectId oldId, ObjectId newId) {
+        ReceiveCommand cmd = new ReceiveCommand(oldId, newId, Constants.R_HEADS + branch);
+        cmd.setResult(ReceiveCommand.Result.OK);
+        return cmd;
+    }
+
+    private void setBranch(String name, ObjectId id) throws Exception {
+        var update = repo.updateRef(Constants.R_HEADS + name);
+        update.setNewObjectId(id);
+        update.setForceUpdate(true);
+        update.update();
+    }
+
+    private static Branch branch(String name) {
+        Branch branch = new Branch();
+        branch.setName(name);
+        return branch;
+    }
+}
@@ -0,0 +1,86 @@
+package org.os.gitbase.git.service;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.Test;
+import org.os.gitbase.auth.repository.UserRepository;
+import org.os.gitbase.exception.ConflictException;
+import org.os.gitbase.git.cache.RepositoryRegistry;
+import org.os.gitbase.git.dto.MergePullRequestDto;
+import org.os.gitbase.git.entity.Branch;
+import org.os.gitbase.git.entity.PullRequest;
+import org.os.gitbase.git.entity.RepositoryGit;
+import org.os.gitbase.git.entity.enums.PullRequestStatus;
+import org.os.gitbase.git.hook.PushSyncHook;
+import org.os.gitbase.git.repository.GitRepositoryDB;
+import org.os.gitbase.git.repository.PullRequestRepository;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.os.gitbase.git.TestRepos.commit;
+
+class PullRequestMergeServiceTest {
+
+    @Test
+    void rebaseWithEveryChangeAlreadyOnTheTargetIsAConflict() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("noop"))) {
+            ObjectId base = commit(repo, Map.of("a.txt", "a\n"));
+            ObjectId target = commit(repo, Map.of("a.txt", "a\n", "b.txt", "b\n"), base);
+            ObjectId source = commit(repo, Map.of("a.txt", "a\n", "b.txt", "b\n"), base);
+            setBranch(repo, "main", target);
+            setBranch(repo, "feature", source);
+
+            RepositoryGit entity = new RepositoryGit();
+            PullRequest pr = new PullRequest();
+            pr.setId(7L);
+            pr.setTitle("feature");
+            pr.setStatus(PullRequestStatus.OPEN);
+            pr.setTargetBranch(branch("main"));
+            pr.setSourceBranch(branch("feature"));
+
+            GitRepositoryDB gitRepositoryDB = mock(GitRepositoryDB.class);
+            PullRequestRepository pullRequestRepository = mock(PullRequestRepository.class);
+            RepositoryRegistry registry = mock(RepositoryRegistry.class);
+            PushSyncHook pushSyncHook = mock(PushSyncHook.class);
+            when(gitRepositoryDB.findByOwnerNameAndRepoName("alice", "repo")).thenReturn(Optional.of(entity));
+            when(pullRequestRepository.findWithBranches(entity, 7L)).thenReturn(Optional.of(pr));
+            when(registry.open("alice", "repo")).thenAnswer(i -> {
+                repo.incrementOpen();
+                return repo;
+            });
+
+            PullRequestMergeService service = new PullRequestMergeService(gitRepositoryDB, pullRequestRepository,
+                    mock(UserRepository.class), registry, pushSyncHook, mock(ActivityService.class));
+
+            assertThrows(ConflictException.class, () -> service.merge("alice", "repo", 7L,
+                    new MergePullRequestDto("rebase", null, null), "bob@example.com"));
+            assertEquals(target, repo.exactRef(Constants.R_HEADS + "main").getObjectId());
+            assertEquals(PullRequestStatus.OPEN, pr.getStatus());
+            verify(pullRequestRepository, never()).save(any());
+            verify(pushSyncHook, never()).afterUpdate(any(), any(), any(), any());
+        }
+    }
+
+    private static void setBranch(Repository repo, String name, ObjectId id) throws Exception {
+        var update = repo.updateRef(Constants.R_HEADS + name);
+        update.setNewObjectId(id);
+        update.update();
+    }
+
+    private static Branch branch(String name) {
+        Branch branch = new Branch();
+        branch.setName(name);
+        return branch;
+    }
+}
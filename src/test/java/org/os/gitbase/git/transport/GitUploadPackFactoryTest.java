@@ -0,0 +1,98 @@
+package org.os.gitbase.git.transport;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.pack.PackConfig;
+import org.eclipse.jgit.transport.PacketLineOut;
+import org.eclipse.jgit.transport.RefAdvertiser;
+import org.eclipse.jgit.transport.UploadPack;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GitUploadPackFactoryTest {
+
+    @TempDir
+    Path tmp;
+
+    private final GitUploadPackFactory factory = new GitUploadPackFactory("2", true, 2);
+
+    @Test
+    void v2ClientGetsCapabilitiesAndPrefixFilteredRefs() throws Exception {
+        try (Git git = Git.init().setDirectory(tmp.toFile()).setInitialBranch("main").call()) {
+            Files.writeString(tmp.resolve("a.txt"), "a\n");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("initial").call();
+            git.branchCreate().setName("feature/x").call();
+            Repository repo = git.getRepository();
+
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.addHeader(GitUploadPackFactory.GIT_PROTOCOL_HEADER, "version=2");
+
+            ByteArrayOutputStream advertisement = new ByteArrayOutputStream();
+            UploadPack up = factory.create(request, repo);
+            up.setBiDirectionalPipe(false);
+            up.sendAdvertisedRefs(new RefAdvertiser.PacketLineOutRefAdvertiser(new PacketLineOut(advertisement)),
+                    "git-upload-pack");
+            String caps = advertisement.toString(StandardCharsets.UTF_8);
+            assertTrue(caps.contains("version 2"));
+            assertTrue(caps.contains("ls-refs"));
+            assertTrue(caps.contains("filter"));
+            assertTrue(caps.contains("shallow"));
+            assertFalse(caps.contains("# service"));
+
+            ByteArrayOutputStream command = new ByteArrayOutputStream();
+            PacketLineOut pck = new PacketLineOut(command);
+            pck.writeString("command=ls-refs\n");
+            pck.writeDelim();
+            pck.writeString("ref-prefix refs/heads/feature/\n");
+            pck.end();
+            ByteArrayOutputStream refs = new ByteArrayOutputStream();
+            UploadPack lsRefs = factory.create(request, repo);
+            lsRefs.setBiDirectionalPipe(false);
+            lsRefs.upload(new ByteArrayInputStream(command.toByteArray()), refs, null);
+            String listed = refs.toString(StandardCharsets.UTF_8);
+            assertTrue(listed.contains("refs/heads/feature/x"));
+            assertFalse(listed.contains("refs/heads/main"));
+        }
+    }
+
+    @Test
+    void v0ClientStillGetsTheServiceLineAndRefs() throws Exception {
+        try (Git git = Git.init().setDirectory(tmp.toFile()).setInitialBranch("main").call()) {
+            Files.writeString(tmp.resolve("a.txt"), "a\n");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("initial").call();
+
+            ByteArrayOutputStream advertisement = new ByteArrayOutputStream();
+            UploadPack up = factory.create(new MockHttpServletRequest(), git.getRepository());
+            up.setBiDirectionalPipe(false);
+            up.sendAdvertisedRefs(new RefAdvertiser.PacketLineOutRefAdvertiser(new PacketLineOut(advertisement)),
+                    "git-upload-pack");
+            String refs = advertisement.toString(StandardCharsets.UTF_8);
+            assertTrue(refs.contains("# service=git-upload-pack"));
+            assertTrue(refs.contains("refs/heads/main"));
+            assertTrue(refs.contains("filter"));
+        }
+    }
+
+    @Test
+    void packGenerationIsBoundedToTheConfiguredThreads() throws Exception {
+        try (Git git = Git.init().setDirectory(tmp.toFile()).call()) {
+            PackConfig packConfig = factory.packConfig(git.getRepository());
+            assertEquals(2, packConfig.getThreads());
+            assertTrue(packConfig.isReuseDeltas());
+            assertTrue(packConfig.isReuseObjects());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.os.gitbase.git.TestRepos;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AheadBehindCounterTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void bitmapCountsMatchTheWalk() throws Exception {
+        ObjectId main;
+        ObjectId feature;
+        try (Git git = Git.init().setDirectory(tmp.toFile()).setInitialBranch("main").call()) {
+            for (int i = 0; i < 3; i++) {
+                commit(git, "a.txt", "main " + i);
+            }
+            git.checkout().setCreateBranch(true).setName("feature").call();
+            for (int i = 0; i < 4; i++) {
+                commit(git, "b.txt", "feature " + i);
+            }
+            git.checkout().setName("main").call();
+            for (int i = 0; i < 2; i++) {
+                commit(git, "a.txt", "main more " + i);
+            }
+        }
+
+        try (FileRepository repo = new FileRepository(new File(tmp.toFile(), ".git"))) {
+            main = repo.resolve("refs/heads/main");
+            feature = repo.resolve("refs/heads/feature");
+
+            AheadBehindCounter.Counts walked = AheadBehindCounter.count(repo, feature, main);
+            assertFalse(walked.fromBitmaps());
+            assertEquals(4, walked.ahead());
+            assertEquals(2, walked.behind());
+
+            GC gc = new GC(repo);
+            gc.setAuto(false);
+            gc.gc().get();
+        }
+
+        // Commits made after the bitmaps were written are walked on top of them.
+        try (Git git = Git.open(tmp.toFile())) {
+            git.checkout().setName("feature").call();
+            commit(git, "b.txt", "after gc");
+        }
+        try (FileRepository repo = new FileRepository(new File(tmp.toFile(), ".git"))) {
+            AheadBehindCounter.Counts counted = AheadBehindCounter.count(repo, repo.resolve("refs/heads/feature"), main);
+            assertTrue(counted.fromBitmaps());
+            assertEquals(5, counted.ahead());
+            assertEquals(2, counted.behind());
+
+            Map<ObjectId, AheadBehindCounter.Counts> all =
+                    AheadBehindCounter.countAll(repo, main, List.of(repo.resolve("refs/heads/feature"), main));
+            assertEquals(counted, all.get(repo.resolve("refs/heads/feature")));
+            assertEquals(new AheadBehindCounter.Counts(0, 0, true), all.get(main));
+        }
+    }
+
+    @Test
+    void sharedWalkMatchesPairwiseCountsAcrossBatches() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("branches"))) {
+            ObjectId root = TestRepos.commit(repo, Map.of());
+            List<ObjectId> trunk = new ArrayList<>(List.of(root));
+            for (int i = 1; i < 40; i++) {
+                trunk.add(TestRepos.commit(repo, Map.of(), trunk.get(i - 1)));
+            }
+            ObjectId main = trunk.get(trunk.size() - 1);
+
+            // 70 branches (more than one batch) forking at different points, some with a merge back.
+            List<ObjectId> tips = new ArrayList<>();
+            for (int b = 0; b < 70; b++) {
+                ObjectId tip = trunk.get((b * 7) % trunk.size());
+                for (int k = 0; k < b % 4; k++) {
+                    tip = TestRepos.commit(repo, Map.of(), tip);
+                }
+                if (b % 5 == 0) {
+                    tip = TestRepos.commit(repo, Map.of(), tip, trunk.get(Math.min(trunk.size() - 1, (b * 7) % trunk.size() + 3)));
+                }
+                tips.add(tip);
+            }
+            tips.add(main);
+
+            Map<ObjectId, AheadBehindCounter.Counts> all = AheadBehindCounter.countAll(repo, main, tips);
+            for (ObjectId tip : tips) {
+                assertEquals(AheadBehindCounter.count(repo, tip, main), all.get(tip), tip.name());
+            }
+        }
+    }
+
+    private RevCommit commit(Git git, String path, String content) throws Exception {
+        Files.writeString(tmp.resolve(path), content, StandardCharsets.UTF_8);
+        git.add().addFilepattern(path).call();
+        return git.commit().setMessage(content).call();
+    }
+}
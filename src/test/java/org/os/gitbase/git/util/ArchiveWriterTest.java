@@ -0,0 +1,146 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchiveWriterTest {
+
+    @TempDir
+    Path tmp;
+
+    private static final String LONG_DIR = "a-directory-name-long-enough/that-the-full-path/does-not-fit/in-the-hundred-byte-ustar-name-field";
+
+    @Test
+    void zipContainsEveryPathUnderThePrefix() throws Exception {
+        RevCommit commit = fixture();
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive(commit, ArchiveWriter.Format.ZIP)))) {
+            for (ZipEntry e; (e = zip.getNextEntry()) != null; ) {
+                entries.put(e.getName(), e.isDirectory() ? null : new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+                assertEquals(commit.getCommitTime(), e.getTime() / 1000, 2);
+            }
+        }
+        assertEquals("hello\n", entries.get("repo-main/README.md"));
+        assertTrue(entries.containsKey("repo-main/bin/"));
+        assertNull(entries.get("repo-main/bin/"));
+        assertEquals("#!/bin/sh\n", entries.get("repo-main/bin/run.sh"));
+        assertEquals("deep\n", entries.get("repo-main/" + LONG_DIR + "/file.txt"));
+    }
+
+    @Test
+    void tarKeepsModesAndCarriesLongPathsInPaxHeaders() throws Exception {
+        RevCommit commit = fixture();
+        Map<String, TarEntry> entries = readTar(archive(commit, ArchiveWriter.Format.TAR_GZ));
+
+        assertEquals("hello\n", entries.get("repo-main/README.md").content());
+        assertEquals(0644, entries.get("repo-main/README.md").mode());
+        assertEquals(0755, entries.get("repo-main/bin/run.sh").mode());
+        assertEquals('5', entries.get("repo-main/bin/").type());
+        assertEquals("deep\n", entries.get("repo-main/" + LONG_DIR + "/file.txt").content());
+        assertEquals(commit.getCommitTime(), entries.get("repo-main/README.md").mtime());
+    }
+
+    private RevCommit fixture() throws Exception {
+        try (Git git = Git.init().setDirectory(tmp.toFile()).call()) {
+            Path root = tmp;
+            Files.writeString(root.resolve("README.md"), "hello\n");
+            Files.createDirectories(root.resolve("bin"));
+            Path script = root.resolve("bin/run.sh");
+            Files.writeString(script, "#!/bin/sh\n");
+            script.toFile().setExecutable(true);
+            Files.createDirectories(root.resolve(LONG_DIR));
+            Files.writeString(root.resolve(LONG_DIR).resolve("file.txt"), "deep\n");
+            git.add().addFilepattern(".").call();
+            return git.commit().setMessage("initial").setAuthor("a", "a@example.com").setCommitter("a", "a@example.com").call();
+        }
+    }
+
+    private byte[] archive(RevCommit commit, ArchiveWriter.Format format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Git git = Git.open(tmp.toFile())) {
+            Repository repo = git.getRepository();
+            try (ObjectReader reader = repo.newObjectReader()) {
+                ArchiveWriter.write(reader, commit.getTree(), "repo-main/", commit.getCommitTime() * 1000L, format, out);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private record TarEntry(char type, int mode, long mtime, String content) {
+    }
+
+    /** Minimal ustar + pax reader: enough to check what the writer produces. */
+    private static Map<String, TarEntry> readTar(byte[] gz) throws IOException {
+        Map<String, TarEntry> entries = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(gz)))) {
+            String paxPath = null;
+            byte[] header = new byte[512];
+            while (true) {
+                in.readFully(header);
+                if (header[0] == 0) {
+                    break;
+                }
+                assertEquals("ustar", new String(header, 257, 5, StandardCharsets.US_ASCII));
+                long sum = 0;
+                for (int i = 0; i < 512; i++) {
+                    sum += (i >= 148 && i < 156) ? ' ' : header[i] & 0xff;
+                }
+                assertEquals(sum, octal(header, 148, 8));
+                char type = (char) header[156];
+                long size = octal(header, 124, 12);
+                byte[] data = readPadded(in, size);
+                if (type == 'x') {
+                    String records = new String(data, StandardCharsets.UTF_8);
+                    int at = records.indexOf(" path=");
+                    paxPath = records.substring(at + 6, records.indexOf('\n', at));
+                    continue;
+                }
+                String name = paxPath != null ? paxPath : cString(header, 0, 100);
+                paxPath = null;
+                entries.put(name, new TarEntry(type, (int) octal(header, 100, 8), octal(header, 136, 12),
+                        new String(data, StandardCharsets.UTF_8)));
+            }
+        }
+        return entries;
+    }
+
+    private static byte[] readPadded(InputStream in, long size) throws IOException {
+        byte[] data = in.readNBytes((int) size);
+        in.readNBytes((int) ((512 - size % 512) % 512));
+        return data;
+    }
+
+    private static long octal(byte[] h, int off, int len) {
+        return Long.parseLong(cString(h, off, len).trim(), 8);
+    }
+
+    private static String cString(byte[] h, int off, int len) {
+        int end = off;
+        while (end < off + len && h[end] != 0) {
+            end++;
+        }
+        return new String(h, off, end - off, StandardCharsets.UTF_8);
+    }
+}
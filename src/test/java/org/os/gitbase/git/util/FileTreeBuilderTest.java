@@ -0,0 +1,150 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.Test;
+import org.os.gitbase.git.dto.FileTreeNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileTreeBuilderTest {
+
+    @Test
+    void buildsNestedStructure() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("tree"))) {
+            ObjectId tree = writeTree(repo, "README.md", "src/Main.java", "src/util/A.java", "src/util/B.java");
+
+            FileTreeNode root = FileTreeBuilder.build(repo, tree);
+
+            assertEquals("root", root.getName());
+            assertEquals(2, root.getChildren().size());
+            FileTreeNode readme = root.getChildren().get(0);
+            assertEquals("README.md", readme.getName());
+            assertFalse(readme.isDirectory());
+
+            FileTreeNode src = root.getChildren().get(1);
+            assertTrue(src.isDirectory());
+            assertEquals(2, src.getChildren().size());
+            assertEquals("Main.java", src.getChildren().get(0).getName());
+            FileTreeNode util = src.getChildren().get(1);
+            assertEquals("util", util.getName());
+            assertEquals(2, util.getChildren().size());
+            assertEquals("B.java", util.getChildren().get(1).getName());
+        }
+    }
+
+    @Test
+    void depthLimitedBuildStopsAtDepthAndCarriesIds() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("lazy"))) {
+            ObjectId tree = writeTree(repo, "README.md", "src/Main.java", "src/util/A.java");
+
+            FileTreeNode root = FileTreeBuilder.build(repo, tree, "", 2);
+
+            assertEquals(tree.name(), root.getSha());
+            FileTreeNode src = root.getChildren().get(1);
+            assertEquals("src", src.getPath());
+            assertEquals(Boolean.FALSE, src.getTruncated());
+            FileTreeNode util = src.getChildren().get(1);
+            assertEquals("src/util", util.getPath());
+            assertEquals(Boolean.TRUE, util.getTruncated());
+            assertTrue(util.getChildren().isEmpty());
+
+            FileTreeNode expanded = FileTreeBuilder.build(repo, ObjectId.fromString(util.getSha()), "src/util", 1);
+            assertEquals("util", expanded.getName());
+            assertEquals("src/util/A.java", expanded.getChildren().get(0).getPath());
+        }
+    }
+
+    /**
+     * Each tree object is read exactly once, so building the tree is linear in its size: 100k files
+     * in 50 packages of 20 modules read the root, 50 and 1000 subtrees.
+     */
+    @Test
+    void readsEveryTreeOnce() throws Exception {
+        AtomicInteger treeReads = new AtomicInteger();
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("large")) {
+            @Override
+            public ObjectReader newObjectReader() {
+                return new CountingReader(super.newObjectReader(), treeReads);
+            }
+        }) {
+            ObjectId tree = writeTree(repo, paths(100_000));
+
+            FileTreeNode root = FileTreeBuilder.build(repo, tree);
+
+            assertEquals(1 + 50 + 1000, treeReads.get());
+            assertEquals(50, root.getChildren().size());
+            assertEquals(100_000, root.getChildren().stream()
+                    .flatMap(pkg -> pkg.getChildren().stream())
+                    .mapToInt(mod -> mod.getChildren().size())
+                    .sum());
+        }
+    }
+
+    /** Counts the tree objects opened through it. */
+    private static final class CountingReader extends ObjectReader.Filter {
+        private final ObjectReader delegate;
+        private final AtomicInteger treeReads;
+
+        CountingReader(ObjectReader delegate, AtomicInteger treeReads) {
+            this.delegate = delegate;
+            this.treeReads = treeReads;
+        }
+
+        @Override
+        protected ObjectReader delegate() {
+            return delegate;
+        }
+
+        @Override
+        public ObjectLoader open(AnyObjectId objectId, int typeHint) throws IOException {
+            if (typeHint == Constants.OBJ_TREE) {
+                treeReads.incrementAndGet();
+            }
+            return super.open(objectId, typeHint);
+        }
+    }
+
+    private static String[] paths(int count) {
+        String[] paths = new String[count];
+        for (int i = 0; i < count; i++) {
+            paths[i] = String.format("pkg%03d/mod%02d/File%06d.java", i / 2000, (i / 100) % 20, i);
+        }
+        return paths;
+    }
+
+    private static ObjectId writeTree(Repository repo, String... paths) throws Exception {
+        try (ObjectInserter inserter = repo.newObjectInserter()) {
+            ObjectId blob = inserter.insert(Constants.OBJ_BLOB, "x".getBytes(StandardCharsets.UTF_8));
+            DirCache index = DirCache.newInCore();
+            DirCacheBuilder builder = index.builder();
+            for (String path : paths) {
+                DirCacheEntry entry = new DirCacheEntry(path);
+                entry.setFileMode(FileMode.REGULAR_FILE);
+                entry.setObjectId(blob);
+                builder.add(entry);
+            }
+            builder.finish();
+            ObjectId tree = index.writeTree(inserter);
+            inserter.flush();
+            return tree;
+        }
+    }
+}
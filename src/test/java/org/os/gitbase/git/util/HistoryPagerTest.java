@@ -0,0 +1,234 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.os.gitbase.git.maintenance.CommitGraphService;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.os.gitbase.git.TestRepos.commit;
+
+class HistoryPagerTest {
+
+    @Test
+    void cursorPagesConcatenateToTheFullHistory() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("pager"))) {
+            ObjectId tip = buildHistoryWithMerges(repo);
+
+            for (String path : new String[]{null, "docs"}) {
+                List<ObjectId> expected = ids(HistoryPager.page(repo, List.of(tip), path, 0, 1000).commits());
+                assertFalse(expected.isEmpty());
+
+                assertEquals(expected, pageThrough(repo, tip, List.of(), path, 3), "path=" + path);
+                assertEquals(expected.subList(3, 6),
+                        ids(HistoryPager.page(repo, List.of(tip), path, 3, 3).commits()));
+            }
+        }
+    }
+
+    @Test
+    void rangePagesResumeWithTheSameExclude() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("range"))) {
+            ObjectId tip = buildHistoryWithMerges(repo);
+            ObjectId base;
+            List<ObjectId> expected = new ArrayList<>();
+            try (RevWalk walk = new RevWalk(repo)) {
+                base = walk.parseCommit(walk.parseCommit(tip).getParent(0)).getParent(0).copy();
+                walk.markStart(walk.parseCommit(tip));
+                walk.markUninteresting(walk.parseCommit(base));
+                walk.sort(RevSort.COMMIT_TIME_DESC);
+                for (RevCommit c : walk) {
+                    expected.add(c.copy());
+                }
+            }
+            assertTrue(expected.size() > 2);
+
+            assertEquals(expected, pageThrough(repo, tip, List.of(base), null, 2));
+        }
+    }
+
+    @Test
+    void skewedCommitDatesNeitherRepeatNorSkipCommits(@TempDir File dir) throws Exception {
+        try (Repository repo = FileRepositoryBuilder.create(dir)) {
+            repo.create(true);
+            ObjectId root = commit(repo, 50, Map.of("f", "1"));
+            // Committed with a clock far ahead: dated after its children.
+            ObjectId ahead = commit(repo, 1000, Map.of("f", "2"), root);
+            ObjectId left = commit(repo, 100, Map.of("f", "3"), ahead);
+            ObjectId right = commit(repo, 500, Map.of("f", "2", "r", "1"), ahead);
+            ObjectId tip = commit(repo, 2000, Map.of("f", "3", "r", "1"), left, right);
+            RefUpdate update = repo.updateRef(Constants.R_HEADS + "main");
+            update.setNewObjectId(tip);
+            update.update();
+            // Generation numbers come from the commit-graph.
+            new CommitGraphService(null, null, Duration.ZERO).write(repo);
+
+            // Date order returns "ahead" before its child "left", which is still on the frontier
+            // after the first page of three.
+            List<ObjectId> expected = List.of(tip, right, ahead, left, root);
+            assertEquals(expected, ids(HistoryPager.page(repo, List.of(tip), null, 0, 1000).commits()));
+            assertEquals(expected, pageThrough(repo, tip, List.of(), null, 3));
+        }
+    }
+
+    @Test
+    void eachPageReadsAboutItsOwnCommits() throws Exception {
+        AtomicInteger commitReads = new AtomicInteger();
+        try (Repository repo = countingRepository("deep", commitReads)) {
+            ObjectId tip = null;
+            for (int i = 0; i < 2000; i++) {
+                tip = tip == null ? commit(repo, Map.of("f", "0")) : commit(repo, Map.of("f", Integer.toString(i)), tip);
+            }
+
+            HistoryPager.Cursor cursor = new HistoryPager.Cursor(List.of(tip), List.of());
+            int pages = 0;
+            while (cursor != null) {
+                commitReads.set(0);
+                HistoryPager.Page page = HistoryPager.page(repo, cursor, List.of(), null, 0, 20);
+                cursor = page.next();
+                pages++;
+                // The page's own commits, the one after it, and the frontier commit parsed as a start.
+                assertTrue(commitReads.get() <= 22, "page " + pages + " read " + commitReads.get());
+            }
+            assertEquals(100, pages);
+        }
+    }
+
+    @Test
+    void largeCompareRangePagesReadOnlyTheirOwnCommits() throws Exception {
+        AtomicInteger commitReads = new AtomicInteger();
+        try (Repository repo = countingRepository("compare", commitReads)) {
+            List<ObjectId> mainline = new ArrayList<>();
+            ObjectId tip = commit(repo, Map.of("f", "0"));
+            mainline.add(tip);
+            for (int i = 1; i < 2000; i++) {
+                tip = commit(repo, Map.of("f", Integer.toString(i)), tip);
+                mainline.add(tip);
+            }
+            ObjectId base = mainline.get(100);
+
+            List<ObjectId> paged = new ArrayList<>();
+            HistoryPager.Cursor cursor = new HistoryPager.Cursor(List.of(tip), List.of());
+            while (cursor != null) {
+                commitReads.set(0);
+                HistoryPager.Page page = HistoryPager.page(repo, cursor, List.of(base), null, 0, 30);
+                paged.addAll(ids(page.commits()));
+                cursor = page.next();
+                // The page, the commits buffered to settle the excluded side, and the cursor's starts.
+                assertTrue(commitReads.get() <= 40, "read " + commitReads.get());
+            }
+
+            List<ObjectId> expected = new ArrayList<>(mainline.subList(101, 2000));
+            Collections.reverse(expected);
+            assertEquals(expected, paged);
+        }
+    }
+
+    @Test
+    void lastPageHasNoCursor() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("last"))) {
+            ObjectId tip = buildHistoryWithMerges(repo);
+            HistoryPager.Page page = HistoryPager.page(repo, List.of(tip), null, 0, 1000);
+            assertNull(HistoryPager.encodeCursor(page.next()));
+        }
+    }
+
+    /** Concatenates the pages of {@code size} commits from {@code tip}, following the cursors. */
+    static List<ObjectId> pageThrough(Repository repo, ObjectId tip, List<ObjectId> exclude, String path, int size)
+            throws Exception {
+        List<ObjectId> paged = new ArrayList<>();
+        String cursor = HistoryPager.encodeCursor(new HistoryPager.Cursor(List.of(tip), List.of()));
+        while (cursor != null) {
+            HistoryPager.Page page = HistoryPager.page(repo, HistoryPager.decodeCursor(cursor), exclude, path, 0, size);
+            paged.addAll(ids(page.commits()));
+            cursor = HistoryPager.encodeCursor(page.next());
+        }
+        return paged;
+    }
+
+    /** An in-memory repository counting the commit objects read through its readers. */
+    static Repository countingRepository(String name, AtomicInteger commitReads) {
+        return new InMemoryRepository(new DfsRepositoryDescription(name)) {
+            @Override
+            public ObjectReader newObjectReader() {
+                return new CountingReader(super.newObjectReader(), commitReads);
+            }
+        };
+    }
+
+    /** Mainline with two merged side branches; "docs/" changes on both sides. */
+    private ObjectId buildHistoryWithMerges(Repository repo) throws Exception {
+        Map<String, String> files = new TreeMap<>();
+        files.put("README.md", "0");
+        files.put("docs/a.md", "0");
+        ObjectId main = commit(repo, files);
+        for (int round = 0; round < 2; round++) {
+            Map<String, String> side = new TreeMap<>(files);
+            ObjectId sideTip = main;
+            for (int i = 0; i < 3; i++) {
+                side.put("docs/side" + round + ".md", Integer.toString(i));
+                sideTip = commit(repo, side, sideTip);
+            }
+            for (int i = 0; i < 3; i++) {
+                files.put(i % 2 == 0 ? "README.md" : "docs/a.md", round + "-" + i);
+                main = commit(repo, files, main);
+            }
+            files.put("docs/side" + round + ".md", side.get("docs/side" + round + ".md"));
+            main = commit(repo, files, main, sideTip);
+        }
+        return main;
+    }
+
+    private static List<ObjectId> ids(List<RevCommit> commits) {
+        return commits.stream().map(RevCommit::copy).toList();
+    }
+
+    /** Counts the commit objects opened through it. */
+    private static final class CountingReader extends ObjectReader.Filter {
+        private final ObjectReader delegate;
+        private final AtomicInteger commitReads;
+
+        CountingReader(ObjectReader delegate, AtomicInteger commitReads) {
+            this.delegate = delegate;
+            this.commitReads = commitReads;
+        }
+
+        @Override
+        protected ObjectReader delegate() {
+            return delegate;
+        }
+
+        @Override
+        public ObjectLoader open(AnyObjectId objectId, int typeHint) throws IOException {
+            if (typeHint == Constants.OBJ_COMMIT) {
+                commitReads.incrementAndGet();
+            }
+            return super.open(objectId, typeHint);
+        }
+    }
+}
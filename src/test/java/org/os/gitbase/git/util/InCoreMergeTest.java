@@ -0,0 +1,58 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.os.gitbase.git.TestRepos.commit;
+
+class InCoreMergeTest {
+
+    @Test
+    void cleanCheckWritesNothingAndMatchesTheRealMerge() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("clean"))) {
+            ObjectId base = commit(repo, Map.of("a.txt", "one\ntwo\nthree\n", "b.txt", "b\n"));
+            ObjectId ours = commit(repo, Map.of("a.txt", "ONE\ntwo\nthree\n", "b.txt", "b\n"), base);
+            ObjectId theirs = commit(repo, Map.of("a.txt", "one\ntwo\nTHREE\n", "b.txt", "b\n", "c.txt", "c\n"), base);
+
+            InCoreMerge.Result checked = InCoreMerge.check(repo, ours, theirs);
+            assertTrue(checked.clean());
+            assertTrue(checked.conflicts().isEmpty());
+            assertNotNull(checked.tree());
+            try (ObjectReader reader = repo.newObjectReader()) {
+                assertFalse(reader.has(checked.tree()), "dry run must not store the merged tree");
+            }
+
+            InCoreMerge.Result merged = InCoreMerge.merge(repo, ours, theirs);
+            assertEquals(checked.tree(), merged.tree());
+            try (ObjectReader reader = repo.newObjectReader()) {
+                assertTrue(reader.has(merged.tree()));
+            }
+        }
+    }
+
+    @Test
+    void conflictingCheckListsTheConflictedPaths() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("conflict"))) {
+            ObjectId base = commit(repo, Map.of("a.txt", "one\n", "b.txt", "b\n"));
+            ObjectId ours = commit(repo, Map.of("a.txt", "ours\n", "b.txt", "b\n"), base);
+            ObjectId theirs = commit(repo, Map.of("a.txt", "theirs\n", "b.txt", "b2\n"), base);
+
+            InCoreMerge.Result checked = InCoreMerge.check(repo, ours, theirs);
+            assertFalse(checked.clean());
+            assertNull(checked.tree());
+            assertEquals(List.of("a.txt"), checked.conflicts());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.os.gitbase.git.TestRepos.commit;
+
+class LastCommitResolverTest {
+
+    @Test
+    void matchesPerPathLogIncludingMerges() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("last"))) {
+            Map<String, String> files = new LinkedHashMap<>();
+            files.put("README.md", "v1");
+            files.put("src/A.java", "a1");
+            files.put("src/B.java", "b1");
+            files.put("docs/guide.md", "g1");
+            ObjectId root = commit(repo, files);
+
+            files.put("src/A.java", "a2");
+            ObjectId second = commit(repo, files, root);
+
+            Map<String, String> side = new LinkedHashMap<>(files);
+            side.put("docs/guide.md", "g2");
+            ObjectId sideTip = commit(repo, side, root);
+
+            files.put("README.md", "v2");
+            ObjectId main = commit(repo, files, second);
+
+            files.put("docs/guide.md", "g2");
+            ObjectId merge = commit(repo, files, main, sideTip);
+
+            List<String> paths = List.of("README.md", "src", "docs", "src/B.java");
+            LastCommitResolver.Result result = LastCommitResolver.resolve(repo, merge, paths, 0);
+
+            assertTrue(result.complete());
+            try (Git git = new Git(repo)) {
+                for (String path : paths) {
+                    Iterator<RevCommit> it = git.log().add(merge).addPath(path).setMaxCount(1).call().iterator();
+                    assertEquals(it.next().getId(), result.commits().get(path).getId(), path);
+                }
+            }
+            assertEquals(sideTip, result.commits().get("docs").getId());
+            assertEquals(root, result.commits().get("src/B.java").getId());
+        }
+    }
+
+    @Test
+    void skewedCommitDatesAreReportedIncomplete() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("skew"))) {
+            ObjectId root = commit(repo, 50, Map.of("f", "1"));
+            // Committed with a clock far ahead: dated after its children.
+            ObjectId changed = commit(repo, 1000, Map.of("f", "2"), root);
+            ObjectId left = commit(repo, 100, Map.of("f", "2", "l", "1"), changed);
+            ObjectId right = commit(repo, 500, Map.of("f", "2", "r", "1"), changed);
+            ObjectId merge = commit(repo, 2000, Map.of("f", "2", "l", "1", "r", "1"), left, right);
+
+            // The walk visits "changed" before "left" hands it the path, so the path is dropped.
+            LastCommitResolver.Result result = LastCommitResolver.resolve(repo, merge, List.of("f", "r"), 0);
+
+            assertFalse(result.complete());
+            assertNull(result.commits().get("f"));
+            assertEquals(right, result.commits().get("r").getId());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.os.gitbase.git.util;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.os.gitbase.git.TestRepos.commit;
+
+class PullRequestMergerTest {
+
+    private static final PersonIdent MERGER = new PersonIdent("merger", "merger@example.com");
+
+    @Test
+    void mergeSquashAndRebaseProduceTheSameTree() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("land"))) {
+            ObjectId base = commit(repo, Map.of("a.txt", "one\nx\ny\ntwo\n"));
+            ObjectId target = commit(repo, Map.of("a.txt", "ONE\nx\ny\ntwo\n"), base);
+            ObjectId f1 = commit(repo, Map.of("a.txt", "one\nx\ny\nTWO\n"), base);
+            ObjectId f2 = commit(repo, Map.of("a.txt", "one\nx\ny\nTWO\n", "b.txt", "b\n"), f1);
+
+            try (RevWalk walk = new RevWalk(repo)) {
+                RevCommit merge = walk.parseCommit(apply(repo, PullRequestMerger.Method.MERGE, target, f2));
+                assertEquals(List.of(target, f2), List.of(merge.getParent(0).copy(), merge.getParent(1).copy()));
+                assertEquals("ONE\nx\ny\nTWO\n", read(repo, merge, "a.txt"));
+                assertEquals("b\n", read(repo, merge, "b.txt"));
+
+                RevCommit squash = walk.parseCommit(apply(repo, PullRequestMerger.Method.SQUASH, target, f2));
+                assertEquals(1, squash.getParentCount());
+                assertEquals(target, squash.getParent(0).copy());
+                assertEquals(merge.getTree(), squash.getTree());
+
+                RevCommit rebased = walk.parseCommit(apply(repo, PullRequestMerger.Method.REBASE, target, f2));
+                assertEquals(merge.getTree(), rebased.getTree());
+                RevCommit first = walk.parseCommit(rebased.getParent(0));
+                assertEquals(target, first.getParent(0).copy());
+                assertEquals("ONE\nx\ny\nTWO\n", read(repo, first, "a.txt"));
+                assertEquals("t", rebased.getAuthorIdent().getName());
+                assertEquals("merger", rebased.getCommitterIdent().getName());
+            }
+        }
+    }
+
+    @Test
+    void rebaseDropsChangesAlreadyOnTheTarget() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("dup"))) {
+            ObjectId base = commit(repo, Map.of("a.txt", "a\n"));
+            ObjectId target = commit(repo, Map.of("a.txt", "a\n", "b.txt", "b\n"), base);
+            ObjectId f1 = commit(repo, Map.of("a.txt", "a\n", "b.txt", "b\n"), base);
+            ObjectId f2 = commit(repo, Map.of("a.txt", "a\n", "b.txt", "b\n", "c.txt", "c\n"), f1);
+
+            try (RevWalk walk = new RevWalk(repo)) {
+                RevCommit rebased = walk.parseCommit(apply(repo, PullRequestMerger.Method.REBASE, target, f2));
+                assertEquals(target, rebased.getParent(0).copy());
+                assertEquals("c\n", read(repo, rebased, "c.txt"));
+            }
+        }
+    }
+
+    @Test
+    void rebaseOfChangesAllAlreadyOnTheTargetLeavesTheTargetTip() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("noop"))) {
+            ObjectId base = commit(repo, Map.of("a.txt", "a\n"));
+            ObjectId target = commit(repo, Map.of("a.txt", "a\n", "b.txt", "b\n"), base);
+            ObjectId source = commit(repo, Map.of("a.txt", "a\n", "b.txt", "b\n"), base);
+
+            assertEquals(target, apply(repo, PullRequestMerger.Method.REBASE, target, source));
+        }
+    }
+
+    @Test
+    void conflictsAreReportedAndNothingToMergeIsRefused() throws Exception {
+        try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("conflict"))) {
+            ObjectId base = commit(repo, Map.of("a.txt", "a\n"));
+            ObjectId target = commit(repo, Map.of("a.txt", "target\n"), base);
+            ObjectId source = commit(repo, Map.of("a.txt", "source\n"), base);
+
+            for (PullRequestMerger.Method method : PullRequestMerger.Method.values()) {
+                PullRequestMerger.Outcome outcome = PullRequestMerger.apply(repo, method, target, source, MERGER, "m");
+                assertFalse(outcome.clean(), method.name());
+                assertEquals(List.of("a.txt"), outcome.conflicts());
+            }
+            assertThrows(IllegalArgumentException.class,
+                    () -> PullRequestMerger.apply(repo, PullRequestMerger.Method.MERGE, target, base, MERGER, "m"));
+        }
+    }
+
+    private ObjectId apply(Repository repo, PullRequestMerger.Method method, ObjectId target, ObjectId source)
+            throws Exception {
+        PullRequestMerger.Outcome outcome = PullRequestMerger.apply(repo, method, target, source, MERGER, "landed");
+        assertTrue(outcome.clean(), method.name());
+        return outcome.commit();
+    }
+
+    private String read(Repository repo, RevCommit commit, String path) throws Exception {
+        try (TreeWalk tw = TreeWalk.forPath(repo, path, commit.getTree())) {
+            return new String(repo.open(tw.getObjectId(0)).getBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}